@@ -0,0 +1,21 @@
+package com.example.mywifiscanner;
+
+/**
+ * 指纹AP数量超过上限时的取舍依据
+ */
+public enum ApRanking {
+    RSSI,            // 保留信号最强的AP（默认）
+    DISCRIMINATIVE;  // 保留在指纹库中区分度最高的AP（区分度相同时信号强者优先）
+
+    /**
+     * 按名称解析，未知名称返回RSSI
+     */
+    public static ApRanking fromName(String name) {
+        if (name != null) {
+            for (ApRanking ranking : values()) {
+                if (ranking.name().equals(name)) return ranking;
+            }
+        }
+        return RSSI;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 指纹AP数量上限：用定长最小堆做部分选择，O(n log k) 选出排名前k的AP，无需对全部AP排序
+ * 输出保持输入列表中的相对顺序；采集流水线先选择、再只对保留下来的k个AP按信号强度排序
+ */
+final class ApSelector {
+    // 区分度排序时信号强度作为次要键的比例（RSSI跨度不足256，不会影响区分度的先后）
+    private static final double RSSI_TIE_BREAK = 1e-6;
+
+    private ApSelector() {
+    }
+
+    /**
+     * 选出排名前maxAps的AP
+     * @param maxAps 上限，<= 0 表示不限制
+     * @param index 指纹库索引（区分度排序时使用），为null时按信号强度排序
+     * @return 未超过上限时返回原列表，否则返回新列表
+     */
+    static List<FilteredWifi> selectTop(List<FilteredWifi> wifis, int maxAps, ApRanking ranking,
+                                        FingerprintIndex index) {
+        if (wifis == null || maxAps <= 0 || wifis.size() <= maxAps) return wifis;
+        boolean discriminative = ranking == ApRanking.DISCRIMINATIVE && index != null;
+
+        TopKHeap heap = new TopKHeap(maxAps);
+        for (int i = 0; i < wifis.size(); i++) {
+            FilteredWifi wifi = wifis.get(i);
+            if (wifi == null) continue;
+            double score = discriminative
+                    ? index.getDiscriminativeness(wifi.getBssidId()) + (wifi.getRssi() + 128) * RSSI_TIE_BREAK
+                    : wifi.getRssi();
+            heap.offer(i, score);
+        }
+
+        int[] positions = new int[heap.size()];
+        int count = heap.drainDescending(positions, new double[positions.length]);
+        Arrays.sort(positions, 0, count);
+        List<FilteredWifi> selected = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            selected.add(wifis.get(positions[i]));
+        }
+        return selected;
+    }
+}
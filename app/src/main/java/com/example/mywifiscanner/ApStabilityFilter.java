@@ -0,0 +1,98 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * AP稳定性过滤：采集时只保留稳定的基础设施AP
+ * 1. 出现率：多轮扫描中出现比例低于阈值的AP（路过的设备、边缘信号）被丢弃
+ * 2. 本地管理MAC：首字节第2位（0x02）置位的BSSID多为手机热点或随机MAC设备，位置不固定
+ * 3. SSID白名单/黑名单：白名单非空时只保留名单内SSID；黑名单中的SSID总是丢弃
+ * 名单项以逗号或换行分隔，以 * 结尾表示前缀匹配（如 "iPhone*"）
+ * 不可变，随配置快照（ScanConfig/LocateConfig）一起重建
+ */
+public final class ApStabilityFilter {
+    private static final int LOCALLY_ADMINISTERED_BIT = 0x02;
+    // 默认过滤：出现率不低于一半、丢弃本地管理MAC、不限制SSID
+    static final ApStabilityFilter DEFAULT = new ApStabilityFilter(0.5, true, "", "");
+
+    private final double minPresenceRatio;
+    private final boolean dropLocalMacs;
+    private final SsidList allowlist;
+    private final SsidList blocklist;
+
+    public ApStabilityFilter(double minPresenceRatio, boolean dropLocalMacs, String allowlist, String blocklist) {
+        this.minPresenceRatio = Math.max(0, Math.min(1, minPresenceRatio));
+        this.dropLocalMacs = dropLocalMacs;
+        this.allowlist = new SsidList(allowlist);
+        this.blocklist = new SsidList(blocklist);
+    }
+
+    /**
+     * AP本身是否可作为指纹（与出现率无关的判断：MAC类型与SSID名单）
+     */
+    public boolean isInfrastructure(String bssid, String ssid) {
+        if (dropLocalMacs && isLocallyAdministered(bssid)) return false;
+        String name = ssid != null ? ssid.replace("\"", "") : "";
+        if (!allowlist.isEmpty() && !allowlist.matches(name)) return false;
+        return !blocklist.matches(name);
+    }
+
+    /**
+     * AP在totalScans轮扫描中出现presentScans轮，是否达到出现率阈值（单轮扫描总是通过）
+     */
+    public boolean isStable(int presentScans, int totalScans) {
+        return totalScans <= 1 || (double) presentScans / totalScans >= minPresenceRatio;
+    }
+
+    /**
+     * BSSID首字节的本地管理位是否置位（格式无效时返回false）
+     */
+    public static boolean isLocallyAdministered(String bssid) {
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        return mac >= 0 && ((mac >>> 40) & LOCALLY_ADMINISTERED_BIT) != 0;
+    }
+
+    public double getMinPresenceRatio() {
+        return minPresenceRatio;
+    }
+
+    public boolean isDroppingLocalMacs() {
+        return dropLocalMacs;
+    }
+
+    /**
+     * SSID名单：精确匹配项放在HashSet中，前缀项线性匹配（通常只有几项）
+     */
+    private static final class SsidList {
+        private final Set<String> exact = new HashSet<>();
+        private final List<String> prefixes = new ArrayList<>();
+
+        SsidList(String spec) {
+            if (spec == null) return;
+            for (String item : spec.split("[,\\n]")) {
+                String name = item.trim();
+                if (name.isEmpty()) continue;
+                if (name.endsWith("*")) {
+                    prefixes.add(name.substring(0, name.length() - 1));
+                } else {
+                    exact.add(name);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return exact.isEmpty() && prefixes.isEmpty();
+        }
+
+        boolean matches(String ssid) {
+            if (exact.contains(ssid)) return true;
+            for (String prefix : prefixes) {
+                if (ssid.startsWith(prefix)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.mywifiscanner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程级BSSID/SSID字典：将MAC字符串映射为稠密int ID，并对字符串做驻留去重
+ * ID从1开始分配，0（NO_ID）表示未分配；匹配热路径只比较ID
+ */
+public final class BssidDictionary {
+    public static final int NO_ID = 0;
+
+    private static final BssidDictionary INSTANCE = new BssidDictionary();
+
+    private final LongIntHashMap macToId = new LongIntHashMap(1024);
+    private final Map<String, Integer> irregularIds = new HashMap<>(); // 非标准MAC格式的BSSID
+    private final Map<String, String> ssidPool = new HashMap<>();
+    private String[] bssids = new String[1024]; // ID -> 规范BSSID字符串
+    private int nextId = 1;
+
+    private BssidDictionary() {
+    }
+
+    public static BssidDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取BSSID的ID，不存在时分配新ID
+     * @return BSSID为null时返回NO_ID
+     */
+    public synchronized int idOf(String bssid) {
+        if (bssid == null) return NO_ID;
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        if (mac < 0) {
+            Integer id = irregularIds.get(bssid);
+            if (id == null) {
+                id = register(bssid);
+                irregularIds.put(bssid, id);
+            }
+            return id;
+        }
+        return idOfMac(mac);
+    }
+
+    /**
+     * 获取48位MAC的ID，不存在时分配新ID（二进制指纹库直接按MAC解码，无需先格式化为字符串）
+     */
+    public synchronized int idOfMac(long mac) {
+        int id = macToId.get(mac, NO_ID);
+        if (id == NO_ID) {
+            // 统一为小写冒号格式，不同写法的同一MAC共用一个字符串
+            id = register(formatMac(mac));
+            macToId.put(mac, id);
+        }
+        return id;
+    }
+
+    /**
+     * 获取ID对应的规范BSSID字符串
+     */
+    public synchronized String bssidOf(int id) {
+        return id > NO_ID && id < nextId ? bssids[id] : null;
+    }
+
+    /**
+     * 驻留SSID字符串，相同SSID共用同一实例
+     */
+    public synchronized String internSsid(String ssid) {
+        if (ssid == null) return null;
+        String pooled = ssidPool.get(ssid);
+        if (pooled == null) {
+            ssidPool.put(ssid, ssid);
+            pooled = ssid;
+        }
+        return pooled;
+    }
+
+    /**
+     * 已分配ID的上界（不含），可用于按ID开数组
+     */
+    public synchronized int idLimit() {
+        return nextId;
+    }
+
+    private int register(String canonical) {
+        if (nextId == bssids.length) {
+            bssids = Arrays.copyOf(bssids, bssids.length * 2);
+        }
+        bssids[nextId] = canonical;
+        return nextId++;
+    }
+
+    private static String formatMac(long mac) {
+        char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int octet = (int) (mac >>> (40 - i * 8)) & 0xFF;
+            chars[i * 3] = Character.forDigit(octet >>> 4, 16);
+            chars[i * 3 + 1] = Character.forDigit(octet & 0xF, 16);
+            if (i < 5) chars[i * 3 + 2] = ':';
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.mywifiscanner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 编译后的指纹向量：按频段分段，段内BSSID以字典ID升序存为int，RSSI以byte平行存储
+ * 不可变，指纹库加载或变化时构建一次；匹配时逐频段做有序归并，无需再建HashMap
+ */
+public final class CompiledFingerprint {
+    private static final int[] EMPTY_KEYS = new int[0];
+    private static final byte[] EMPTY_RSSIS = new byte[0];
+    private static final int[] EMPTY_BAND_STARTS = new int[WifiBand.COUNT + 1];
+
+    final int[] apIds;      // BssidDictionary ID，频段内升序、去重
+    final byte[] rssis;     // 与apIds一一对应
+    final byte[] rssiStds;  // 采集时RSSI标准差（dB，四舍五入），与apIds对应
+    final int[] bandStarts; // 频段b的条目位于 [bandStarts[b], bandStarts[b + 1])
+
+    private CompiledFingerprint(int[] apIds, byte[] rssis, byte[] rssiStds, int[] bandStarts) {
+        this.apIds = apIds;
+        this.rssis = rssis;
+        this.rssiStds = rssiStds;
+        this.bandStarts = bandStarts;
+    }
+
+    /**
+     * 编译WiFi列表（空BSSID被忽略，重复BSSID保留最强信号），频段取各WiFi自身的频率
+     */
+    public static CompiledFingerprint compile(List<FilteredWifi> wifis) {
+        return compile(wifis, null, null);
+    }
+
+    /**
+     * 编译WiFi列表，频段取bandById中该AP的频段（由指纹库统一确定，保证库与查询一致；表外AP为UNKNOWN），
+     * 并把同一虚拟AP组的成员合并为组代表ID（同组保留最强信号）
+     * 旧指纹库未记录频率时所有AP都落在UNKNOWN段，匹配结果与不分频段时相同
+     * @param bandById 以字典ID为下标的频段表，null表示使用各WiFi自身的频率
+     * @param groupById 以字典ID为下标的组代表表，null表示不分组
+     */
+    static CompiledFingerprint compile(List<FilteredWifi> wifis, byte[] bandById, int[] groupById) {
+        if (wifis == null || wifis.isEmpty()) {
+            return new CompiledFingerprint(EMPTY_KEYS, EMPTY_RSSIS, EMPTY_RSSIS, EMPTY_BAND_STARTS);
+        }
+
+        // 将 频段(2位)、ID(29位)、RSSI(8位)、列表下标(24位) 打包进一个long排序，避免装箱和比较器
+        long[] packed = new long[wifis.size()];
+        int n = 0;
+        for (int index = 0; index < wifis.size(); index++) {
+            FilteredWifi wifi = wifis.get(index);
+            if (wifi == null) continue;
+            int id = wifi.getBssidId();
+            if (id == BssidDictionary.NO_ID) continue;
+            long band = bandById == null ? wifi.getBand()
+                    : id < bandById.length ? bandById[id] : WifiBand.UNKNOWN;
+            if (groupById != null && id < groupById.length) id = groupById[id];
+            packed[n++] = pack((int) band, id, wifi.getRssi(), index);
+        }
+        return fromPacked(wifis, packed, n);
+    }
+
+    /**
+     * 将一条观测打包为可排序的long：频段(2位)、ID(29位)、RSSI(8位)、列表下标(24位)
+     */
+    static long pack(int band, int id, int rssi, int index) {
+        return ((long) band << 61) | ((long) id << 32) | ((long) (clampRssi(rssi) + 128) << 24) | index;
+    }
+
+    /**
+     * 由打包后的观测构建编译向量（供按其他AP编号方式编译的调用方使用，如内存映射库）
+     * @param packed 前n个元素为pack的结果，会被原地排序
+     */
+    static CompiledFingerprint fromPacked(List<FilteredWifi> wifis, long[] packed, int n) {
+        Arrays.sort(packed, 0, n);
+
+        int[] apIds = new int[n];
+        byte[] rssis = new byte[n];
+        byte[] rssiStds = new byte[n];
+        int[] bandStarts = new int[WifiBand.COUNT + 1];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int band = (int) (packed[i] >>> 61);
+            int id = (int) ((packed[i] >>> 32) & 0x1FFFFFFF);
+            byte rssi = (byte) (((packed[i] >>> 24) & 0xFF) - 128);
+            byte std = stdOf(wifis.get((int) (packed[i] & 0xFFFFFF)));
+            if (size > 0 && apIds[size - 1] == id) {
+                // 同ID按RSSI升序排列，最后一个最强
+                rssis[size - 1] = rssi;
+                rssiStds[size - 1] = std;
+            } else {
+                apIds[size] = id;
+                rssis[size] = rssi;
+                rssiStds[size] = std;
+                bandStarts[band + 1] = ++size; // 暂存各频段的结束位置
+            }
+        }
+        // 结束位置 -> 各频段起始位置（空频段沿用前一段的结束位置）
+        for (int b = 1; b <= WifiBand.COUNT; b++) {
+            bandStarts[b] = Math.max(bandStarts[b], bandStarts[b - 1]);
+        }
+        if (size < n) {
+            apIds = Arrays.copyOf(apIds, size);
+            rssis = Arrays.copyOf(rssis, size);
+            rssiStds = Arrays.copyOf(rssiStds, size);
+        }
+        return new CompiledFingerprint(apIds, rssis, rssiStds, bandStarts);
+    }
+
+    private static byte stdOf(FilteredWifi wifi) {
+        float variance = wifi.getRssiVariance();
+        return variance > 0 ? (byte) Math.min(127, Math.round(Math.sqrt(variance))) : 0;
+    }
+
+    private static int clampRssi(int rssi) {
+        return Math.max(-128, Math.min(127, rssi));
+    }
+
+    /**
+     * 有效AP数量
+     */
+    public int size() {
+        return apIds.length;
+    }
+
+    /**
+     * 频段b的条目起始下标（含）
+     */
+    public int bandStart(int band) { return bandStarts[band]; }
+
+    /**
+     * 频段b的条目结束下标（不含）
+     */
+    public int bandEnd(int band) { return bandStarts[band + 1]; }
+
+    public int getApId(int i) { return apIds[i]; }
+
+    public int getRssi(int i) { return rssis[i]; }
+
+    public int getRssiStd(int i) { return rssiStds[i]; }
+}
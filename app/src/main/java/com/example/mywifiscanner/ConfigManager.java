@@ -3,7 +3,14 @@ package com.example.mywifiscanner;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 配置管理：设置持久化在SharedPreferences中，读取方通过不可变快照（ScanConfig/LocateConfig）取用
+ * 每次修改后整体重建快照并原子发布，再通知监听者；扫描、定位的热路径只读快照，不访问SharedPreferences
+ */
 public class ConfigManager {
+    public static final int MAX_KNN_K = 20; // kNN候选数上限
     private static final String PREFS_NAME = "WifiScannerConfig";
     private static final String KEY_SCAN_COUNT = "scan_count";
     private static final String KEY_SCAN_INTERVAL = "scan_interval";
@@ -11,12 +18,49 @@ public class ConfigManager {
     private static final String KEY_SIMILARITY_THRESHOLD = "similarity_threshold";
     private static final String KEY_GRID_ENABLED = "grid_enabled";
     private static final String KEY_GRID_SIZE = "grid_size";
+    private static final String KEY_MIN_SHARED_APS = "min_shared_aps";
+    private static final String KEY_KNN_K = "knn_k";
+    private static final String KEY_HIERARCHICAL_ENABLED = "hierarchical_enabled";
+    private static final String KEY_HIERARCHY_MARGIN = "hierarchy_margin";
+    private static final String KEY_CONVERGENCE_TARGET = "convergence_target";
+    private static final String KEY_RSSI_AGGREGATION = "rssi_aggregation";
+    private static final String KEY_SMOOTHING_WINDOW = "smoothing_window";
+    private static final String KEY_MIN_PRESENCE_RATIO = "min_presence_ratio";
+    private static final String KEY_FILTER_LOCAL_MAC = "filter_local_mac";
+    private static final String KEY_SSID_ALLOWLIST = "ssid_allowlist";
+    private static final String KEY_SSID_BLOCKLIST = "ssid_blocklist";
+    private static final String KEY_MAX_APS_PER_FINGERPRINT = "max_aps_per_fingerprint";
+    private static final String KEY_AP_RANKING = "ap_ranking";
+    private static final String KEY_GROUP_VIRTUAL_APS = "group_virtual_aps";
+    private static final String KEY_PROFILE = "profile";
+
+    // 默认值：快照中的各项取构建器的默认值（唯一来源），不在快照中的设置在此定义
+    private static final ScanConfig SCAN_DEFAULTS = ScanConfig.builder().build();
+    private static final LocateConfig LOCATE_DEFAULTS = LocateConfig.builder().build();
+    private static final float DEFAULT_SIMILARITY_THRESHOLD = 0.6f;
+    private static final boolean DEFAULT_GRID_ENABLED = false;
+    private static final int DEFAULT_GRID_SIZE = 50;
+
+    /**
+     * 配置变化监听（在修改配置的线程上回调，收到的是新发布的快照）
+     */
+    public interface OnConfigChangedListener {
+        void onConfigChanged(ScanConfig scanConfig, LocateConfig locateConfig);
+    }
 
     private final SharedPreferences prefs;
+    private final CopyOnWriteArrayList<OnConfigChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ScanConfig scanConfig;
+    private volatile LocateConfig locateConfig;
 
     public ConfigManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    ConfigManager(SharedPreferences prefs) {
+        this.prefs = prefs;
         initDefaultValues();
+        republish();
     }
 
     private void initDefaultValues() {
@@ -25,76 +69,307 @@ public class ConfigManager {
         }
     }
 
+    // ==================== 配置快照 ====================
+    /**
+     * 当前扫描与采集配置（不可变，配置变化后返回新对象）
+     */
+    public ScanConfig getScanConfig() {
+        return scanConfig;
+    }
+
+    /**
+     * 当前定位配置（不可变，配置变化后返回新对象）
+     */
+    public LocateConfig getLocateConfig() {
+        return locateConfig;
+    }
+
+    public void addOnConfigChangedListener(OnConfigChangedListener listener) {
+        if (listener != null) listeners.addIfAbsent(listener);
+    }
+
+    public void removeOnConfigChangedListener(OnConfigChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 写入修改并重新发布快照（apply先更新内存中的SharedPreferences，随后读取即为新值）
+     */
+    private void commit(SharedPreferences.Editor editor) {
+        editor.apply();
+        republish();
+    }
+
+    /**
+     * 由当前设置重建两份快照并通知监听者
+     */
+    private synchronized void republish() {
+        ApStabilityFilter stability = new ApStabilityFilter(getMinPresenceRatio(), isLocalMacFilterEnabled(),
+                getSsidAllowlist(), getSsidBlocklist());
+        ScanConfig scan = ScanConfig.builder()
+                .scanCount(getScanCount())
+                .scanIntervalMs(getScanInterval())
+                .wifiThreshold(getWifiThreshold())
+                .convergenceTarget(getConvergenceTarget())
+                .aggregationMode(getRssiAggregationMode())
+                .stabilityFilter(stability)
+                .maxApsPerFingerprint(getMaxApsPerFingerprint())
+                .apRanking(getApRanking())
+                .groupVirtualAps(isVirtualApGroupingEnabled())
+                .build();
+        LocateConfig locate = LocateConfig.builder()
+                .wifiThreshold(getWifiThreshold())
+                .stabilityFilter(stability)
+                .smoothingMode(getRssiAggregationMode())
+                .smoothingWindow(getSmoothingWindow())
+                .minSharedAps(getMinSharedAps())
+                .knnK(getKnnK())
+                .hierarchicalEnabled(isHierarchicalEnabled())
+                .hierarchyMargin(getHierarchyMargin())
+                .build();
+        scanConfig = scan;
+        locateConfig = locate;
+        for (OnConfigChangedListener listener : listeners) {
+            listener.onConfigChanged(scan, locate);
+        }
+    }
+
+    // ==================== 预设方案 ====================
+    /**
+     * 应用预设方案：方案内各项一次写入，只发布一次快照
+     */
+    public void applyProfile(ConfigProfile profile) {
+        commit(prefs.edit()
+                .putInt(KEY_SCAN_COUNT, profile.scanCount)
+                .putInt(KEY_SCAN_INTERVAL, profile.scanIntervalMs)
+                .putFloat(KEY_CONVERGENCE_TARGET, (float) profile.convergenceTarget)
+                .putString(KEY_RSSI_AGGREGATION, profile.aggregationMode.name())
+                .putInt(KEY_SMOOTHING_WINDOW, profile.smoothingWindow)
+                .putString(KEY_PROFILE, profile.name()));
+    }
+
+    /**
+     * 最近应用的预设方案，之后单独修改过方案内的设置或从未应用时返回null
+     */
+    public ConfigProfile getProfile() {
+        return ConfigProfile.fromName(prefs.getString(KEY_PROFILE, null));
+    }
+
     // 扫描设置
     public int getScanCount() {
-        return prefs.getInt(KEY_SCAN_COUNT, 3);
+        return prefs.getInt(KEY_SCAN_COUNT, SCAN_DEFAULTS.getScanCount());
     }
 
     public void setScanCount(int count) {
-        prefs.edit().putInt(KEY_SCAN_COUNT, count).apply();
+        commit(prefs.edit().putInt(KEY_SCAN_COUNT, count).remove(KEY_PROFILE));
     }
 
     public int getScanInterval() {
-        return prefs.getInt(KEY_SCAN_INTERVAL, 3000);
+        return prefs.getInt(KEY_SCAN_INTERVAL, SCAN_DEFAULTS.getScanIntervalMs());
     }
 
     public void setScanInterval(int intervalMs) {
-        prefs.edit().putInt(KEY_SCAN_INTERVAL, intervalMs).apply();
+        commit(prefs.edit().putInt(KEY_SCAN_INTERVAL, intervalMs).remove(KEY_PROFILE));
     }
 
     // WiFi过滤设置
     public int getWifiThreshold() {
-        return prefs.getInt(KEY_WIFI_THRESHOLD, -85);
+        return prefs.getInt(KEY_WIFI_THRESHOLD, SCAN_DEFAULTS.getWifiThreshold());
     }
 
     public void setWifiThreshold(int threshold) {
-        prefs.edit().putInt(KEY_WIFI_THRESHOLD, threshold).apply();
+        commit(prefs.edit().putInt(KEY_WIFI_THRESHOLD, threshold));
     }
 
     // 相似度阈值
     public double getSimilarityThreshold() {
-        return prefs.getFloat(KEY_SIMILARITY_THRESHOLD, 0.6f);
+        return prefs.getFloat(KEY_SIMILARITY_THRESHOLD, DEFAULT_SIMILARITY_THRESHOLD);
     }
 
     public void setSimilarityThreshold(double threshold) {
-        prefs.edit().putFloat(KEY_SIMILARITY_THRESHOLD, (float) threshold).apply();
+        commit(prefs.edit().putFloat(KEY_SIMILARITY_THRESHOLD, (float) threshold));
+    }
+
+    // 候选指纹至少需与当前扫描共享的AP数
+    public int getMinSharedAps() {
+        return prefs.getInt(KEY_MIN_SHARED_APS, LOCATE_DEFAULTS.getMinSharedAps());
+    }
+
+    public void setMinSharedAps(int count) {
+        commit(prefs.edit().putInt(KEY_MIN_SHARED_APS, count));
+    }
+
+    // kNN定位的候选数k（k=1时退化为最近邻，直接取最佳指纹点）
+    public int getKnnK() {
+        return Math.max(1, Math.min(MAX_KNN_K, prefs.getInt(KEY_KNN_K, LOCATE_DEFAULTS.getKnnK())));
+    }
+
+    public void setKnnK(int k) {
+        commit(prefs.edit().putInt(KEY_KNN_K, k));
+    }
+
+    // 分层定位（楼层→区域→点位）开关
+    public boolean isHierarchicalEnabled() {
+        return prefs.getBoolean(KEY_HIERARCHICAL_ENABLED, LOCATE_DEFAULTS.isHierarchicalEnabled());
+    }
+
+    public void setHierarchicalEnabled(boolean enabled) {
+        commit(prefs.edit().putBoolean(KEY_HIERARCHICAL_ENABLED, enabled));
+    }
+
+    // 分层定位容差：得分不低于最佳楼层/区域得分(1 - margin)倍的也保留
+    public double getHierarchyMargin() {
+        return prefs.getFloat(KEY_HIERARCHY_MARGIN, (float) LOCATE_DEFAULTS.getHierarchyMargin());
+    }
+
+    public void setHierarchyMargin(double margin) {
+        commit(prefs.edit().putFloat(KEY_HIERARCHY_MARGIN, (float) margin));
+    }
+
+    // 采集提前结束的收敛目标：稳定AP均值的标准误（dB），0表示总是扫满扫描次数
+    public double getConvergenceTarget() {
+        return prefs.getFloat(KEY_CONVERGENCE_TARGET, (float) SCAN_DEFAULTS.getConvergenceTarget());
+    }
+
+    public void setConvergenceTarget(double targetDb) {
+        commit(prefs.edit().putFloat(KEY_CONVERGENCE_TARGET, (float) targetDb).remove(KEY_PROFILE));
+    }
+
+    // 多次扫描RSSI的汇总方式（采集与连续定位平滑共用）
+    public RssiAggregationMode getRssiAggregationMode() {
+        return RssiAggregationMode.fromName(prefs.getString(KEY_RSSI_AGGREGATION,
+                SCAN_DEFAULTS.getAggregationMode().name()));
+    }
+
+    public void setRssiAggregationMode(RssiAggregationMode mode) {
+        commit(prefs.edit().putString(KEY_RSSI_AGGREGATION, mode.name()).remove(KEY_PROFILE));
+    }
+
+    // 连续定位的平滑窗口（扫描轮数），1表示不平滑
+    public int getSmoothingWindow() {
+        return Math.max(1, Math.min(SlidingScanSmoother.MAX_WINDOW_SCANS,
+                prefs.getInt(KEY_SMOOTHING_WINDOW, LOCATE_DEFAULTS.getSmoothingWindow())));
+    }
+
+    public void setSmoothingWindow(int scans) {
+        commit(prefs.edit().putInt(KEY_SMOOTHING_WINDOW, scans).remove(KEY_PROFILE));
+    }
+
+    // 采集时AP的最低出现率（出现轮数/扫描轮数），低于此值视为临时AP
+    public double getMinPresenceRatio() {
+        return prefs.getFloat(KEY_MIN_PRESENCE_RATIO,
+                (float) SCAN_DEFAULTS.getStabilityFilter().getMinPresenceRatio());
+    }
+
+    public void setMinPresenceRatio(double ratio) {
+        commit(prefs.edit().putFloat(KEY_MIN_PRESENCE_RATIO, (float) ratio));
+    }
+
+    // 是否丢弃本地管理MAC（手机热点、随机MAC设备）
+    public boolean isLocalMacFilterEnabled() {
+        return prefs.getBoolean(KEY_FILTER_LOCAL_MAC, SCAN_DEFAULTS.getStabilityFilter().isDroppingLocalMacs());
+    }
+
+    public void setLocalMacFilterEnabled(boolean enabled) {
+        commit(prefs.edit().putBoolean(KEY_FILTER_LOCAL_MAC, enabled));
+    }
+
+    // SSID白名单（逗号分隔，*结尾为前缀匹配），为空表示不限制
+    public String getSsidAllowlist() {
+        return prefs.getString(KEY_SSID_ALLOWLIST, "");
+    }
+
+    public void setSsidAllowlist(String allowlist) {
+        commit(prefs.edit().putString(KEY_SSID_ALLOWLIST, allowlist));
+    }
+
+    // SSID黑名单（逗号分隔，*结尾为前缀匹配）
+    public String getSsidBlocklist() {
+        return prefs.getString(KEY_SSID_BLOCKLIST, "");
+    }
+
+    public void setSsidBlocklist(String blocklist) {
+        commit(prefs.edit().putString(KEY_SSID_BLOCKLIST, blocklist));
+    }
+
+    // 每条指纹最多保留的AP数，0表示不限制
+    public int getMaxApsPerFingerprint() {
+        return Math.max(0, prefs.getInt(KEY_MAX_APS_PER_FINGERPRINT, SCAN_DEFAULTS.getMaxApsPerFingerprint()));
+    }
+
+    public void setMaxApsPerFingerprint(int maxAps) {
+        commit(prefs.edit().putInt(KEY_MAX_APS_PER_FINGERPRINT, maxAps));
+    }
+
+    // AP超过上限时的取舍依据
+    public ApRanking getApRanking() {
+        return ApRanking.fromName(prefs.getString(KEY_AP_RANKING, SCAN_DEFAULTS.getApRanking().name()));
+    }
+
+    public void setApRanking(ApRanking ranking) {
+        commit(prefs.edit().putString(KEY_AP_RANKING, ranking.name()));
+    }
+
+    // 是否把同一射频的多个虚拟BSSID（仅末位不同）合并为一个AP（采集与匹配）
+    public boolean isVirtualApGroupingEnabled() {
+        return prefs.getBoolean(KEY_GROUP_VIRTUAL_APS, SCAN_DEFAULTS.isVirtualApGroupingEnabled());
+    }
+
+    public void setVirtualApGroupingEnabled(boolean enabled) {
+        commit(prefs.edit().putBoolean(KEY_GROUP_VIRTUAL_APS, enabled));
     }
 
     // 网格设置
     public boolean isGridEnabled() {
-        return prefs.getBoolean(KEY_GRID_ENABLED, false);
+        return prefs.getBoolean(KEY_GRID_ENABLED, DEFAULT_GRID_ENABLED);
     }
 
     public void setGridEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_GRID_ENABLED, enabled).apply();
+        commit(prefs.edit().putBoolean(KEY_GRID_ENABLED, enabled));
     }
 
     public int getGridSize() {
-        return prefs.getInt(KEY_GRID_SIZE, 50);
+        return prefs.getInt(KEY_GRID_SIZE, DEFAULT_GRID_SIZE);
     }
 
     public void setGridSize(int size) {
-        prefs.edit().putInt(KEY_GRID_SIZE, size).apply();
+        commit(prefs.edit().putInt(KEY_GRID_SIZE, size));
     }
 
     // 恢复默认设置
     public void restoreDefaultSettings() {
         SharedPreferences.Editor editor = prefs.edit();
-        editor.putInt(KEY_SCAN_COUNT, 3);
-        editor.putInt(KEY_SCAN_INTERVAL, 3000);
-        editor.putInt(KEY_WIFI_THRESHOLD, -85);
-        editor.putFloat(KEY_SIMILARITY_THRESHOLD, 0.6f);
-        editor.putBoolean(KEY_GRID_ENABLED, false);
-        editor.putInt(KEY_GRID_SIZE, 50);
-        editor.apply();
+        ApStabilityFilter stability = SCAN_DEFAULTS.getStabilityFilter();
+        editor.putInt(KEY_SCAN_COUNT, SCAN_DEFAULTS.getScanCount());
+        editor.putInt(KEY_SCAN_INTERVAL, SCAN_DEFAULTS.getScanIntervalMs());
+        editor.putInt(KEY_WIFI_THRESHOLD, SCAN_DEFAULTS.getWifiThreshold());
+        editor.putFloat(KEY_SIMILARITY_THRESHOLD, DEFAULT_SIMILARITY_THRESHOLD);
+        editor.putBoolean(KEY_GRID_ENABLED, DEFAULT_GRID_ENABLED);
+        editor.putInt(KEY_GRID_SIZE, DEFAULT_GRID_SIZE);
+        editor.putInt(KEY_MIN_SHARED_APS, LOCATE_DEFAULTS.getMinSharedAps());
+        editor.putInt(KEY_KNN_K, LOCATE_DEFAULTS.getKnnK());
+        editor.putBoolean(KEY_HIERARCHICAL_ENABLED, LOCATE_DEFAULTS.isHierarchicalEnabled());
+        editor.putFloat(KEY_HIERARCHY_MARGIN, (float) LOCATE_DEFAULTS.getHierarchyMargin());
+        editor.putFloat(KEY_CONVERGENCE_TARGET, (float) SCAN_DEFAULTS.getConvergenceTarget());
+        editor.putString(KEY_RSSI_AGGREGATION, SCAN_DEFAULTS.getAggregationMode().name());
+        editor.putInt(KEY_SMOOTHING_WINDOW, LOCATE_DEFAULTS.getSmoothingWindow());
+        editor.putFloat(KEY_MIN_PRESENCE_RATIO, (float) stability.getMinPresenceRatio());
+        editor.putBoolean(KEY_FILTER_LOCAL_MAC, stability.isDroppingLocalMacs());
+        editor.putString(KEY_SSID_ALLOWLIST, "");
+        editor.putString(KEY_SSID_BLOCKLIST, "");
+        editor.putInt(KEY_MAX_APS_PER_FINGERPRINT, SCAN_DEFAULTS.getMaxApsPerFingerprint());
+        editor.putString(KEY_AP_RANKING, SCAN_DEFAULTS.getApRanking().name());
+        editor.putBoolean(KEY_GROUP_VIRTUAL_APS, SCAN_DEFAULTS.isVirtualApGroupingEnabled());
+        editor.remove(KEY_PROFILE);
+        commit(editor);
     }
 
     // 导出配置
     public String exportConfig() {
         return String.format(
-                "扫描次数: %d\n扫描间隔: %dms\nWiFi阈值: %ddBm\n相似度阈值: %.2f\n网格大小: %dpx",
+                "扫描次数: %d\n扫描间隔: %dms\nWiFi阈值: %ddBm\n相似度阈值: %.2f\n网格大小: %dpx\nkNN候选数: %d",
                 getScanCount(), getScanInterval(), getWifiThreshold(),
-                getSimilarityThreshold(), getGridSize()
+                getSimilarityThreshold(), getGridSize(), getKnnK()
         );
     }
 
@@ -105,7 +380,10 @@ public class ConfigManager {
                 getWifiThreshold() <= 0 &&
                 getSimilarityThreshold() > 0 &&
                 getSimilarityThreshold() <= 1 &&
-                getGridSize() > 0;
+                getGridSize() > 0 &&
+                getMinSharedAps() > 0 &&
+                getMinPresenceRatio() >= 0 &&
+                getMinPresenceRatio() <= 1;
     }
 
 
@@ -0,0 +1,40 @@
+package com.example.mywifiscanner;
+
+/**
+ * 预设配置方案：一次性写入一组扫描与定位参数（其余设置保持不变）
+ */
+public enum ConfigProfile {
+    // 指纹采集：多扫几轮、收敛目标更严，保证指纹质量
+    SURVEY(5, 3000, 0.5, RssiAggregationMode.MEAN, 1),
+    // 连续定位：单轮扫描，靠滑动窗口平滑抑制抖动
+    TRACKING(1, 2000, 1.0, RssiAggregationMode.MEDIAN, 4),
+    // 省电：减少扫描轮数、拉长间隔，收敛目标放宽
+    LOW_POWER(2, 10000, 2.0, RssiAggregationMode.MEAN, 2);
+
+    final int scanCount;
+    final int scanIntervalMs;
+    final double convergenceTarget;
+    final RssiAggregationMode aggregationMode;
+    final int smoothingWindow;
+
+    ConfigProfile(int scanCount, int scanIntervalMs, double convergenceTarget,
+                  RssiAggregationMode aggregationMode, int smoothingWindow) {
+        this.scanCount = scanCount;
+        this.scanIntervalMs = scanIntervalMs;
+        this.convergenceTarget = convergenceTarget;
+        this.aggregationMode = aggregationMode;
+        this.smoothingWindow = smoothingWindow;
+    }
+
+    /**
+     * 按名称解析，未知名称返回null（表示自定义配置）
+     */
+    public static ConfigProfile fromName(String name) {
+        if (name != null) {
+            for (ConfigProfile profile : values()) {
+                if (profile.name().equals(name)) return profile;
+            }
+        }
+        return null;
+    }
+}
@@ -9,21 +9,92 @@ public class FilteredWifi {
     private String bssid;
     @SerializedName("rssi")
     private int rssi;
+    @SerializedName("rssiVar")
+    private float rssiVariance; // 采集期间RSSI的方差（dB²），旧数据或单次扫描为0
+    @SerializedName("freq")
+    private int frequency;      // 信道中心频率（MHz），旧数据为0
+    @SerializedName("width")
+    private int channelWidth;   // ScanResult.CHANNEL_WIDTH_*
+    // BSSID字典ID（不序列化；Gson反射创建的对象为0，首次访问时补齐）
+    private transient int bssidId;
 
     // 保留三参数构造函数
     public FilteredWifi(String ssid, String bssid, int rssi) {
-        this.ssid = ssid;
-        this.bssid = bssid;
+        setSsid(ssid);
+        setBssid(bssid);
         this.rssi = rssi;
     }
 
+    public FilteredWifi(String ssid, String bssid, int rssi, int frequency, int channelWidth) {
+        this(ssid, bssid, rssi);
+        this.frequency = frequency;
+        this.channelWidth = channelWidth;
+    }
+
+    /**
+     * 由已驻留的SSID与已分配的字典ID直接构造（二进制指纹库解码用，跳过逐条字典查找）
+     */
+    FilteredWifi(String pooledSsid, int bssidId, int rssi, int frequency, int channelWidth) {
+        this.ssid = pooledSsid;
+        this.bssidId = bssidId;
+        this.bssid = BssidDictionary.getInstance().bssidOf(bssidId);
+        this.rssi = rssi;
+        this.frequency = frequency;
+        this.channelWidth = channelWidth;
+    }
+
     // 保留原有的Getter和Setter
     public String getSsid() { return ssid; }
-    public void setSsid(String ssid) { this.ssid = ssid; }
+    public void setSsid(String ssid) { this.ssid = BssidDictionary.getInstance().internSsid(ssid); }
 
     public String getBssid() { return bssid; }
-    public void setBssid(String bssid) { this.bssid = bssid; }
+    /**
+     * 设置BSSID并分配字典ID：与规范写法（小写、冒号分隔）相同时共用字典中的实例，
+     * 其他写法（大写、连字符分隔等）保留原字符串，旧指纹库加载后重新保存不会被改写
+     */
+    public void setBssid(String bssid) {
+        BssidDictionary dictionary = BssidDictionary.getInstance();
+        this.bssidId = dictionary.idOf(bssid);
+        if (bssidId == BssidDictionary.NO_ID) {
+            this.bssid = null;
+            return;
+        }
+        String canonical = dictionary.bssidOf(bssidId);
+        this.bssid = canonical.equals(bssid) ? canonical : bssid;
+    }
 
     public int getRssi() { return rssi; }
     public void setRssi(int rssi) { this.rssi = rssi; }
-}
\ No newline at end of file
+
+    public float getRssiVariance() { return rssiVariance; }
+    public void setRssiVariance(float rssiVariance) { this.rssiVariance = rssiVariance; }
+
+    public int getFrequency() { return frequency; }
+    public void setFrequency(int frequency) { this.frequency = frequency; }
+
+    public int getChannelWidth() { return channelWidth; }
+    public void setChannelWidth(int channelWidth) { this.channelWidth = channelWidth; }
+
+    /**
+     * 所在频段（WifiBand常量）
+     */
+    public int getBand() { return WifiBand.fromFrequency(frequency); }
+
+    /**
+     * 获取BSSID字典ID（BSSID为空时返回NO_ID）
+     */
+    public int getBssidId() {
+        if (bssidId == BssidDictionary.NO_ID && bssid != null) {
+            intern();
+        }
+        return bssidId;
+    }
+
+    /**
+     * 将SSID/BSSID替换为字典中的共享实例（用于Gson反序列化后的对象）
+     */
+    public void intern() {
+        setSsid(ssid);
+        setBssid(bssid);
+    }
+}
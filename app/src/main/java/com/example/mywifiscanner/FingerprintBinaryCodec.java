@@ -0,0 +1,494 @@
+package com.example.mywifiscanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制指纹库格式（.wfp）的流式编解码
+ * 文件结构：文件头 "WFPB" + 版本(1字节)，之后为若干块：类型(1字节) | 负载长度(varint) | 负载 | CRC32(4字节，覆盖类型与负载)
+ *   STRINGS      字符串表：SSID、区域、标签、路径及按字符串存储的BSSID，每个字符串只存一次（UTF-8）
+ *   BSSIDS       BSSID表：标准MAC存为6字节值，非标准格式或非规范写法（大写、连字符分隔）引用字符串表，读回时写法不变
+ *   FINGERPRINTS 至多FINGERPRINTS_PER_BLOCK条指纹：坐标为double，AP数为varint，
+ *                每个AP为 标志(1) | BSSID表下标 | SSID下标 | RSSI(有符号字节) | [频率 | 信道宽度] | [方差(float)]
+ *   END          指纹总数，用于发现被截断的文件
+ * 表下标均为varint且以1起计，0表示null；未知类型的块（后续版本的扩展）校验后跳过
+ * 读取时逐块校验并解码，每条指纹解码完即交给接收方；BSSID表中的每个MAC只在字典中查找一次
+ */
+final class FingerprintBinaryCodec {
+    static final String EXTENSION = ".wfp";
+
+    private static final byte[] MAGIC = {'W', 'F', 'P', 'B'};
+    private static final int VERSION = 1;
+    private static final int BLOCK_END = 0;
+    private static final int BLOCK_STRINGS = 1;
+    private static final int BLOCK_BSSIDS = 2;
+    private static final int BLOCK_FINGERPRINTS = 3;
+    private static final int FINGERPRINTS_PER_BLOCK = 256;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024; // 损坏的长度字段不会导致超大分配
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int AP_HAS_CHANNEL = 1;
+    private static final int AP_HAS_VARIANCE = 2;
+
+    /**
+     * 输入流是否以二进制指纹库文件头开始（输入流需支持mark/reset，检测后复位）
+     */
+    static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) return false;
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    // ==================== 写入 ====================
+    /**
+     * 将指纹列表写入输出流（完成后flush，不关闭输出流）；WiFi列表中的null元素不写入
+     */
+    void write(OutputStream outputStream, List<WifiFingerprint> fingerprints) throws IOException {
+        // 第一遍：收集字符串表与BSSID表
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringList = new ArrayList<>();
+        LongIntHashMap macRefs = new LongIntHashMap();
+        long[] macs = new long[64];
+        int macCount = 0;
+        Map<String, Integer> irregularRefs = new HashMap<>();
+        List<String> irregulars = new ArrayList<>();
+        for (WifiFingerprint fp : fingerprints) {
+            addString(strings, stringList, fp.getZone());
+            addString(strings, stringList, fp.getLabel());
+            addString(strings, stringList, fp.getPath());
+            if (fp.getFilteredWifis() == null) continue;
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                if (wifi == null) continue;
+                addString(strings, stringList, wifi.getSsid());
+                String bssid = wifi.getBssid();
+                if (bssid == null) continue;
+                long mac = canonicalMacOf(bssid);
+                if (mac >= 0) {
+                    if (macRefs.putIfAbsent(mac, macCount) == macCount) {
+                        if (macCount == macs.length) macs = Arrays.copyOf(macs, macCount * 2);
+                        macs[macCount++] = mac;
+                    }
+                } else if (!irregularRefs.containsKey(bssid)) {
+                    irregularRefs.put(bssid, irregulars.size());
+                    irregulars.add(bssid);
+                    addString(strings, stringList, bssid);
+                }
+            }
+        }
+
+        BufferedOutputStream out = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        out.write(MAGIC);
+        out.write(VERSION);
+        BlockWriter block = new BlockWriter();
+
+        block.writeVarint(stringList.size());
+        for (String s : stringList) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            block.writeVarint(bytes.length);
+            block.writeBytes(bytes);
+        }
+        block.flushTo(out, BLOCK_STRINGS);
+
+        block.writeVarint(macCount);
+        for (int i = 0; i < macCount; i++) {
+            block.writeMac(macs[i]);
+        }
+        block.writeVarint(irregulars.size());
+        for (String bssid : irregulars) {
+            block.writeVarint(strings.get(bssid) + 1);
+        }
+        block.flushTo(out, BLOCK_BSSIDS);
+
+        // 第二遍：按块写出指纹
+        for (int start = 0; start < fingerprints.size(); start += FINGERPRINTS_PER_BLOCK) {
+            int end = Math.min(fingerprints.size(), start + FINGERPRINTS_PER_BLOCK);
+            block.writeVarint(end - start);
+            for (int i = start; i < end; i++) {
+                WifiFingerprint fp = fingerprints.get(i);
+                block.writeDouble(fp.getPixelX());
+                block.writeDouble(fp.getPixelY());
+                block.writeVarint((fp.getFloor() << 1) ^ (fp.getFloor() >> 31)); // zigzag，负楼层也只占1字节
+                block.writeVarint(refOf(strings, fp.getZone()));
+                block.writeVarint(refOf(strings, fp.getLabel()));
+                block.writeVarint(refOf(strings, fp.getPath()));
+
+                List<FilteredWifi> wifis = fp.getFilteredWifis();
+                int wifiCount = 0;
+                if (wifis != null) {
+                    for (FilteredWifi wifi : wifis) {
+                        if (wifi != null) wifiCount++;
+                    }
+                }
+                block.writeVarint(wifiCount);
+                if (wifiCount == 0) continue;
+                for (FilteredWifi wifi : wifis) {
+                    if (wifi == null) continue;
+                    boolean hasChannel = wifi.getFrequency() != 0 || wifi.getChannelWidth() != 0;
+                    boolean hasVariance = wifi.getRssiVariance() != 0;
+                    block.writeByte((hasChannel ? AP_HAS_CHANNEL : 0) | (hasVariance ? AP_HAS_VARIANCE : 0));
+                    block.writeVarint(bssidRefOf(wifi.getBssid(), macRefs, macCount, irregularRefs));
+                    block.writeVarint(refOf(strings, wifi.getSsid()));
+                    block.writeByte(Math.max(-128, Math.min(127, wifi.getRssi())));
+                    if (hasChannel) {
+                        block.writeVarint(wifi.getFrequency());
+                        block.writeVarint(wifi.getChannelWidth());
+                    }
+                    if (hasVariance) {
+                        block.writeInt(Float.floatToRawIntBits(wifi.getRssiVariance()));
+                    }
+                }
+            }
+            block.flushTo(out, BLOCK_FINGERPRINTS);
+        }
+
+        block.writeVarint(fingerprints.size());
+        block.flushTo(out, BLOCK_END);
+        out.flush();
+    }
+
+    private static void addString(Map<String, Integer> strings, List<String> stringList, String s) {
+        if (s != null && !strings.containsKey(s)) {
+            strings.put(s, stringList.size());
+            stringList.add(s);
+        }
+    }
+
+    private static int refOf(Map<String, Integer> strings, String s) {
+        return s == null ? 0 : strings.get(s) + 1;
+    }
+
+    private static int bssidRefOf(String bssid, LongIntHashMap macRefs, int macCount,
+                                  Map<String, Integer> irregularRefs) {
+        if (bssid == null) return 0;
+        long mac = canonicalMacOf(bssid);
+        return mac >= 0 ? macRefs.get(mac, -1) + 1 : macCount + irregularRefs.get(bssid) + 1;
+    }
+
+    /**
+     * 规范写法（小写十六进制、冒号分隔）的BSSID解析为MAC按6字节存储；其他写法返回-1，按原字符串存储，读回时写法不变
+     */
+    private static long canonicalMacOf(String bssid) {
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        if (mac < 0) return -1;
+        for (int i = 0; i < bssid.length(); i++) {
+            char c = bssid.charAt(i);
+            if (i % 3 == 2 ? c != ':' : c >= 'A' && c <= 'F') return -1;
+        }
+        return mac;
+    }
+
+    // ==================== 读取 ====================
+    /**
+     * 读取二进制指纹库，每条指纹解码完即交给接收方
+     * @return 交给接收方的指纹数
+     * @throws IOException 文件头或版本不符、块校验失败、文件被截断
+     */
+    int read(InputStream inputStream, FingerprintSink sink) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("不是二进制指纹库文件");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的指纹库版本：" + version);
+        }
+
+        BlockReader block = new BlockReader();
+        String[] strings = new String[0];
+        String[] pooledSsids = new String[0]; // 按需驻留：只有用作SSID的字符串才放入字典
+        int[] bssidIds = new int[0];
+        String[] bssidSpellings = new String[0]; // 按字符串存储的BSSID（非标准格式或非规范写法）
+        int count = 0;
+        try {
+            while (true) {
+                int type = block.load(in);
+                switch (type) {
+                    case BLOCK_STRINGS:
+                        strings = new String[block.readVarint()];
+                        for (int i = 0; i < strings.length; i++) {
+                            strings[i] = block.readString(block.readVarint());
+                        }
+                        pooledSsids = new String[strings.length];
+                        break;
+                    case BLOCK_BSSIDS:
+                        BssidDictionary dictionary = BssidDictionary.getInstance();
+                        int macCount = block.readVarint();
+                        bssidIds = new int[macCount];
+                        for (int i = 0; i < macCount; i++) {
+                            bssidIds[i] = dictionary.idOfMac(block.readMac());
+                        }
+                        int irregularCount = block.readVarint();
+                        bssidIds = Arrays.copyOf(bssidIds, macCount + irregularCount);
+                        bssidSpellings = new String[macCount + irregularCount];
+                        for (int i = 0; i < irregularCount; i++) {
+                            String bssid = strings[block.readVarint() - 1];
+                            bssidIds[macCount + i] = dictionary.idOf(bssid);
+                            bssidSpellings[macCount + i] = bssid;
+                        }
+                        break;
+                    case BLOCK_FINGERPRINTS:
+                        int n = block.readVarint();
+                        for (int i = 0; i < n; i++) {
+                            sink.accept(readFingerprint(block, strings, pooledSsids, bssidIds, bssidSpellings));
+                            count++;
+                        }
+                        break;
+                    case BLOCK_END:
+                        int expected = block.readVarint();
+                        if (expected != count) {
+                            throw new IOException("指纹数不符：应为" + expected + "，实际" + count);
+                        }
+                        return count;
+                    default:
+                        break; // 未知扩展块：已通过校验，直接跳过
+                }
+            }
+        } catch (RuntimeException e) {
+            // 校验通过但内容不一致（下标越界等），视为格式错误
+            throw new IOException("指纹库格式错误：" + e, e);
+        }
+    }
+
+    private static WifiFingerprint readFingerprint(BlockReader block, String[] strings, String[] pooledSsids,
+                                                   int[] bssidIds, String[] bssidSpellings) {
+        WifiFingerprint fp = new WifiFingerprint();
+        fp.setPixelX(block.readDouble());
+        fp.setPixelY(block.readDouble());
+        int zigzag = block.readVarint();
+        fp.setFloor((zigzag >>> 1) ^ -(zigzag & 1));
+        fp.setZone(stringOf(strings, block.readVarint()));
+        fp.setLabel(stringOf(strings, block.readVarint()));
+        fp.setPath(stringOf(strings, block.readVarint()));
+
+        int wifiCount = block.readVarint();
+        List<FilteredWifi> wifis = new ArrayList<>(wifiCount);
+        for (int j = 0; j < wifiCount; j++) {
+            int flags = block.readByte();
+            int bssidRef = block.readVarint();
+            int ssidRef = block.readVarint();
+            int rssi = block.readByte();
+            int frequency = 0;
+            int channelWidth = 0;
+            if ((flags & AP_HAS_CHANNEL) != 0) {
+                frequency = block.readVarint();
+                channelWidth = block.readVarint();
+            }
+            String ssid = null;
+            if (ssidRef > 0) {
+                ssid = pooledSsids[ssidRef - 1];
+                if (ssid == null) {
+                    ssid = BssidDictionary.getInstance().internSsid(strings[ssidRef - 1]);
+                    pooledSsids[ssidRef - 1] = ssid;
+                }
+            }
+            int bssidId = bssidRef > 0 ? bssidIds[bssidRef - 1] : BssidDictionary.NO_ID;
+            FilteredWifi wifi = new FilteredWifi(ssid, bssidId, rssi, frequency, channelWidth);
+            if (bssidRef > 0 && bssidSpellings[bssidRef - 1] != null) {
+                wifi.setBssid(bssidSpellings[bssidRef - 1]);
+            }
+            if ((flags & AP_HAS_VARIANCE) != 0) {
+                wifi.setRssiVariance(Float.intBitsToFloat(block.readInt()));
+            }
+            wifis.add(wifi);
+        }
+        fp.setFilteredWifis(wifis);
+        return fp;
+    }
+
+    private static String stringOf(String[] strings, int ref) {
+        return ref > 0 ? strings[ref - 1] : null;
+    }
+
+    private static void writeStreamVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readStreamVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("文件不完整");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("varint过长");
+    }
+
+    /**
+     * 块负载的写缓冲（跨块复用）
+     */
+    private static final class BlockWriter {
+        private final CRC32 crc = new CRC32();
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buf[size++] = (byte) value;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buf[size++] = (byte) (value >>> 24);
+            buf[size++] = (byte) (value >>> 16);
+            buf[size++] = (byte) (value >>> 8);
+            buf[size++] = (byte) value;
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        }
+
+        void writeMac(long mac) {
+            ensure(6);
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (mac >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /**
+         * 以指定类型写出当前块并清空缓冲
+         */
+        void flushTo(OutputStream out, int type) throws IOException {
+            out.write(type);
+            writeStreamVarint(out, size);
+            out.write(buf, 0, size);
+            crc.reset();
+            crc.update(type);
+            crc.update(buf, 0, size);
+            int value = (int) crc.getValue();
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+            size = 0;
+        }
+    }
+
+    /**
+     * 块负载的读缓冲（跨块复用），载入时校验CRC
+     */
+    private static final class BlockReader {
+        private final CRC32 crc = new CRC32();
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+
+        /**
+         * 读入下一块并校验
+         * @return 块类型
+         */
+        int load(DataInputStream in) throws IOException {
+            int type = in.read();
+            if (type < 0) throw new EOFException("文件不完整：缺少结束块");
+            int length = readStreamVarint(in);
+            if (length < 0 || length > MAX_BLOCK_SIZE) {
+                throw new IOException("块长度无效：" + length);
+            }
+            if (length > buf.length) buf = new byte[length];
+            int expected;
+            try {
+                in.readFully(buf, 0, length);
+                expected = in.readInt();
+            } catch (EOFException e) {
+                throw new EOFException("文件不完整：块被截断（类型" + type + "）");
+            }
+            crc.reset();
+            crc.update(type);
+            crc.update(buf, 0, length);
+            if ((int) crc.getValue() != expected) {
+                throw new IOException("块校验失败（类型" + type + "）");
+            }
+            pos = 0;
+            limit = length;
+            return type;
+        }
+
+        int readByte() {
+            if (pos >= limit) throw new IndexOutOfBoundsException("块数据不足");
+            return buf[pos++];
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalStateException("varint过长");
+        }
+
+        int readInt() {
+            return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16
+                    | (readByte() & 0xFF) << 8 | (readByte() & 0xFF);
+        }
+
+        double readDouble() {
+            long high = readInt() & 0xFFFFFFFFL;
+            long low = readInt() & 0xFFFFFFFFL;
+            return Double.longBitsToDouble(high << 32 | low);
+        }
+
+        long readMac() {
+            long mac = 0;
+            for (int i = 0; i < 6; i++) {
+                mac = mac << 8 | (readByte() & 0xFF);
+            }
+            return mac;
+        }
+
+        String readString(int length) {
+            if (length < 0 || length > limit - pos) throw new IndexOutOfBoundsException("块数据不足");
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.mywifiscanner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 指纹倒排索引：BSSID字典ID -> 包含该AP的指纹ID列表，并保存每条指纹的编译向量
+ * 指纹ID即指纹在本快照中的下标；快照不可变，指纹库变化时由FingerprintManager重建
+ */
+public class FingerprintIndex implements FingerprintLibrary {
+    private static final int[] NO_POSTINGS = new int[0];
+    // 指纹未记录方差时假定的同一位置RSSI波动（dB²，约4dB标准差）
+    private static final double DEFAULT_WITHIN_VARIANCE = 16.0;
+    // 计算区分度时指纹中缺失的AP视为该信号强度（低于接收灵敏度）
+    private static final int ABSENT_RSSI = -100;
+
+    private final WifiFingerprint[] fingerprints;
+    private final CompiledFingerprint[] compiled; // 与fingerprints按ID对应
+    private final int[][] postings; // BSSID字典ID -> 升序指纹ID
+    private final byte[] bandById;  // BSSID字典ID -> 频段（库中任一条记录有频率即确定）
+    private final int[] groupById;  // BSSID字典ID -> 虚拟AP组代表ID（不分组时为null）
+    private final double[] bandWeights; // 各频段融合权重（0-1，由指纹库估计）
+    private final float[] discriminativeness; // BSSID字典ID -> 区分度（0-1）
+    private final float meanDiscriminativeness; // 库中AP区分度的平均值（库外AP使用）
+    private List<RegionSignature> regionHierarchy; // 楼层->区域签名，首次分层定位时构建
+
+    FingerprintIndex(List<WifiFingerprint> source) {
+        this(source, false);
+    }
+
+    /**
+     * @param groupVirtualAps 是否把同一射频的多个虚拟BSSID合并为一个AP参与匹配
+     */
+    FingerprintIndex(List<WifiFingerprint> source, boolean groupVirtualAps) {
+        fingerprints = source.toArray(new WifiFingerprint[0]);
+        compiled = new CompiledFingerprint[fingerprints.length];
+
+        // 先确定每个AP的频段：旧指纹没有频率，同一AP只要在任一指纹中记录过频率就以其为准
+        byte[] bands = new byte[BssidDictionary.getInstance().idLimit()];
+        boolean[] present = new boolean[bands.length];
+        for (WifiFingerprint fp : fingerprints) {
+            if (fp.getFilteredWifis() == null) continue;
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                if (wifi == null) continue;
+                int apId = wifi.getBssidId();
+                if (apId >= bands.length) {
+                    bands = Arrays.copyOf(bands, Math.max(apId + 1, bands.length * 2));
+                    present = Arrays.copyOf(present, bands.length);
+                }
+                present[apId] = true;
+                int band = wifi.getBand();
+                if (band != WifiBand.UNKNOWN) bands[apId] = (byte) band;
+            }
+        }
+        bandById = bands;
+        // 频段确定后再分组（键含频段），编译时各成员以组代表ID出现，同组取最强信号
+        groupById = groupVirtualAps ? VirtualApGroups.buildGroupMap(present, bandById) : null;
+
+        for (int id = 0; id < fingerprints.length; id++) {
+            compiled[id] = CompiledFingerprint.compile(fingerprints[id].getFilteredWifis(), bandById, groupById);
+        }
+        ApStatistics stats = new ApStatistics(compiled, BssidDictionary.getInstance().idLimit());
+        bandWeights = stats.estimateBandWeights();
+        discriminativeness = stats.scoreDiscriminativeness(compiled.length);
+        double sum = 0;
+        int known = 0;
+        for (int apId = 0; apId < discriminativeness.length; apId++) {
+            if (stats.counts[apId] == 0) continue;
+            sum += discriminativeness[apId];
+            known++;
+        }
+        meanDiscriminativeness = known > 0 ? (float) (sum / known) : 0;
+
+        // 第一遍：统计每个AP出现的指纹数（编译结果已按ID去重，编译后再取ID上界）
+        int[] counts = new int[BssidDictionary.getInstance().idLimit()];
+        for (CompiledFingerprint fp : compiled) {
+            for (int apId : fp.apIds) {
+                counts[apId]++;
+            }
+        }
+
+        // 第二遍：按指纹ID顺序填充，列表天然升序
+        postings = new int[counts.length][];
+        for (int apId = 0; apId < counts.length; apId++) {
+            postings[apId] = counts[apId] == 0 ? NO_POSTINGS : new int[counts[apId]];
+            counts[apId] = 0;
+        }
+        for (int id = 0; id < compiled.length; id++) {
+            for (int apId : compiled[id].apIds) {
+                postings[apId][counts[apId]++] = id;
+            }
+        }
+    }
+
+    /**
+     * 库中每个AP的RSSI汇总（建索引时计算一次，用于估计频段权重与AP区分度）
+     */
+    private static final class ApStatistics {
+        final long[] sums;
+        final long[] sumSquares;
+        final int[] counts;        // 出现该AP的指纹数
+        final double[] withinSums; // 各指纹中该AP的RSSI方差之和（同一位置的波动）
+        final byte[] bands;
+
+        ApStatistics(CompiledFingerprint[] compiled, int idLimit) {
+            sums = new long[idLimit];
+            sumSquares = new long[idLimit];
+            counts = new int[idLimit];
+            withinSums = new double[idLimit];
+            bands = new byte[idLimit];
+            for (CompiledFingerprint fp : compiled) {
+                for (int band = 0; band < WifiBand.COUNT; band++) {
+                    for (int i = fp.bandStart(band); i < fp.bandEnd(band); i++) {
+                        int apId = fp.apIds[i];
+                        int rssi = fp.rssis[i];
+                        sums[apId] += rssi;
+                        sumSquares[apId] += rssi * rssi;
+                        counts[apId]++;
+                        int std = fp.rssiStds[i];
+                        withinSums[apId] += std > 0 ? std * std : DEFAULT_WITHIN_VARIANCE;
+                        bands[apId] = (byte) band;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 按频段估计融合权重：AP在不同指纹点间的RSSI方差（位置区分度）相对于同一位置的波动越大，该频段越可靠
+         * 频段权重取该频段各AP的 between / (between + within) 的平均值；库中无数据的频段取其余频段的平均
+         */
+        double[] estimateBandWeights() {
+            double[] weights = new double[WifiBand.COUNT];
+            int[] apCounts = new int[WifiBand.COUNT];
+            for (int apId = 0; apId < counts.length; apId++) {
+                int n = counts[apId];
+                if (n < 2) continue; // 只出现在一个点的AP无法估计点间差异
+                double mean = (double) sums[apId] / n;
+                double between = Math.max(0, (double) sumSquares[apId] / n - mean * mean);
+                double within = withinSums[apId] / n;
+                weights[bands[apId]] += between / (between + within);
+                apCounts[bands[apId]]++;
+            }
+
+            double known = 0;
+            int knownBands = 0;
+            for (int band = 0; band < WifiBand.COUNT; band++) {
+                if (apCounts[band] == 0) continue;
+                weights[band] /= apCounts[band];
+                known += weights[band];
+                knownBands++;
+            }
+            double fallback = knownBands > 0 && known > 0 ? known / knownBands : 1.0;
+            for (int band = 0; band < WifiBand.COUNT; band++) {
+                if (apCounts[band] == 0 || weights[band] <= 0) weights[band] = fallback;
+            }
+            return weights;
+        }
+
+        /**
+         * AP区分度：在全部指纹上（缺失记为ABSENT_RSSI）的点间方差占 点间方差 + 点内波动 的比例
+         * 处处可见且信号相近的AP接近0，只在少数位置可见或信号随位置变化大的AP接近1
+         */
+        float[] scoreDiscriminativeness(int fingerprintCount) {
+            float[] scores = new float[counts.length];
+            if (fingerprintCount < 2) return scores;
+            for (int apId = 0; apId < counts.length; apId++) {
+                int n = counts[apId];
+                if (n == 0) continue;
+                int absent = fingerprintCount - n;
+                double mean = (sums[apId] + (double) absent * ABSENT_RSSI) / fingerprintCount;
+                double meanSquare = (sumSquares[apId] + (double) absent * ABSENT_RSSI * ABSENT_RSSI)
+                        / fingerprintCount;
+                double between = Math.max(0, meanSquare - mean * mean);
+                double within = withinSums[apId] / n;
+                scores[apId] = (float) (between / (between + within));
+            }
+            return scores;
+        }
+    }
+
+    /**
+     * 按本快照的频段表与虚拟AP分组编译当前扫描（与库中同一AP保持一致）
+     */
+    @Override
+    public CompiledFingerprint compileQuery(List<FilteredWifi> currentWifis) {
+        return CompiledFingerprint.compile(currentWifis, bandById, groupById);
+    }
+
+    @Override
+    public double similarity(CompiledFingerprint current, int id) {
+        return FingerprintMatcher.calculateOptimizedSimilarity(current, compiled[id], bandWeights);
+    }
+
+    /**
+     * 各频段的融合权重（以WifiBand常量为下标）
+     */
+    public double[] getBandWeights() {
+        return bandWeights;
+    }
+
+    /**
+     * AP的区分度（0-1）；库中没有的AP返回库内平均值
+     */
+    public double getDiscriminativeness(int apId) {
+        apId = groupOf(apId);
+        return apId < postings.length && postings[apId].length > 0
+                ? discriminativeness[apId] : meanDiscriminativeness;
+    }
+
+    /**
+     * AP所在虚拟AP组的代表ID（未分组或库外AP返回自身）
+     */
+    int groupOf(int apId) {
+        return groupById != null && apId < groupById.length ? groupById[apId] : apId;
+    }
+
+    /**
+     * 快照中的指纹数量
+     */
+    @Override
+    public int size() {
+        return fingerprints.length;
+    }
+
+    /**
+     * 按ID获取指纹
+     */
+    @Override
+    public WifiFingerprint get(int id) {
+        return fingerprints[id];
+    }
+
+    /**
+     * 按ID获取编译后的指纹向量
+     */
+    public CompiledFingerprint getCompiled(int id) {
+        return compiled[id];
+    }
+
+    /**
+     * 获取楼层/区域两级签名（按需构建，之后随快照复用）
+     */
+    @Override
+    public synchronized List<RegionSignature> getRegionHierarchy() {
+        if (regionHierarchy == null) {
+            regionHierarchy = RegionSignature.buildHierarchy(fingerprints, compiled);
+        }
+        return regionHierarchy;
+    }
+
+    /**
+     * 查找与当前扫描至少共享minSharedAps个AP的指纹
+     * @param currentWifis 当前扫描的WiFi列表
+     * @param minSharedAps 最少共享AP数量（小于1时按1处理）
+     * @return 升序排列的候选指纹ID
+     */
+    @Override
+    public int[] findCandidates(List<FilteredWifi> currentWifis, int minSharedAps) {
+        if (currentWifis == null || currentWifis.isEmpty() || fingerprints.length == 0) {
+            return new int[0];
+        }
+        int required = Math.max(1, minSharedAps);
+
+        // 当前扫描的AP映射到组代表ID并去重（同组的多个虚拟BSSID、大小写不同的同一BSSID都只算一个共享AP）
+        int[] apIds = new int[currentWifis.size()];
+        int apCount = 0;
+        for (FilteredWifi wifi : currentWifis) {
+            if (wifi != null) apIds[apCount++] = groupOf(wifi.getBssidId());
+        }
+        Arrays.sort(apIds, 0, apCount); // 排序后重复ID相邻，下面只需跳过相邻重复
+
+        // 统计每个指纹与当前扫描共享的AP数
+        int[] sharedCounts = new int[fingerprints.length];
+        int candidateCount = 0;
+        for (int i = 0; i < apCount; i++) {
+            int apId = apIds[i];
+            if (i > 0 && apId == apIds[i - 1]) continue;
+            if (apId >= postings.length) continue; // 建索引后才出现的AP，库中必然没有
+            for (int id : postings[apId]) {
+                if (++sharedCounts[id] == required) {
+                    candidateCount++;
+                }
+            }
+        }
+
+        int[] candidates = new int[candidateCount];
+        int n = 0;
+        for (int id = 0; id < sharedCounts.length && n < candidateCount; id++) {
+            if (sharedCounts[id] >= required) {
+                candidates[n++] = id;
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.mywifiscanner;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 指纹库的追加日志（库文件名 + ".journal"）：采集、修改、删除各追加一条记录，单次保存的I/O与库大小无关
+ * 库文件是上次合并时的快照，加载时先读库文件再按顺序重放日志；合并即把当前指纹库整体写回库文件并清空日志，
+ * 日志超过库文件大小时才需要合并，均摊下每次保存仍为常数开销
+ *
+ * 每行一条JSON记录，首行为头部，记下所属库文件的长度与CRC32：库文件被合并或在别处改写后旧日志自动作废，
+ * 不会被重复应用（修改时间不可靠：复制、恢复备份会改变它，同一秒内的两次写回又可能相同）；
+ * 崩溃时写了一半的末行在重放时丢弃、在下次打开时截掉
+ *   {"base":长度,"crc":CRC32}
+ *   {"op":"add","fingerprint":{...}}
+ *   {"op":"update","index":3,"fingerprint":{...}}
+ *   {"op":"delete","index":3}
+ * 指纹以记录时在列表中的下标标识，重放按原顺序执行，下标与记录时一致
+ * 本类不输出日志：重放情况由getReplayedRecords等返回，追加失败由返回值告知，由调用方记录
+ */
+public final class FingerprintJournal implements Closeable {
+    static final String EXTENSION = ".journal";
+    // 日志小于此大小时不合并，避免小库每采集一个点就整体重写
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+
+    private static final String OP_ADD = "add";
+    private static final String OP_UPDATE = "update";
+    private static final String OP_DELETE = "delete";
+
+    private final FileOutputStream out;
+    private long baseLength;
+    private long length;
+    private boolean failed; // 追加失败后不再写入，等待合并
+    private int replayedRecords;
+    private long droppedBytes;
+    private boolean staleDiscarded;
+
+    private FingerprintJournal(FileOutputStream out, long baseLength, long length) {
+        this.out = out;
+        this.baseLength = baseLength;
+        this.length = length;
+    }
+
+    private static File journalFileOf(File baseFile) {
+        return new File(baseFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * 重放并打开库文件的日志：按顺序把日志应用到刚从库文件加载的指纹列表上，之后的记录追加在已应用部分之后
+     * 已作废的日志被清空（列表不变），不完整或无法应用的尾部被截掉
+     */
+    public static FingerprintJournal open(File baseFile, List<WifiFingerprint> fingerprints) throws IOException {
+        File file = journalFileOf(baseFile);
+        BaseIdentity base = BaseIdentity.of(baseFile);
+        ScanResult replayed = replay(file, base, fingerprints);
+        long validLength = replayed.validLength;
+        long fileLength = file.length();
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.getChannel().truncate(validLength);
+            FingerprintJournal journal = new FingerprintJournal(out, base.length, validLength);
+            journal.replayedRecords = replayed.records;
+            journal.droppedBytes = fileLength - validLength;
+            journal.staleDiscarded = replayed.stale;
+            if (validLength == 0) {
+                journal.writeHeader(base);
+            }
+            return journal;
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开时重放的记录数
+     */
+    public int getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * 打开时截掉的字节数：作废的整个日志，或不完整、无法应用的尾部
+     */
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * 打开时日志头部与库文件不符（库文件已合并或被改写），整个日志被作废
+     */
+    public boolean isStaleDiscarded() {
+        return staleDiscarded;
+    }
+
+    // ==================== 追加 ====================
+    /**
+     * 以下追加方法返回false表示记录未写入（本次或之前追加失败），该修改只能等合并时整体写回
+     */
+    public boolean appendAdd(WifiFingerprint fingerprint) {
+        return append(OP_ADD, -1, fingerprint);
+    }
+
+    public boolean appendUpdate(int index, WifiFingerprint fingerprint) {
+        return append(OP_UPDATE, index, fingerprint);
+    }
+
+    public boolean appendDelete(int index) {
+        return append(OP_DELETE, index, null);
+    }
+
+    private boolean append(String op, int index, WifiFingerprint fingerprint) {
+        if (failed) return false;
+        try {
+            StringWriter text = new StringWriter();
+            JsonWriter writer = new JsonWriter(text);
+            writer.beginObject();
+            writer.name("op").value(op);
+            if (index >= 0) writer.name("index").value(index);
+            if (fingerprint != null) {
+                writer.name("fingerprint");
+                FingerprintTypeAdapters.FINGERPRINT.write(writer, fingerprint);
+            }
+            writer.endObject();
+            writer.flush();
+            writeLine(text.toString());
+            return true;
+        } catch (IOException e) {
+            failed = true;
+            return false;
+        }
+    }
+
+    private void writeHeader(BaseIdentity base) throws IOException {
+        writeLine("{\"base\":" + base.length + ",\"crc\":" + base.crc + "}");
+    }
+
+    // 整行一次写出并落盘，崩溃时最多留下一条不完整的末行
+    private void writeLine(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        out.getFD().sync();
+        length += bytes.length;
+    }
+
+    // ==================== 合并 ====================
+    /**
+     * 是否应合并：日志已超过库文件大小，或追加失败过
+     */
+    public boolean needsCompaction() {
+        return failed || length > Math.max(baseLength, MIN_COMPACT_BYTES);
+    }
+
+    /**
+     * 库文件已整体写回且落盘（含目录项）后调用：清空日志并记录新库文件的头部
+     * 写回与清空之间崩溃时，旧日志的头部与新库文件不符，下次加载会被作废，不会重复应用
+     */
+    public void reset(File baseFile) throws IOException {
+        failed = true; // 头部写好之前不接受追加
+        BaseIdentity base = BaseIdentity.of(baseFile);
+        out.getChannel().truncate(0);
+        length = 0;
+        baseLength = base.length;
+        writeHeader(base);
+        failed = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // ==================== 读取 ====================
+    /**
+     * 库文件的标识：长度与内容的CRC32（不存在的库文件长度与校验和均为0）
+     */
+    private static final class BaseIdentity {
+        final long length;
+        final long crc;
+
+        private BaseIdentity(long length, long crc) {
+            this.length = length;
+            this.crc = crc;
+        }
+
+        static BaseIdentity of(File baseFile) throws IOException {
+            if (!baseFile.exists()) return new BaseIdentity(0, 0);
+            CRC32 crc = new CRC32();
+            long length = 0;
+            try (InputStream in = new FileInputStream(baseFile)) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, n);
+                    length += n;
+                }
+            }
+            return new BaseIdentity(length, crc.getValue());
+        }
+    }
+
+    private static final class ScanResult {
+        long validLength; // 头部与已应用记录的总字节数（头部不符时为0）
+        int records;
+        boolean stale;
+    }
+
+    /**
+     * 逐行读取日志：校验头部后依次应用各记录，遇到不完整或无法应用的记录即停止
+     */
+    private static ScanResult replay(File file, BaseIdentity base, List<WifiFingerprint> target) throws IOException {
+        ScanResult result = new ScanResult();
+        if (!file.exists()) return result;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            boolean headerChecked = false;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                line.reset();
+                if (!headerChecked) {
+                    if (!matchesBase(text, base)) {
+                        result.stale = true;
+                        return result;
+                    }
+                    headerChecked = true;
+                } else if (applyRecord(text, target)) {
+                    result.records++;
+                } else {
+                    return result; // 无法应用的记录及其后内容都不再重放
+                }
+                result.validLength = offset;
+            }
+            // 末尾没有换行的内容是写了一半的记录，不计入validLength
+        }
+        return result;
+    }
+
+    private static boolean matchesBase(String header, BaseIdentity base) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(header));
+            long length = -1, crc = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("base".equals(name)) {
+                    length = reader.nextLong();
+                } else if ("crc".equals(name)) {
+                    crc = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return length == base.length && crc == base.crc;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析并应用一条记录
+     * @return 记录完整且下标有效
+     */
+    private static boolean applyRecord(String text, List<WifiFingerprint> target) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(text));
+            String op = null;
+            int index = -1;
+            WifiFingerprint fingerprint = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("op".equals(name)) {
+                    op = reader.nextString();
+                } else if ("index".equals(name)) {
+                    index = reader.nextInt();
+                } else if ("fingerprint".equals(name) && reader.peek() != JsonToken.NULL) {
+                    fingerprint = FingerprintTypeAdapters.FINGERPRINT.read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (fingerprint != null && fingerprint.getFilteredWifis() == null) {
+                fingerprint.setFilteredWifis(new ArrayList<>());
+            }
+
+            if (OP_ADD.equals(op) && fingerprint != null) {
+                target.add(fingerprint);
+            } else if (OP_UPDATE.equals(op) && fingerprint != null && index >= 0 && index < target.size()) {
+                target.set(index, fingerprint);
+            } else if (OP_DELETE.equals(op) && index >= 0 && index < target.size()) {
+                target.remove(index);
+            } else {
+                return false;
+            }
+            return true;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return false;
+        }
+    }
+}
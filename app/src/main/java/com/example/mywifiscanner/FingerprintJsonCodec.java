@@ -0,0 +1,87 @@
+package com.example.mywifiscanner;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 指纹库JSON的流式编解码：在带缓冲的UTF-8字符流上用JsonReader/JsonWriter逐条读写，字段由手写TypeAdapter直接处理
+ * 读取时每条指纹解析完即交给接收方，写入时直接输出到缓冲流，都不会构造整个文件的字符串；
+ * 字节按流编解码，多字节字符不会在缓冲边界被截断
+ */
+final class FingerprintJsonCodec {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 读取指纹数组（空文件或顶层为null视为空库）；filteredWifis缺失的指纹补为空列表，数组中的null元素被跳过
+     * @return 交给接收方的指纹数
+     * @throws JsonSyntaxException 顶层不是数组或元素格式错误
+     */
+    int read(InputStream inputStream, FingerprintSink sink) throws IOException {
+        JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE));
+        reader.setLenient(true); // 与Gson.fromJson(String)的容错程度一致
+        try {
+            JsonToken token;
+            try {
+                token = reader.peek();
+            } catch (EOFException e) {
+                return 0; // 空文件（或只有空白）
+            }
+            if (token == JsonToken.NULL) {
+                return 0;
+            }
+            if (token != JsonToken.BEGIN_ARRAY) {
+                throw new JsonSyntaxException("指纹库顶层应为数组，实际为" + token);
+            }
+
+            int count = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                WifiFingerprint fingerprint = FingerprintTypeAdapters.FINGERPRINT.read(reader);
+                if (fingerprint == null) continue;
+                if (fingerprint.getFilteredWifis() == null) {
+                    fingerprint.setFilteredWifis(new ArrayList<>());
+                }
+                sink.accept(fingerprint);
+                count++;
+            }
+            reader.endArray();
+            return count;
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            // 与Gson.fromJson一致：格式错误统一报告为JsonSyntaxException
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * 将指纹列表以JSON数组写入输出流（完成后flush，不关闭输出流）
+     */
+    void write(OutputStream outputStream, List<WifiFingerprint> fingerprints) throws IOException {
+        // JsonWriter按token小段写出，先在字符缓冲中攒批，避免每段都经过一次字符编码器
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new BufferedOutputStream(outputStream, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE));
+        writer.setHtmlSafe(true); // 与new Gson()默认的HTML转义一致（SSID中的&<>='）
+        writer.beginArray();
+        for (WifiFingerprint fingerprint : fingerprints) {
+            FingerprintTypeAdapters.FINGERPRINT.write(writer, fingerprint);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+}
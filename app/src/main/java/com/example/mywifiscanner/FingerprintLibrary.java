@@ -0,0 +1,40 @@
+package com.example.mywifiscanner;
+
+import java.util.List;
+
+/**
+ * 定位使用的只读指纹库视图：指纹以 [0, size()) 的ID访问
+ * 实现：{@link FingerprintIndex}（堆上指纹列表的索引快照）、{@link MappedFingerprintStore}（内存映射的只读库）
+ */
+public interface FingerprintLibrary {
+    /**
+     * 指纹数量
+     */
+    int size();
+
+    /**
+     * 查找与当前扫描至少共享minSharedAps个AP的指纹
+     * @return 升序排列的候选指纹ID
+     */
+    int[] findCandidates(List<FilteredWifi> currentWifis, int minSharedAps);
+
+    /**
+     * 按本库的AP编号与频段编译当前扫描
+     */
+    CompiledFingerprint compileQuery(List<FilteredWifi> currentWifis);
+
+    /**
+     * 当前扫描（compileQuery的结果）与指纹id的相似度（0-1），可被多个线程并发调用
+     */
+    double similarity(CompiledFingerprint current, int id);
+
+    /**
+     * 按ID获取指纹（内存映射库每次调用都会新建对象，只应用于少量结果）
+     */
+    WifiFingerprint get(int id);
+
+    /**
+     * 楼层/区域两级签名；不支持分层定位的库返回空列表
+     */
+    List<RegionSignature> getRegionHierarchy();
+}
@@ -0,0 +1,232 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 指纹定位的匹配流程：一轮扫描 -> 定位流水线过滤 -> 候选筛选 -> 分层匹配 -> kNN插值
+ * 不依赖Android，可由回放/仿真扫描源在JVM上直接驱动；设备相关部分（权限、扫描调度、主线程回调）在WifiLocationManager
+ * 未匹配时返回null，原因可由 {@link #getLastFailure()} 取得（由调用方决定是否记录日志）
+ */
+public class FingerprintLocator {
+    private volatile LocateConfig config; // 定位配置快照，配置变化时整体替换
+
+    // kNN候选缓冲（复用，避免每次定位分配）
+    private final TopKHeap topK = new TopKHeap(ConfigManager.MAX_KNN_K);
+    private final int[] topIds = new int[ConfigManager.MAX_KNN_K];
+    private final double[] topScores = new double[ConfigManager.MAX_KNN_K];
+
+    // 连续定位的滑动窗口平滑（窗口为1时不使用）与单轮汇总器，跨定位流水线复用
+    private final SlidingScanSmoother smoother = new SlidingScanSmoother();
+    private final StreamingScanAggregator locateAggregator = new StreamingScanAggregator();
+    private ScanPipeline locatePipeline;       // 按pipelineConfig构建，配置变化后重建
+    private LocateConfig pipelineConfig;
+    private String lastFailure;
+
+    public FingerprintLocator(LocateConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 替换定位配置快照（任意线程可调用，从下一次定位开始生效）
+     */
+    public void setConfig(LocateConfig config) {
+        this.config = config;
+    }
+
+    public LocateConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 由一轮扫描结果完成过滤与匹配（同步执行）
+     * @param library 指纹库
+     * @return 定位结果；无匹配时返回null
+     */
+    public synchronized WifiLocationManager.LocationResult locate(FingerprintLibrary library,
+                                                                  List<ScanRecord> currentScans) {
+        lastFailure = null;
+        if (currentScans == null || currentScans.isEmpty()) {
+            lastFailure = "扫描结果为空";
+            return null;
+        }
+
+        // 本次定位的各步骤使用同一份配置快照
+        LocateConfig config = this.config;
+        List<FilteredWifi> currentWifis = filterCurrentWifi(config, currentScans);
+        if (currentWifis.isEmpty()) {
+            lastFailure = "过滤后无可用WiFi";
+            return null;
+        }
+
+        try {
+            return match(library, config, currentWifis);
+        } catch (MappedFingerprintStore.CorruptedFileException e) {
+            lastFailure = e.getMessage(); // 损坏的映射库只让本次定位失败，不在后台线程上抛出
+            return null;
+        }
+    }
+
+    /**
+     * 最近一次定位未得到结果的原因（得到结果时为null）
+     */
+    public synchronized String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * 经定位流水线过滤当前扫描（流水线只在配置快照变化后重建，平滑窗口与汇总器跨次保留）
+     */
+    private List<FilteredWifi> filterCurrentWifi(LocateConfig config, List<ScanRecord> currentScans) {
+        if (locatePipeline == null || pipelineConfig != config) {
+            locatePipeline = config.newLocatePipeline(smoother, locateAggregator);
+            pipelineConfig = config;
+        }
+        return locatePipeline.process(currentScans);
+    }
+
+    /**
+     * 与指纹库匹配 - kNN版本（保留相似度最高的k个候选，按相似度加权插值位置）
+     */
+    private WifiLocationManager.LocationResult match(FingerprintLibrary library, LocateConfig config,
+                                                     List<FilteredWifi> currentWifis) {
+        if (library.size() == 0) {
+            lastFailure = "指纹库为空";
+            return null;
+        }
+
+        // 动态阈值：根据指纹库大小调整（比固定0.6更灵活）
+        double threshold = calculateDynamicThreshold(library.size());
+
+        // 通过倒排索引只取与当前扫描共享AP的候选指纹，无共享AP的指纹相似度必为0
+        int[] candidates = library.findCandidates(currentWifis, config.getMinSharedAps());
+
+        // 当前扫描只编译一次（频段与指纹库对齐），与各候选指纹的编译向量逐频段有序归并
+        CompiledFingerprint current = library.compileQuery(currentWifis);
+
+        // 分层定位：先判定楼层、再判定区域，只在胜出区域（含容差范围内的区域）内精细匹配
+        int count = 0;
+        if (config.isHierarchicalEnabled()) {
+            int[] narrowed = narrowByFloorAndZone(library, current, candidates, config.getHierarchyMargin());
+            if (narrowed != candidates) {
+                count = scoreCandidates(library, current, narrowed, config.getKnnK());
+                if (count == 0 || topScores[0] <= threshold) {
+                    count = 0; // 分层匹配未达阈值，回退到全部候选
+                }
+            }
+        }
+        if (count == 0) {
+            count = scoreCandidates(library, current, candidates, config.getKnnK());
+        }
+
+        // 使用动态阈值判断（以最佳候选为准）
+        double bestSimilarity = count > 0 ? topScores[0] : 0;
+        if (bestSimilarity > threshold) {
+            return buildKnnResult(library, count);
+        }
+        lastFailure = "无匹配结果（候选" + candidates.length + "/" + library.size()
+                + "，最高相似度：" + bestSimilarity + "，阈值：" + threshold + "）";
+        return null;
+    }
+
+    /**
+     * 对候选打分，定长堆只保留前k名，无需对整个指纹库排序（候选多时自动并行）
+     * @return 前k名数量（结果按相似度降序写入topIds/topScores）
+     */
+    private int scoreCandidates(FingerprintLibrary library, CompiledFingerprint current, int[] candidates, int k) {
+        topK.reset(k);
+        FingerprintMatcher.match(library, current, candidates, topK);
+        return topK.drainDescending(topIds, topScores);
+    }
+
+    /**
+     * 按楼层、区域签名逐级筛选候选指纹
+     * @param margin 得分不低于最佳得分(1 - margin)倍的楼层/区域也保留
+     * @return 筛选后的候选；指纹库只有单一楼层区域或无法判定时原样返回candidates
+     */
+    private int[] narrowByFloorAndZone(FingerprintLibrary library, CompiledFingerprint current, int[] candidates,
+                                       double margin) {
+        List<RegionSignature> floors = library.getRegionHierarchy();
+        if (floors.isEmpty() || floors.size() == 1 && floors.get(0).getChildren().size() <= 1) {
+            return candidates;
+        }
+
+        List<RegionSignature> zones = new ArrayList<>();
+        for (RegionSignature floor : selectWithinMargin(floors, current, margin)) {
+            zones.addAll(selectWithinMargin(floor.getChildren(), current, margin));
+        }
+        if (zones.isEmpty()) {
+            return candidates;
+        }
+
+        boolean[] allowed = new boolean[library.size()];
+        for (RegionSignature zone : zones) {
+            for (int id : zone.getMembers()) allowed[id] = true;
+        }
+        int n = 0;
+        int[] narrowed = new int[candidates.length];
+        for (int id : candidates) {
+            if (allowed[id]) narrowed[n++] = id;
+        }
+        return Arrays.copyOf(narrowed, n);
+    }
+
+    /**
+     * 选出得分最高的区域及得分不低于最高分(1 - margin)倍的区域
+     */
+    private List<RegionSignature> selectWithinMargin(List<RegionSignature> regions,
+                                                     CompiledFingerprint current, double margin) {
+        double[] scores = new double[regions.size()];
+        double best = 0;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = regions.get(i).score(current);
+            best = Math.max(best, scores[i]);
+        }
+        List<RegionSignature> selected = new ArrayList<>();
+        if (best <= 0) return selected;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0 && scores[i] >= best * (1 - margin)) {
+                selected.add(regions.get(i));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 由前k名候选构建定位结果：楼层取最佳候选的楼层，坐标为同楼层候选的相似度加权质心
+     * 置信度 = Σ同楼层相似度² / Σ全部相似度，即同楼层候选的加权平均相似度再乘以其权重占比
+     */
+    private WifiLocationManager.LocationResult buildKnnResult(FingerprintLibrary library, int count) {
+        int floor = library.get(topIds[0]).getFloor();
+        List<WifiLocationManager.Candidate> candidates = new ArrayList<>(count);
+        double weightSum = 0, totalWeight = 0, squaredWeightSum = 0;
+        double x = 0, y = 0;
+        for (int i = 0; i < count; i++) {
+            WifiFingerprint fp = library.get(topIds[i]);
+            double weight = topScores[i];
+            candidates.add(new WifiLocationManager.Candidate(fp, weight));
+            totalWeight += weight;
+            if (fp.getFloor() != floor) continue; // 跨楼层候选不参与插值
+            x += weight * fp.getPixelX();
+            y += weight * fp.getPixelY();
+            weightSum += weight;
+            squaredWeightSum += weight * weight;
+        }
+        return new WifiLocationManager.LocationResult(x / weightSum, y / weightSum, floor,
+                candidates, squaredWeightSum / totalWeight);
+    }
+
+    /**
+     * 计算动态相似度阈值（根据指纹库大小调整）
+     */
+    private double calculateDynamicThreshold(int fingerprintCount) {
+        if (fingerprintCount < 5) {
+            return 0.4; // 指纹库较小，降低阈值
+        } else if (fingerprintCount < 10) {
+            return 0.5;
+        } else {
+            return 0.6; // 指纹库较大，提高阈值以获得更精确匹配
+        }
+    }
+}
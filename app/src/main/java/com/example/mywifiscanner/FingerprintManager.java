@@ -1,8 +1,8 @@
 package com.example.mywifiscanner;
 
-import android.net.wifi.ScanResult;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -11,29 +11,52 @@ import java.util.Map;
 /**
  * 指纹管理模块：负责WiFi指纹的采集、保存、更新、查询等操作
  * 职责：管理指纹数据的存储、检索和转换，不涉及扫描和坐标计算
+ * 线程安全：UI线程修改指纹库的同时，后台定位线程可读取索引快照
+ * 后备存储：默认为堆上的指纹列表；也可切换为内存映射的只读库（useMappedLibrary），此时不能增删改指纹
+ * 增量保存：设置日志（setJournal）后，每次保存、更新、删除都追加一条日志记录，无需整体重写库文件
  */
 public class FingerprintManager {
     private static final String TAG = "FingerprintManager";
     private final List<WifiFingerprint> fingerprints = new ArrayList<>(); // 指纹列表
+    private FingerprintIndex index; // 倒排索引快照（指纹库变化后置空，下次使用时重建）
+    private boolean groupVirtualAps; // 匹配时合并同一射频的虚拟BSSID
+    private MappedFingerprintStore mappedStore; // 内存映射的只读库（非null时定位使用它，指纹列表为空）
+    private FingerprintJournal journal; // 当前库文件的增量日志（null表示不记录）
 
     // 构造方法简化，无依赖
     public FingerprintManager() {
     }
 
-    public static List<FilteredWifi> filterAndSortWifi(List<List<ScanResult>> allScans, ConfigManager configManager) {
-        return WifiDataProcessor.processMultipleScansWithMax(allScans, configManager);
+    /**
+     * 多轮扫描取每个AP的最强信号，按配置过滤并降序排列
+     */
+    public static List<FilteredWifi> filterAndSortWifi(List<List<ScanRecord>> allScans, ScanConfig config) {
+        ScanPipeline pipeline = ScanPipeline.builder()
+                .add(ScanStages.dedupe())
+                .aggregate(RssiAggregationMode.MAX)
+                .filter(config.getWifiThreshold(), config.getStabilityFilter())
+                .add(ScanStages.limitApCount(config.getMaxApsPerFingerprint(), ApRanking.RSSI, null))
+                .add(ScanStages.sortByRssi())
+                .build();
+        if (allScans != null) {
+            for (List<ScanRecord> scan : allScans) {
+                pipeline.addScan(scan);
+            }
+        }
+        return pipeline.result();
     }
 
     // ==================== 指纹保存与更新 ====================
     /**
      * 保存新指纹
      */
-    public boolean saveFingerprint(double x, double y, int floor, String zone,
+    public synchronized boolean saveFingerprint(double x, double y, int floor, String zone,
                                    String label, String path, List<FilteredWifi> wifis) {
         if (wifis == null || wifis.isEmpty()) {
             Log.e(TAG, "保存失败：WiFi信号为空");
             return false;
         }
+        if (isReadOnly("保存")) return false;
 
         WifiFingerprint fingerprint = new WifiFingerprint();
         fingerprint.setPixelX(x);
@@ -45,6 +68,8 @@ public class FingerprintManager {
         fingerprint.setFilteredWifis(new ArrayList<>(wifis)); // 创建副本防止外部修改
 
         fingerprints.add(fingerprint);
+        invalidateIndex();
+        if (journal != null && !journal.appendAdd(fingerprint)) logJournalFailure();
         Log.d(TAG, "指纹保存成功：" + (label != null && !label.isEmpty() ? label : path));
         return true;
     }
@@ -52,13 +77,16 @@ public class FingerprintManager {
     /**
      * 更新已有指纹
      */
-    public boolean updateFingerprint(WifiFingerprint fingerprint) {
+    public synchronized boolean updateFingerprint(WifiFingerprint fingerprint) {
+        if (isReadOnly("更新")) return false;
         int index = fingerprints.indexOf(fingerprint);
         if (index == -1) {
             Log.e(TAG, "更新失败：未找到指纹");
             return false;
         }
         fingerprints.set(index, fingerprint);
+        invalidateIndex(); // WiFi列表可能已被修改
+        if (journal != null && !journal.appendUpdate(index, fingerprint)) logJournalFailure();
         Log.d(TAG, "指纹更新成功");
         return true;
     }
@@ -66,7 +94,7 @@ public class FingerprintManager {
     /**
      * 导出所有指纹数据为JSON字符串
      */
-    public String exportFingerprints() {
+    public synchronized String exportFingerprints() {
         if (fingerprints.isEmpty()) {
             return "[]"; // 空列表返回空JSON数组
         }
@@ -118,41 +146,164 @@ public class FingerprintManager {
     /**
      * 删除指纹
      */
-    public boolean deleteFingerprint(WifiFingerprint fingerprint) {
-        boolean removed = fingerprints.remove(fingerprint);
-        if (removed) {
-            Log.d(TAG, "指纹删除成功");
-        } else {
+    public synchronized boolean deleteFingerprint(WifiFingerprint fingerprint) {
+        if (isReadOnly("删除")) return false;
+        int index = fingerprints.indexOf(fingerprint);
+        if (index == -1) {
             Log.e(TAG, "删除失败：未找到指纹");
+            return false;
         }
-        return removed;
+        fingerprints.remove(index);
+        invalidateIndex();
+        if (journal != null && !journal.appendDelete(index)) logJournalFailure();
+        Log.d(TAG, "指纹删除成功");
+        return true;
+    }
+
+    /**
+     * 按AP数量上限压缩后的指纹库副本（用于导出）：AP数超过上限的指纹复制一份，只保留排名前maxAps的AP
+     * 当前指纹库不变，未超过上限的指纹直接放入副本列表
+     */
+    public synchronized List<WifiFingerprint> getCompactedFingerprints(int maxAps, ApRanking ranking) {
+        List<WifiFingerprint> compacted = new ArrayList<>(fingerprints.size());
+        FingerprintIndex snapshot = maxAps > 0 && ranking == ApRanking.DISCRIMINATIVE ? getFingerprintIndex() : null;
+        int removed = 0;
+        for (WifiFingerprint fp : fingerprints) {
+            List<FilteredWifi> wifis = fp.getFilteredWifis();
+            List<FilteredWifi> selected = ApSelector.selectTop(wifis, maxAps, ranking, snapshot);
+            if (selected == wifis) {
+                compacted.add(fp);
+                continue;
+            }
+            removed += wifis.size() - selected.size();
+            WifiFingerprint copy = new WifiFingerprint(fp);
+            copy.setFilteredWifis(selected);
+            compacted.add(copy);
+        }
+        if (removed > 0) {
+            Log.d(TAG, "导出副本压缩完成，移除" + removed + "个AP");
+        }
+        return compacted;
     }
 
     // ==================== 指纹查询 ====================
     /**
      * 获取所有指纹（返回副本，避免外部修改）
      */
-    public List<WifiFingerprint> getAllFingerprints() {
+    public synchronized List<WifiFingerprint> getAllFingerprints() {
         return new ArrayList<>(fingerprints);
     }
 
+    /**
+     * 获取倒排索引快照（指纹库变化后首次调用时重建）
+     */
+    public synchronized FingerprintIndex getFingerprintIndex() {
+        if (index == null) {
+            index = new FingerprintIndex(fingerprints, groupVirtualAps);
+            Log.d(TAG, "倒排索引重建完成，共" + index.size() + "条指纹");
+        }
+        return index;
+    }
+
+    /**
+     * 定位使用的指纹库：内存映射库已打开时返回它，否则返回堆上指纹的索引快照
+     */
+    public synchronized FingerprintLibrary getLibrary() {
+        return mappedStore != null ? mappedStore : getFingerprintIndex();
+    }
+
+    /**
+     * 切换为内存映射的只读库：清空堆上的指纹列表，之后定位直接在映射文件上匹配
+     * 再次加载普通指纹文件或清空指纹库时退出只读模式
+     */
+    public synchronized void useMappedLibrary(MappedFingerprintStore store) {
+        setJournal(null);
+        fingerprints.clear();
+        invalidateIndex();
+        mappedStore = store;
+        Log.d(TAG, "已切换到内存映射指纹库，共" + store.size() + "条指纹");
+    }
+
+    /**
+     * 是否正在使用内存映射的只读库
+     */
+    public synchronized boolean isMappedLibrary() {
+        return mappedStore != null;
+    }
+
+    /**
+     * 设置当前库文件的增量日志（替换时关闭原日志；传入null停止记录）
+     * 切换指纹库（加载、清空、切换到只读库）时日志会被关闭，调用方需为新库文件重新设置
+     */
+    public synchronized void setJournal(FingerprintJournal newJournal) {
+        if (journal != null && journal != newJournal) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.w(TAG, "关闭日志失败：" + e.getMessage());
+            }
+        }
+        journal = newJournal;
+    }
+
+    public synchronized FingerprintJournal getJournal() {
+        return journal;
+    }
+
+    private void logJournalFailure() {
+        Log.w(TAG, "增量日志写入失败，等待合并时整体写回");
+    }
+
+    private boolean isReadOnly(String action) {
+        if (mappedStore == null) return false;
+        Log.e(TAG, action + "失败：当前为只读的内存映射指纹库");
+        return true;
+    }
+
+    /**
+     * 设置匹配时是否合并虚拟AP（变化时重建索引，已保存的指纹数据不变）
+     */
+    public synchronized void setVirtualApGrouping(boolean enabled) {
+        if (groupVirtualAps == enabled) return;
+        groupVirtualAps = enabled;
+        invalidateIndex();
+    }
+
+    private void invalidateIndex() {
+        index = null;
+    }
+
+    // 反序列化得到的SSID/BSSID字符串各自独立，替换为字典中的共享实例并分配ID
+    private static void internWifis(List<WifiFingerprint> loadedFingerprints) {
+        for (WifiFingerprint fp : loadedFingerprints) {
+            if (fp == null || fp.getFilteredWifis() == null) continue;
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                if (wifi != null) wifi.intern();
+            }
+        }
+    }
+
     /**
      * 从外部列表加载指纹（用于导入文件）
      */
-    public void loadFromFile(List<WifiFingerprint> loadedFingerprints) {
+    public synchronized void loadFromFile(List<WifiFingerprint> loadedFingerprints) {
         if (loadedFingerprints == null) {
             Log.w(TAG, "导入失败：指纹列表为空");
             return;
         }
+        setJournal(null);
+        mappedStore = null;
         fingerprints.clear();
         fingerprints.addAll(loadedFingerprints);
+        internWifis(loadedFingerprints);
+        invalidateIndex();
         Log.d(TAG, "从文件导入指纹成功，共" + loadedFingerprints.size() + "条");
     }
 
     /**
      * 获取指定楼层的指纹
      */
-    public List<WifiFingerprint> getFingerprintsByFloor(int floor) {
+    public synchronized List<WifiFingerprint> getFingerprintsByFloor(int floor) {
         List<WifiFingerprint> result = new ArrayList<>();
         for (WifiFingerprint fp : fingerprints) {
             if (fp.getFloor() == floor) {
@@ -165,7 +316,7 @@ public class FingerprintManager {
     /**
      * 获取指定区域的指纹
      */
-    public List<WifiFingerprint> getFingerprintsByZone(String zone) {
+    public synchronized List<WifiFingerprint> getFingerprintsByZone(String zone) {
         List<WifiFingerprint> result = new ArrayList<>();
         for (WifiFingerprint fp : fingerprints) {
             if (zone.equals(fp.getZone())) {
@@ -178,22 +329,25 @@ public class FingerprintManager {
     /**
      * 获取指纹总数
      */
-    public int getFingerprintCount() {
-        return fingerprints.size();
+    public synchronized int getFingerprintCount() {
+        return mappedStore != null ? mappedStore.size() : fingerprints.size();
     }
 
     /**
      * 清空所有指纹
      */
-    public void clearAllFingerprints() {
+    public synchronized void clearAllFingerprints() {
+        setJournal(null);
+        mappedStore = null;
         fingerprints.clear();
+        invalidateIndex();
         Log.d(TAG, "所有指纹已清空");
     }
 
     /**
      * 检查是否存在指纹数据
      */
-    public boolean hasFingerprints() {
-        return !fingerprints.isEmpty();
+    public synchronized boolean hasFingerprints() {
+        return getFingerprintCount() > 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.example.mywifiscanner;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 指纹匹配引擎：对候选指纹打分并保留前k名
+ * 候选数较少时在调用线程顺序执行；较多时拆块提交到共享ForkJoinPool并行打分，再合并各块的前k名
+ */
+public class FingerprintMatcher {
+    // 候选数低于此值时顺序匹配（任务拆分与合并的开销大于收益）
+    static final int PARALLEL_THRESHOLD = 8192;
+    // 单个并行任务处理的最少候选数
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    // ForkJoinPool.commonPool() 需要API 24，minSdk 23下使用进程内共享的专用池
+    private static volatile ForkJoinPool sharedPool;
+
+    private static ForkJoinPool getSharedPool() {
+        if (sharedPool == null) {
+            synchronized (FingerprintMatcher.class) {
+                if (sharedPool == null) {
+                    sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                }
+            }
+        }
+        return sharedPool;
+    }
+
+    /**
+     * 对候选指纹打分，结果写入out（调用前需已reset为所需的k）
+     * @param library 指纹库（堆上索引快照或内存映射库）
+     * @param current 当前扫描编译结果
+     * @param candidates 候选指纹ID
+     * @param out 前k名输出
+     */
+    public static void match(FingerprintLibrary library, CompiledFingerprint current,
+                             int[] candidates, TopKHeap out) {
+        if (candidates.length < PARALLEL_THRESHOLD || Runtime.getRuntime().availableProcessors() < 2) {
+            matchSequential(library, current, candidates, out);
+        } else {
+            matchParallel(library, current, candidates, out);
+        }
+    }
+
+    static void matchSequential(FingerprintLibrary library, CompiledFingerprint current,
+                                int[] candidates, TopKHeap out) {
+        scoreRange(library, current, candidates, 0, candidates.length, out);
+    }
+
+    /**
+     * 分块并行打分；TopKHeap为全序，结果与顺序打分相同
+     */
+    static void matchParallel(FingerprintLibrary library, CompiledFingerprint current,
+                              int[] candidates, TopKHeap out) {
+        ForkJoinPool pool = getSharedPool();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, candidates.length / (pool.getParallelism() * 4));
+        TopKHeap merged = pool.invoke(new ScoreTask(library, current, candidates,
+                0, candidates.length, chunkSize, out.capacity()));
+        out.addAll(merged);
+    }
+
+    private static void scoreRange(FingerprintLibrary library, CompiledFingerprint current,
+                                   int[] candidates, int from, int to, TopKHeap out) {
+        for (int i = from; i < to; i++) {
+            int id = candidates[i];
+            double similarity = library.similarity(current, id);
+            if (similarity > 0) {
+                out.offer(id, similarity);
+            }
+        }
+    }
+
+    /**
+     * 分块打分任务：区间足够小时直接打分，否则二分后并行执行并合并前k名
+     */
+    private static class ScoreTask extends RecursiveTask<TopKHeap> {
+        private final FingerprintLibrary library;
+        private final CompiledFingerprint current;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final int k;
+
+        ScoreTask(FingerprintLibrary library, CompiledFingerprint current, int[] candidates,
+                  int from, int to, int chunkSize, int k) {
+            this.library = library;
+            this.current = current;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.k = k;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (to - from <= chunkSize) {
+                TopKHeap heap = new TopKHeap(k);
+                scoreRange(library, current, candidates, from, to, heap);
+                return heap;
+            }
+            int mid = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(library, current, candidates, from, mid, chunkSize, k);
+            ScoreTask right = new ScoreTask(library, current, candidates, mid, to, chunkSize, k);
+            left.fork();
+            TopKHeap result = right.compute();
+            result.addAll(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * 优化相似度计算（逐频段BSSID字典ID有序归并，考虑信号波动和匹配比例）
+     * 各频段单独计算 基础相似度 × 匹配比例，再按 频段权重 × 当前扫描该频段AP数 加权融合；
+     * 只有一个频段时与不分频段的结果相同
+     * @param bandWeights 各频段权重（以WifiBand常量为下标），null表示等权
+     */
+    static double calculateOptimizedSimilarity(CompiledFingerprint current,
+                                               CompiledFingerprint fingerprint, double[] bandWeights) {
+        if (current.size() == 0 || fingerprint.size() == 0) {
+            return 0;
+        }
+
+        double weightedSimilarity = 0;
+        double totalWeight = 0;
+        for (int band = 0; band < WifiBand.COUNT; band++) {
+            int currentStart = current.bandStart(band), currentEnd = current.bandEnd(band);
+            int currentCount = currentEnd - currentStart;
+            if (currentCount == 0) continue; // 当前扫描没有该频段，不参与融合
+            double weight = (bandWeights != null ? bandWeights[band] : 1.0) * currentCount;
+            totalWeight += weight;
+
+            int fpStart = fingerprint.bandStart(band), fpEnd = fingerprint.bandEnd(band);
+            if (fpEnd == fpStart) continue; // 指纹缺少该频段，该频段相似度为0
+            weightedSimilarity += weight * bandSimilarity(current, currentStart, currentEnd,
+                    fingerprint, fpStart, fpEnd);
+        }
+        return totalWeight > 0 ? weightedSimilarity / totalWeight : 0;
+    }
+
+    /**
+     * 单个频段内的相似度：基础相似度 × 匹配比例
+     */
+    private static double bandSimilarity(CompiledFingerprint current, int currentStart, int currentEnd,
+                                         CompiledFingerprint fingerprint, int fpStart, int fpEnd) {
+        int[] currentBssids = current.apIds;
+        int[] fpBssids = fingerprint.apIds;
+        double totalSimilarity = 0;
+        int matchCount = 0;
+
+        // 频段内两侧BSSID字典ID均已升序，一次归并即可找出所有相同BSSID
+        int i = currentStart, j = fpStart;
+        while (i < currentEnd && j < fpEnd) {
+            if (currentBssids[i] < fpBssids[j]) {
+                i++;
+            } else if (currentBssids[i] > fpBssids[j]) {
+                j++;
+            } else {
+                // 计算单个WiFi的信号相似度（考虑信号波动）
+                totalSimilarity += calculateRobustWifiSimilarity(current.rssis[i], fingerprint.rssis[j],
+                        fingerprint.rssiStds[j]);
+                matchCount++;
+                i++;
+                j++;
+            }
+        }
+
+        // 考虑匹配比例（解决部分匹配的问题）
+        double matchRatio = (double) matchCount / Math.min(currentEnd - currentStart, fpEnd - fpStart);
+        double baseSimilarity = matchCount > 0 ? totalSimilarity / matchCount : 0;
+
+        // 综合相似度 = 基础相似度 × 匹配比例（比单纯信号相似度更合理）
+        return baseSimilarity * matchRatio;
+    }
+
+    /**
+     * 内存映射库中指纹的相似度：与calculateOptimizedSimilarity相同的逐频段融合，指纹侧直接读取映射的条目数组，不创建对象
+     */
+    static double calculateMappedSimilarity(CompiledFingerprint current, MappedFingerprintStore store, int id) {
+        if (current.size() == 0 || store.bandStart(id, 0) == store.bandStart(id, WifiBand.COUNT)) {
+            return 0;
+        }
+
+        double[] bandWeights = store.getBandWeights();
+        double weightedSimilarity = 0;
+        double totalWeight = 0;
+        for (int band = 0; band < WifiBand.COUNT; band++) {
+            int currentStart = current.bandStart(band), currentEnd = current.bandEnd(band);
+            int currentCount = currentEnd - currentStart;
+            if (currentCount == 0) continue;
+            double weight = bandWeights[band] * currentCount;
+            totalWeight += weight;
+
+            int fpStart = store.bandStart(id, band), fpEnd = store.bandStart(id, band + 1);
+            if (fpEnd == fpStart) continue;
+            weightedSimilarity += weight * mappedBandSimilarity(current, currentStart, currentEnd,
+                    store, fpStart, fpEnd);
+        }
+        return totalWeight > 0 ? weightedSimilarity / totalWeight : 0;
+    }
+
+    /**
+     * 单个频段内的相似度（映射条目版本，逻辑与bandSimilarity相同）
+     */
+    private static double mappedBandSimilarity(CompiledFingerprint current, int currentStart, int currentEnd,
+                                               MappedFingerprintStore store, int fpStart, int fpEnd) {
+        int[] currentAps = current.apIds;
+        double totalSimilarity = 0;
+        int matchCount = 0;
+        int i = currentStart, j = fpStart;
+        while (i < currentEnd && j < fpEnd) {
+            int fpAp = store.entryAp(j);
+            if (currentAps[i] < fpAp) {
+                i++;
+            } else if (currentAps[i] > fpAp) {
+                j++;
+            } else {
+                totalSimilarity += calculateRobustWifiSimilarity(current.rssis[i], store.entryRssi(j),
+                        store.entryStd(j));
+                matchCount++;
+                i++;
+                j++;
+            }
+        }
+        double matchRatio = (double) matchCount / Math.min(currentEnd - currentStart, fpEnd - fpStart);
+        double baseSimilarity = matchCount > 0 ? totalSimilarity / matchCount : 0;
+        return baseSimilarity * matchRatio;
+    }
+
+    /**
+     * 鲁棒的WiFi相似度计算（容忍信号波动，比简单的线性计算更合理）
+     */
+    static double calculateRobustWifiSimilarity(int currentRssi, int fingerprintRssi) {
+        return calculateRobustWifiSimilarity(currentRssi, fingerprintRssi, 0);
+    }
+
+    /**
+     * 考虑采集时信号波动的相似度：完全相似的容差取10dBm与2倍标准差中较大者（最多20dBm），
+     * 波动大的AP不会因一次偏离被判为不相似
+     * @param fingerprintStd 指纹中该AP的RSSI标准差（dB），未知为0
+     */
+    static double calculateRobustWifiSimilarity(int currentRssi, int fingerprintRssi, int fingerprintStd) {
+        int rssiDiff = Math.abs(currentRssi - fingerprintRssi);
+        int tolerance = Math.min(20, Math.max(10, 2 * fingerprintStd));
+
+        // 信号差在容差内认为完全相似，超过容差30dBm认为不相似
+        if (rssiDiff <= tolerance) {
+            return 1.0;
+        } else if (rssiDiff >= tolerance + 30) {
+            return 0.0;
+        } else {
+            // 中间范围线性衰减
+            return 1.0 - (double) (rssiDiff - tolerance) / 30;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.mywifiscanner;
+
+/**
+ * 指纹接收方：流式加载时每解析出一条指纹回调一次，加载过程中不需要整份文件或整个列表常驻内存
+ */
+public interface FingerprintSink {
+    void accept(WifiFingerprint fingerprint);
+}
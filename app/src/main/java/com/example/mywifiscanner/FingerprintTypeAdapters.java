@@ -0,0 +1,158 @@
+package com.example.mywifiscanner;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 指纹库的手写TypeAdapter：直接读写字段，不经反射；字段名、顺序与@SerializedName声明一致，
+ * 输出与反射序列化相同，新旧文件可互相读取
+ * 读取时SSID/BSSID即经构造方法放入字典（共享字符串实例并分配ID），加载后无需再统一intern
+ */
+final class FingerprintTypeAdapters {
+    static final TypeAdapter<FilteredWifi> FILTERED_WIFI = new FilteredWifiAdapter();
+    static final TypeAdapter<WifiFingerprint> FINGERPRINT = new WifiFingerprintAdapter();
+
+    private FingerprintTypeAdapters() {
+    }
+
+    /**
+     * 注册了指纹库TypeAdapter的Gson（其他字段仍按默认规则处理）
+     */
+    static Gson newGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(FilteredWifi.class, FILTERED_WIFI)
+                .registerTypeAdapter(WifiFingerprint.class, FINGERPRINT)
+                .create();
+    }
+
+    // 与反射序列化一致：null字段不输出；读取时值为null的字段保持缺省值
+    private static void writeIfNotNull(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) out.name(name).value(value);
+    }
+
+    private static final class FilteredWifiAdapter extends TypeAdapter<FilteredWifi> {
+        @Override
+        public void write(JsonWriter out, FilteredWifi wifi) throws IOException {
+            if (wifi == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeIfNotNull(out, "ssid", wifi.getSsid());
+            writeIfNotNull(out, "bssid", wifi.getBssid());
+            out.name("rssi").value(wifi.getRssi());
+            out.name("rssiVar").value(Float.valueOf(wifi.getRssiVariance())); // 按float格式输出，不扩展为double的长尾数
+            out.name("freq").value(wifi.getFrequency());
+            out.name("width").value(wifi.getChannelWidth());
+            out.endObject();
+        }
+
+        @Override
+        public FilteredWifi read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String ssid = null;
+            String bssid = null;
+            int rssi = 0;
+            float rssiVariance = 0;
+            int frequency = 0;
+            int channelWidth = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "ssid": ssid = in.nextString(); break;
+                    case "bssid": bssid = in.nextString(); break;
+                    case "rssi": rssi = in.nextInt(); break;
+                    case "rssiVar": rssiVariance = (float) in.nextDouble(); break;
+                    case "freq": frequency = in.nextInt(); break;
+                    case "width": channelWidth = in.nextInt(); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            FilteredWifi wifi = new FilteredWifi(ssid, bssid, rssi, frequency, channelWidth);
+            wifi.setRssiVariance(rssiVariance);
+            return wifi;
+        }
+    }
+
+    private static final class WifiFingerprintAdapter extends TypeAdapter<WifiFingerprint> {
+        @Override
+        public void write(JsonWriter out, WifiFingerprint fingerprint) throws IOException {
+            if (fingerprint == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("pixelX").value(fingerprint.getPixelX());
+            out.name("pixelY").value(fingerprint.getPixelY());
+            out.name("floor").value(fingerprint.getFloor());
+            writeIfNotNull(out, "zone", fingerprint.getZone());
+            writeIfNotNull(out, "label", fingerprint.getLabel());
+            writeIfNotNull(out, "path", fingerprint.getPath());
+            List<FilteredWifi> wifis = fingerprint.getFilteredWifis();
+            if (wifis != null) {
+                out.name("wifis").beginArray();
+                for (FilteredWifi wifi : wifis) {
+                    FILTERED_WIFI.write(out, wifi);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public WifiFingerprint read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            WifiFingerprint fingerprint = new WifiFingerprint();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "pixelX": fingerprint.setPixelX(in.nextDouble()); break;
+                    case "pixelY": fingerprint.setPixelY(in.nextDouble()); break;
+                    case "floor": fingerprint.setFloor(in.nextInt()); break;
+                    case "zone": fingerprint.setZone(in.nextString()); break;
+                    case "label": fingerprint.setLabel(in.nextString()); break;
+                    case "path": fingerprint.setPath(in.nextString()); break;
+                    case "wifis": fingerprint.setFilteredWifis(readWifis(in)); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return fingerprint;
+        }
+
+        private static List<FilteredWifi> readWifis(JsonReader in) throws IOException {
+            List<FilteredWifi> wifis = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                wifis.add(FILTERED_WIFI.read(in));
+            }
+            in.endArray();
+            return wifis;
+        }
+    }
+}
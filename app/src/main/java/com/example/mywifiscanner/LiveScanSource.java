@@ -0,0 +1,55 @@
+package com.example.mywifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.SystemClock;
+
+import java.util.List;
+
+/**
+ * 实时扫描源：经扫描调度器向系统请求新一轮扫描，相邻两轮之间至少间隔minIntervalMs
+ */
+public class LiveScanSource implements ScanSource {
+    private final ScanScheduler scanScheduler;
+    private final ScanScheduler.Priority priority;
+    private final long minIntervalMs;
+    private long lastScanAt; // 上一轮结果到达的时刻（elapsedRealtime），0表示尚无
+
+    public LiveScanSource(ScanScheduler scanScheduler, ScanScheduler.Priority priority) {
+        this(scanScheduler, priority, 0);
+    }
+
+    /**
+     * @param minIntervalMs 上一轮结果到达后至少等待多久再请求下一轮（扫描配置的扫描间隔，省电方案更长）
+     */
+    public LiveScanSource(ScanScheduler scanScheduler, ScanScheduler.Priority priority, long minIntervalMs) {
+        this.scanScheduler = scanScheduler;
+        this.priority = priority;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * 超时从获得扫描配额起算：系统节流时会额外等待调度器预计的配额等待时间（扫描间隔的等待也不计入超时）
+     */
+    @Override
+    public List<ScanRecord> nextScan(long timeoutMs) throws InterruptedException {
+        if (lastScanAt > 0) {
+            long pauseMs = lastScanAt + minIntervalMs - SystemClock.elapsedRealtime();
+            if (pauseMs > 0) Thread.sleep(pauseMs);
+        }
+        long waitMs = timeoutMs + scanScheduler.estimateWaitMs(priority);
+        List<ScanResult> results = scanScheduler.awaitScan(priority, waitMs);
+        if (results == null) return null;
+        lastScanAt = SystemClock.elapsedRealtime();
+        return ScanRecord.fromScanResults(results);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // 调度器为共用资源，由创建者释放
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.mywifiscanner;
+
+/**
+ * 定位配置的不可变快照：每次定位开始时读取一次，同一次定位内的各步骤使用同一组参数
+ * 由ConfigManager在设置变化时整体重建并原子发布；纯Java对象，可直接在单元测试中构造
+ * 构建器中的初始值即各项的默认值，ConfigManager的默认设置也取自这里
+ */
+public final class LocateConfig {
+    private final int wifiThreshold;
+    private final ApStabilityFilter stabilityFilter;
+    private final RssiAggregationMode smoothingMode;
+    private final int smoothingWindow;
+    private final int minSharedAps;
+    private final int knnK;
+    private final boolean hierarchicalEnabled;
+    private final double hierarchyMargin;
+
+    private LocateConfig(Builder builder) {
+        wifiThreshold = builder.wifiThreshold;
+        stabilityFilter = builder.stabilityFilter != null ? builder.stabilityFilter : ApStabilityFilter.DEFAULT;
+        smoothingMode = builder.smoothingMode;
+        smoothingWindow = Math.max(1, Math.min(SlidingScanSmoother.MAX_WINDOW_SCANS, builder.smoothingWindow));
+        minSharedAps = Math.max(1, builder.minSharedAps);
+        knnK = Math.max(1, Math.min(ConfigManager.MAX_KNN_K, builder.knnK));
+        hierarchicalEnabled = builder.hierarchicalEnabled;
+        hierarchyMargin = builder.hierarchyMargin;
+    }
+
+    /**
+     * 各项为默认值的构建器
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 定位流水线：单轮去重 → 与最近几轮扫描一起平滑（抑制单次扫描的信号抖动）→ 汇总 → 过滤 → 排序
+     * 定位查询不限制AP数量（上限只作用于指纹采集）
+     * @param smoother 调用方持有的平滑器（窗口跨次定位保留）
+     * @param aggregator 调用方复用的单轮汇总器
+     */
+    ScanPipeline newLocatePipeline(SlidingScanSmoother smoother, StreamingScanAggregator aggregator) {
+        return ScanPipeline.builder()
+                .add(ScanStages.dedupe())
+                .add(ScanStages.smooth(smoother, smoothingMode, smoothingWindow))
+                .aggregate(RssiAggregationMode.MEAN, aggregator)
+                .filter(wifiThreshold, stabilityFilter)
+                .add(ScanStages.sortByRssi())
+                .build();
+    }
+
+    public int getWifiThreshold() { return wifiThreshold; }
+    public ApStabilityFilter getStabilityFilter() { return stabilityFilter; }
+    public RssiAggregationMode getSmoothingMode() { return smoothingMode; }
+    public int getSmoothingWindow() { return smoothingWindow; }
+    public int getMinSharedAps() { return minSharedAps; }
+    public int getKnnK() { return knnK; }
+    public boolean isHierarchicalEnabled() { return hierarchicalEnabled; }
+    public double getHierarchyMargin() { return hierarchyMargin; }
+
+    public static final class Builder {
+        private int wifiThreshold = ScanConfig.DEFAULT_WIFI_THRESHOLD;
+        private ApStabilityFilter stabilityFilter;
+        private RssiAggregationMode smoothingMode = RssiAggregationMode.MEAN;
+        private int smoothingWindow = 1;
+        private int minSharedAps = 1;
+        private int knnK = 3;
+        private boolean hierarchicalEnabled = true;
+        private double hierarchyMargin = 0.2;
+
+        private Builder() {
+        }
+
+        public Builder wifiThreshold(int wifiThreshold) { this.wifiThreshold = wifiThreshold; return this; }
+        public Builder stabilityFilter(ApStabilityFilter filter) { this.stabilityFilter = filter; return this; }
+        public Builder smoothingMode(RssiAggregationMode mode) { this.smoothingMode = mode; return this; }
+        public Builder smoothingWindow(int scans) { this.smoothingWindow = scans; return this; }
+        public Builder minSharedAps(int count) { this.minSharedAps = count; return this; }
+        public Builder knnK(int k) { this.knnK = k; return this; }
+        public Builder hierarchicalEnabled(boolean enabled) { this.hierarchicalEnabled = enabled; return this; }
+        public Builder hierarchyMargin(double margin) { this.hierarchyMargin = margin; return this; }
+
+        public LocateConfig build() {
+            return new LocateConfig(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.mywifiscanner;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步定位请求句柄：后台线程从扫描源等待一轮扫描 -> 匹配 -> 经回调执行器（通常为主线程）回调，支持超时与取消
+ * 不依赖Android：扫描源、匹配与执行器均由创建者传入，可在JVM上用替身驱动
+ */
+public final class LocateRequest {
+
+    /**
+     * 由一轮扫描得到定位结果（在后台线程调用）
+     */
+    interface Matcher {
+        WifiLocationManager.LocationResult locate(List<ScanRecord> scan);
+
+        /**
+         * 最近一次locate未得到结果的原因，回调onFailed时使用；返回null时使用通用原因
+         */
+        default String getLastFailure() {
+            return null;
+        }
+    }
+
+    /**
+     * 定位回调（在回调执行器上执行，只会回调一次）
+     */
+    public interface Callback {
+        void onLocated(WifiLocationManager.LocationResult result);
+        void onFailed(String reason);
+    }
+
+    private final ScanSource source;
+    private final Matcher matcher;
+    private final Executor callbackExecutor;
+    private final Callback callback;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private volatile Future<?> task;
+
+    LocateRequest(ScanSource source, Matcher matcher, Executor callbackExecutor, Callback callback) {
+        this.source = source;
+        this.matcher = matcher;
+        this.callbackExecutor = callbackExecutor;
+        this.callback = callback;
+    }
+
+    /**
+     * 在后台执行器上等待扫描并匹配
+     * @param timeoutMs 等待扫描的超时时间（由扫描源执行），超时后回调onFailed
+     */
+    void start(ExecutorService executor, long timeoutMs) {
+        try {
+            task = executor.submit(() -> run(timeoutMs));
+        } catch (RejectedExecutionException e) {
+            source.close();
+            fail("定位管理器已销毁");
+            return;
+        }
+        if (done.get()) {
+            task.cancel(true); // 提交期间已被取消
+        }
+    }
+
+    /**
+     * 以失败结束请求（如权限不足，不再等待扫描）
+     */
+    void fail(String reason) {
+        finish(null, reason);
+    }
+
+    private void run(long timeoutMs) {
+        List<ScanRecord> scan;
+        try {
+            scan = source.nextScan(timeoutMs);
+        } catch (InterruptedException e) {
+            return; // 已取消
+        } catch (RuntimeException e) {
+            finish(null, errorReason(e));
+            return;
+        } finally {
+            source.close();
+        }
+        if (done.get()) return;
+        if (scan == null) {
+            finish(null, "等待扫描结果超时");
+            return;
+        }
+        // 匹配中的意外异常也必须回调，否则请求永远不会结束
+        try {
+            WifiLocationManager.LocationResult result = matcher.locate(scan);
+            if (result != null) {
+                finish(result, null);
+            } else {
+                String reason = matcher.getLastFailure();
+                finish(null, reason != null ? reason : "未匹配到指纹点");
+            }
+        } catch (RuntimeException e) {
+            finish(null, errorReason(e));
+        }
+    }
+
+    private static String errorReason(RuntimeException e) {
+        String message = e.getMessage();
+        return "定位出错：" + (message != null ? message : e.getClass().getSimpleName());
+    }
+
+    /**
+     * 结束请求并在回调执行器上回调（只会生效一次）
+     */
+    private void finish(WifiLocationManager.LocationResult result, String failureReason) {
+        try {
+            callbackExecutor.execute(() -> {
+                if (!done.compareAndSet(false, true)) return;
+                if (result != null) {
+                    callback.onLocated(result);
+                } else {
+                    callback.onFailed(failureReason);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.set(true); // 回调线程已退出，无需回调
+        }
+    }
+
+    /**
+     * 取消请求，之后不会再有回调；正在等待的扫描被中断
+     */
+    public void cancel() {
+        if (done.compareAndSet(false, true)) {
+            Future<?> running = task;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+
+    public boolean isDone() {
+        return done.get();
+    }
+}
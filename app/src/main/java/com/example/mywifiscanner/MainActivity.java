@@ -46,8 +46,9 @@ import java.util.List;
 public class MainActivity extends AppCompatActivity{
 
     private static final String TAG = "MainActivity";
-    private static final int MIN_SCAN_COUNT = 3;
+    private static final int MIN_SCAN_COUNT = 3; // 扫描收敛提前结束前至少需要的有效扫描次数
     private static final int MIN_SELECT_WIFI_COUNT = 1;
+    private static final long LOCATE_TIMEOUT_MS = 10000; // 异步定位等待扫描结果的超时
     private TextView tvFileStatus, tvResult, navHeaderFileStatus, tvPermissionTip, tvCurrentFile;
     private String currentEditingFile = null; // 当前编辑的指纹库文件名
     private CoordinateManager coordinateManager;
@@ -70,12 +71,20 @@ public class MainActivity extends AppCompatActivity{
     private PermissionManager permissionManager;
     private ImageHandler imageHandler; // 图片处理（显示地图和标记）
     private WifiLocationManager wifiLocationManager; // 定位管理器
+    private LocateRequest pendingLocateRequest; // 进行中的异步定位请求
     private WifiManager wifiManager;
     private WifiScanner wifiScanner;
+    private ScanScheduler scanScheduler; // 扫描调度器（扫描器与定位共用）
 
 
     // 数据变量
-    private List<List<ScanResult>> multipleScans = new ArrayList<>(); // 多次扫描结果
+    private ScanPipeline capturePipeline; // 本次采集的流水线（每次扫描按当前配置声明）
+    // 配置变化时把新快照交给定位引擎与指纹库（正在进行的采集仍使用开始时的快照）
+    private final ConfigManager.OnConfigChangedListener configListener = (scanConfig, locateConfig) -> {
+        if (wifiLocationManager != null) wifiLocationManager.setConfig(locateConfig);
+        if (fingerprintManager != null) fingerprintManager.setVirtualApGrouping(scanConfig.isVirtualApGroupingEnabled());
+        if (mapFileModule != null) mapFileModule.setVirtualApGrouping(scanConfig.isVirtualApGroupingEnabled());
+    };
     private List<FilteredWifi> filteredWifis; // 筛选后的WiFi列表
     private final List<FilteredWifi> selectedWifis = new ArrayList<>(); // 选中的WiFi
     private boolean isMarkersVisible = false;
@@ -135,12 +144,15 @@ public class MainActivity extends AppCompatActivity{
         scanButton.setEnabled(false);
         tvResult.append("开始扫描...\n");
 
+        ScanConfig scanConfig = configManager.getScanConfig();
+        ScanPipeline pipeline = newCapturePipeline(scanConfig);
+        capturePipeline = pipeline;
         new Thread(() -> {
-            int scanCount = configManager.getScanCount();
-            List<List<ScanResult>> allResults = wifiScanner.performMultipleScans(scanCount);
+            int successCount = wifiScanner.performStreamingScans(scanConfig, MIN_SCAN_COUNT,
+                    ScanScheduler.Priority.SURVEY_CAPTURE, pipeline, this::showScanProgress);
 
             runOnUiThread(() -> {
-                handleScanResults(allResults);
+                handleScanResults(successCount);
                 isScanning = false;
                 scanButton.setEnabled(true);
             });
@@ -148,13 +160,23 @@ public class MainActivity extends AppCompatActivity{
     }
 
     /**
-     * 处理多次扫描结果（对接你的现有逻辑）
+     * 显示流式扫描进度（扫描线程回调，切回主线程显示）
      */
-    private void handleScanResults(List<List<ScanResult>> allResults) {
-        multipleScans.clear();
-        multipleScans.addAll(allResults);
+    private void showScanProgress(StreamingScanAggregator aggregator) {
+        int scans = aggregator.getScanCount();
+        int aps = aggregator.getApCount();
+        double error = aggregator.getMaxStandardError();
+        runOnUiThread(() -> tvResult.append(Double.isInfinite(error)
+                ? String.format("第%d次扫描完成，累计%d个WiFi\n", scans, aps)
+                : String.format("第%d次扫描完成，累计%d个WiFi，信号估计误差±%.1fdB\n", scans, aps, error)));
+    }
 
-        if (allResults.isEmpty()) {
+    /**
+     * 处理多次扫描结果（对接你的现有逻辑）
+     */
+    private void handleScanResults(int successCount) {
+        tvResult.append(String.format("共获得%d次有效扫描\n", successCount));
+        if (successCount == 0) {
             tvResult.append("❌ 所有扫描均未获取到结果\n");
             tvResult.append("请检查：1.WiFi是否开启 2.位置权限是否授予 3.是否在设置中允许应用使用位置\n");
             isScanning = false;
@@ -366,24 +388,38 @@ public class MainActivity extends AppCompatActivity{
             return;
         }
 
+        // 导出副本按AP数量上限压缩（旧版本采集的指纹可能有大量AP），当前指纹库与库文件不受影响
+        List<WifiFingerprint> exported = fingerprintManager.getCompactedFingerprints(
+                configManager.getMaxApsPerFingerprint(), configManager.getApRanking());
+        int removedAps = countAps(fingerprints) - countAps(exported);
+
         // 导出文件名（基于当前编辑的文件名）
         String exportFileName = "export_" + currentEditingFile;
-        boolean success = mapFileModule.exportFingerprints(exportFileName, fingerprints);
+        boolean success = mapFileModule.exportFingerprints(exportFileName, exported);
 
         if (success) {
             Toast.makeText(this, "指纹库导出成功", Toast.LENGTH_SHORT).show();
-            tvResult.setText("指纹库已导出: " + exportFileName);
+            tvResult.setText("指纹库已导出: " + exportFileName
+                    + (removedAps > 0 ? "（压缩移除" + removedAps + "个AP）" : ""));
         } else {
             Toast.makeText(this, "指纹库导出失败", Toast.LENGTH_SHORT).show();
         }
     }
 
+    private static int countAps(List<WifiFingerprint> fingerprints) {
+        int count = 0;
+        for (WifiFingerprint fp : fingerprints) {
+            if (fp.getFilteredWifis() != null) count += fp.getFilteredWifis().size();
+        }
+        return count;
+    }
+
     /**
      * 创建新指纹库文件 - 数组包装版本
      */
     private void createNewFile() {
         EditText etFileName = new EditText(this);
-        etFileName.setHint("请输入指纹库文件名（不含.json后缀）");
+        etFileName.setHint("请输入指纹库文件名（默认.json，以.wfp结尾保存为二进制格式）");
 
         // 使用数组包装，数组引用是final的
         final String[] fileNameHolder = new String[1];
@@ -398,10 +434,8 @@ public class MainActivity extends AppCompatActivity{
                         return;
                     }
 
-                    // 确保文件名以.json结尾
-                    if (!inputName.endsWith(".json")) {
-                        inputName += ".json";
-                    }
+                    // 未指定扩展名时保存为.json
+                    inputName = MapFileModule.withLibraryExtension(inputName);
 
                     fileNameHolder[0] = inputName;
                     saveNewFile(fileNameHolder[0]); // 现在可以正常调用了
@@ -419,6 +453,7 @@ public class MainActivity extends AppCompatActivity{
         if (isSaved) {
             currentEditingFile = fileName;
             fingerprintManager.clearAllFingerprints(); // 清空当前指纹库
+            fingerprintManager.setJournal(openJournal(fileName, new ArrayList<>()));
             updateFileStatusDisplay();
             Toast.makeText(this, "指纹库创建成功", Toast.LENGTH_SHORT).show();
         } else {
@@ -430,16 +465,17 @@ public class MainActivity extends AppCompatActivity{
      * 另存为新文件（新增功能）
      */
     private void saveAsNewFile() {
-        if (fingerprintManager.getFingerprintCount() == 0) {
-            Toast.makeText(this, "当前无指纹数据可保存", Toast.LENGTH_SHORT).show();
+        if (fingerprintManager.getAllFingerprints().isEmpty()) {
+            Toast.makeText(this, fingerprintManager.isMappedLibrary() ? "只读指纹库不能另存" : "当前无指纹数据可保存",
+                    Toast.LENGTH_SHORT).show();
             return;
         }
 
         EditText etFileName = new EditText(this);
-        etFileName.setHint("请输入新文件名（不含.json后缀）");
+        etFileName.setHint("请输入新文件名（默认.json，.wfp为二进制格式，.wfpm为只读的内存映射库）");
         if (currentEditingFile != null) {
             // 建议基于当前文件名修改
-            String baseName = currentEditingFile.replace(".json", "_copy");
+            String baseName = currentEditingFile.replaceAll("\\.(json|wfpm?)$", "_copy");
             etFileName.setText(baseName);
         }
 
@@ -453,14 +489,13 @@ public class MainActivity extends AppCompatActivity{
                         return;
                     }
 
-                    if (!fileName.endsWith(".json")) {
-                        fileName += ".json";
-                    }
+                    fileName = MapFileModule.withLibraryExtension(fileName);
 
                     List<WifiFingerprint> currentFingerprints = fingerprintManager.getAllFingerprints();
                     boolean success = mapFileModule.saveFingerprints(fileName, currentFingerprints);
                     if (success) {
                         currentEditingFile = fileName;
+                        fingerprintManager.setJournal(openJournal(fileName, currentFingerprints));
                         updateFileStatusDisplay();
                         Toast.makeText(this, "另存为成功：" + fileName, Toast.LENGTH_SHORT).show();
                     } else {
@@ -472,7 +507,7 @@ public class MainActivity extends AppCompatActivity{
     }
 
     /**
-     * 更新当前指纹库文件（覆盖保存）
+     * 更新当前指纹库文件（覆盖保存，同时合并增量日志）
      */
     private void updateCurrentFile() {
         if (currentEditingFile == null) {
@@ -480,8 +515,14 @@ public class MainActivity extends AppCompatActivity{
             return;
         }
 
+        if (fingerprintManager.isMappedLibrary()) {
+            Toast.makeText(this, "当前为只读指纹库，无需保存", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         List<WifiFingerprint> currentFingerprints = fingerprintManager.getAllFingerprints();
-        boolean success = mapFileModule.saveFingerprints(currentEditingFile, currentFingerprints);
+        boolean success = mapFileModule.compactFingerprints(currentEditingFile, currentFingerprints,
+                fingerprintManager.getJournal());
         if (success) {
             Toast.makeText(this, "指纹库更新成功", Toast.LENGTH_SHORT).show();
         } else {
@@ -515,10 +556,16 @@ public class MainActivity extends AppCompatActivity{
      * 加载指纹库文件
      */
     private void loadFingerprintFile(String fileName) {
-        List<WifiFingerprint> fingerprints = mapFileModule.loadFingerprints(fileName);
-        if (fingerprints != null) {
+        if (MapFileModule.isMappedFileName(fileName)) {
+            loadMappedLibrary(fileName);
+            return;
+        }
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
+        if (mapFileModule.loadFingerprints(fileName, fingerprints::add)) {
+            FingerprintJournal journal = openJournal(fileName, fingerprints); // 重放上次合并之后的增量
             fingerprintManager.clearAllFingerprints();
             fingerprintManager.loadFromFile(fingerprints); // 加载指纹到管理器
+            fingerprintManager.setJournal(journal);
             currentEditingFile = fileName;
             updateFileStatusDisplay();
             imageHandler.drawAllMarkers(fingerprints); // 在地图上绘制所有指纹标记
@@ -528,6 +575,39 @@ public class MainActivity extends AppCompatActivity{
         }
     }
 
+    /**
+     * 打开库文件的增量日志，之后每次采集、修改、删除只追加一条记录（内存映射格式只能整体导出，不记录日志）
+     * @param fingerprints 刚从库文件加载（或刚写入库文件）的指纹，日志中尚未合并的记录会先重放到其上
+     */
+    private FingerprintJournal openJournal(String fileName, List<WifiFingerprint> fingerprints) {
+        return MapFileModule.isMappedFileName(fileName) ? null : mapFileModule.openJournal(fileName, fingerprints);
+    }
+
+    /**
+     * 日志超过库文件大小（或追加失败过）时合并到库文件
+     */
+    private void compactJournalIfNeeded() {
+        FingerprintJournal journal = fingerprintManager.getJournal();
+        if (currentEditingFile == null || journal == null || !journal.needsCompaction()) return;
+        mapFileModule.compactFingerprints(currentEditingFile, fingerprintManager.getAllFingerprints(), journal);
+    }
+
+    /**
+     * 打开内存映射的只读指纹库：只用于定位，不在地图上绘制指纹标记，也不能增删改
+     */
+    private void loadMappedLibrary(String fileName) {
+        MappedFingerprintStore store = mapFileModule.openMappedLibrary(fileName);
+        if (store != null) {
+            fingerprintManager.useMappedLibrary(store);
+            currentEditingFile = fileName;
+            updateFileStatusDisplay();
+            imageHandler.drawAllMarkers(new ArrayList<>());
+            Toast.makeText(this, "只读指纹库已打开（共" + store.size() + "条指纹，仅用于定位）", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, "指纹库加载失败", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * 从URI获取文件名
      */
@@ -683,7 +763,7 @@ public class MainActivity extends AppCompatActivity{
         EditText etFileName = new EditText(this);
         String defaultName = getFileNameFromUri(selectedUri);
         etFileName.setText(defaultName);
-        etFileName.setHint("请输入保存的文件名（含.json）");
+        etFileName.setHint("请输入保存的文件名（.json或.wfp）");
 
         new AlertDialog.Builder(this)
                 .setTitle("导入成功")
@@ -696,16 +776,16 @@ public class MainActivity extends AppCompatActivity{
                         return;
                     }
 
-                    // 确保文件名以.json结尾
-                    if (!fileName.endsWith(".json")) {
-                        fileName += ".json";
-                    }
+                    // 未指定扩展名时保存为.json
+                    fileName = MapFileModule.withLibraryExtension(fileName);
 
                     // 保存导入的指纹到新文件
                     boolean saveSuccess = mapFileModule.saveFingerprints(fileName, importedFingerprints);
                     if (saveSuccess) {
                         // 更新当前编辑状态
+                        FingerprintJournal journal = openJournal(fileName, importedFingerprints);
                         fingerprintManager.loadFromFile(importedFingerprints);
+                        fingerprintManager.setJournal(journal);
                         imageHandler.drawAllMarkers(importedFingerprints);
                         currentEditingFile = fileName;
                         updateFileStatusDisplay();
@@ -818,12 +898,17 @@ public class MainActivity extends AppCompatActivity{
 
         coordinateManager = new CoordinateManager(imageHandler);
         fingerprintManager = new FingerprintManager();
+        fingerprintManager.setVirtualApGrouping(configManager.getScanConfig().isVirtualApGroupingEnabled());
         mapFileModule = new MapFileModule(this);
+        mapFileModule.setVirtualApGrouping(configManager.getScanConfig().isVirtualApGroupingEnabled());
 
-        wifiLocationManager = new WifiLocationManager(this, wifiManager, fingerprintManager, configManager);
+        scanScheduler = new ScanScheduler(this, wifiManager);
+        wifiLocationManager = new WifiLocationManager(this, wifiManager, fingerprintManager,
+                configManager.getLocateConfig(), scanScheduler);
+        configManager.addOnConfigChangedListener(configListener);
         Log.d(TAG, "定位管理器初始化完成");
 
-        wifiScanner = new WifiScanner(this, wifiManager, configManager.getScanInterval());
+        wifiScanner = new WifiScanner(this, wifiManager, scanScheduler);
         Log.d(TAG, "WiFi扫描器初始化完成");
 
         // 绑定控件引用
@@ -1012,13 +1097,22 @@ public class MainActivity extends AppCompatActivity{
     }
 
 
+    /**
+     * 采集与重扫共用的流水线（按区分度限制AP数量时带上当前指纹库索引）
+     */
+    private ScanPipeline newCapturePipeline(ScanConfig scanConfig) {
+        FingerprintIndex index = scanConfig.getApRanking() == ApRanking.DISCRIMINATIVE
+                ? fingerprintManager.getFingerprintIndex() : null;
+        return scanConfig.newCapturePipeline(index);
+    }
+
     private void finishScan() {
         isScanning = false;
         scanButton.setEnabled(true);
 
         // 处理扫描结果
         try {
-            filteredWifis = WifiDataProcessor.processMultipleScansWithAverage(multipleScans, configManager);
+            filteredWifis = capturePipeline.result();
 
             if (filteredWifis.isEmpty()) {
                 tvResult.append("未发现符合条件的稳定WiFi\n");
@@ -1071,7 +1165,7 @@ public class MainActivity extends AppCompatActivity{
     // 处理实时定位（修复版本）
     private void handleRealTimeLocate() {
         // 简化检查条件，主要关注指纹库是否存在
-        if (fingerprintManager == null || fingerprintManager.getAllFingerprints().isEmpty()) {
+        if (fingerprintManager == null || !fingerprintManager.hasFingerprints()) {
             Toast.makeText(this, "请先采集指纹数据", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -1098,124 +1192,149 @@ public class MainActivity extends AppCompatActivity{
     }
 
     /**
-     * 执行实时定位逻辑（增强版本 - 添加详细日志和容错）
+     * 执行实时定位逻辑（异步版本 - 等待新扫描结果，后台匹配，不阻塞主线程）
      */
     private void performRealTimeLocation() {
         if (wifiLocationManager == null) {
             Toast.makeText(this, "定位管理器未初始化", Toast.LENGTH_SHORT).show();
             return;
         }
+        if (pendingLocateRequest != null && !pendingLocateRequest.isDone()) {
+            Toast.makeText(this, "正在定位中，请稍候...", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
         // 显示扫描提示
         tvResult.setText("正在扫描WiFi信号进行定位...\n请确保：\n• 已开启WiFi\n• 已授予位置权限\n• 当前位置有WiFi信号");
 
-        Log.d(TAG, "开始执行实时定位");
+        Log.d(TAG, "开始执行实时定位，指纹库中共有 " + fingerprintManager.getFingerprintCount() + " 个指纹点");
 
-        // 获取当前指纹库信息用于调试
-        List<WifiFingerprint> fingerprints = fingerprintManager.getAllFingerprints();
-        Log.d(TAG, "指纹库中共有 " + fingerprints.size() + " 个指纹点");
+        btnRealTimeLocate.setEnabled(false);
+        pendingLocateRequest = wifiLocationManager.locateAsync(LOCATE_TIMEOUT_MS,
+                new LocateRequest.Callback() {
+                    @Override
+                    public void onLocated(WifiLocationManager.LocationResult result) {
+                        btnRealTimeLocate.setEnabled(true);
+                        showLocationResult(result);
+                    }
+
+                    @Override
+                    public void onFailed(String reason) {
+                        btnRealTimeLocate.setEnabled(true);
+                        showLocationFailure(reason);
+                    }
+                });
+    }
 
-        // 执行定位
-        WifiLocationManager.LocationResult result = wifiLocationManager.startRealTimeLocation();
+    /**
+     * 显示定位结果（主线程）
+     */
+    private void showLocationResult(WifiLocationManager.LocationResult result) {
+        List<WifiFingerprint> fingerprints = fingerprintManager.getAllFingerprints();
 
-        if (result != null) {
-            // 定位成功
-            Log.d(TAG, "定位成功 - 坐标: (" + result.getX() + ", " + result.getY() + "), 楼层: " + result.getFloor());
+        // 定位成功
+        Log.d(TAG, "定位成功 - 坐标: (" + result.getX() + ", " + result.getY() + "), 楼层: " + result.getFloor());
 
-            String displayText = "";
-            boolean foundExactMatch = false;
+        String displayText = "";
+        boolean foundExactMatch = false;
 
-            // 查找匹配的指纹点信息 - 使用容差匹配
-            for (WifiFingerprint fp : fingerprints) {
-                double distance = Math.sqrt(Math.pow(fp.getPixelX() - result.getX(), 2) +
-                        Math.pow(fp.getPixelY() - result.getY(), 2));
+        // 查找匹配的指纹点信息 - 使用容差匹配
+        for (WifiFingerprint fp : fingerprints) {
+            double distance = Math.sqrt(Math.pow(fp.getPixelX() - result.getX(), 2) +
+                    Math.pow(fp.getPixelY() - result.getY(), 2));
 
-                Log.d(TAG, "比较指纹点: (" + fp.getPixelX() + ", " + fp.getPixelY() +
-                        ") - 距离: " + distance + ", 楼层: " + fp.getFloor());
+            Log.d(TAG, "比较指纹点: (" + fp.getPixelX() + ", " + fp.getPixelY() +
+                    ") - 距离: " + distance + ", 楼层: " + fp.getFloor());
 
-                // 使用容差匹配（20像素范围内视为匹配）
-                if (distance < 20 && fp.getFloor() == result.getFloor()) {
-                    foundExactMatch = true;
-                    if (fp.getLabel() != null && !fp.getLabel().isEmpty()) {
-                        displayText = "特殊点：" + fp.getLabel();
-                    } else if (fp.getPath() != null && !fp.getPath().isEmpty()) {
-                        displayText = "普通点：" + fp.getPath();
-                    } else {
-                        displayText = "未命名点位";
-                    }
-                    Log.d(TAG, "找到匹配指纹点: " + displayText);
-                    break;
+            // 使用容差匹配（20像素范围内视为匹配）
+            if (distance < 20 && fp.getFloor() == result.getFloor()) {
+                foundExactMatch = true;
+                if (fp.getLabel() != null && !fp.getLabel().isEmpty()) {
+                    displayText = "特殊点：" + fp.getLabel();
+                } else if (fp.getPath() != null && !fp.getPath().isEmpty()) {
+                    displayText = "普通点：" + fp.getPath();
+                } else {
+                    displayText = "未命名点位";
                 }
+                Log.d(TAG, "找到匹配指纹点: " + displayText);
+                break;
             }
+        }
 
-            // 如果没有精确匹配，尝试查找最近的点
-            if (!foundExactMatch && !fingerprints.isEmpty()) {
-                WifiFingerprint nearestFp = fingerprints.get(0);
-                double minDistance = Double.MAX_VALUE;
-
-                for (WifiFingerprint fp : fingerprints) {
-                    double distance = Math.sqrt(Math.pow(fp.getPixelX() - result.getX(), 2) +
-                            Math.pow(fp.getPixelY() - result.getY(), 2));
-                    if (distance < minDistance) {
-                        minDistance = distance;
-                        nearestFp = fp;
-                    }
-                }
+        // 如果没有精确匹配，尝试查找最近的点
+        if (!foundExactMatch && !fingerprints.isEmpty()) {
+            WifiFingerprint nearestFp = fingerprints.get(0);
+            double minDistance = Double.MAX_VALUE;
 
-                displayText = "最近点位（距离" + (int)minDistance + "像素）";
-                if (nearestFp.getLabel() != null && !nearestFp.getLabel().isEmpty()) {
-                    displayText += "：" + nearestFp.getLabel();
+            for (WifiFingerprint fp : fingerprints) {
+                double distance = Math.sqrt(Math.pow(fp.getPixelX() - result.getX(), 2) +
+                        Math.pow(fp.getPixelY() - result.getY(), 2));
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestFp = fp;
                 }
-                Log.d(TAG, "使用最近指纹点，距离: " + minDistance);
             }
 
-            // 在地图上绘制定位标记
-            imageHandler.drawLocationMarker((float) result.getX(), (float) result.getY(), displayText);
+            displayText = "最近点位（距离" + (int)minDistance + "像素）";
+            if (nearestFp.getLabel() != null && !nearestFp.getLabel().isEmpty()) {
+                displayText += "：" + nearestFp.getLabel();
+            }
+            Log.d(TAG, "使用最近指纹点，距离: " + minDistance);
+        }
 
-            // 显示定位结果
-            String resultText = String.format("📍 定位成功！\n楼层：%d\n坐标：(%.0f, %.0f)\n%s",
-                    result.getFloor(),
-                    result.getX(),
-                    result.getY(),
-                    displayText.isEmpty() ? "新位置（指纹库中无匹配标签）" : displayText);
+        // 在地图上绘制定位标记
+        imageHandler.drawLocationMarker((float) result.getX(), (float) result.getY(), displayText);
 
-            tvResult.setText(resultText);
-            Toast.makeText(this, "定位完成", Toast.LENGTH_SHORT).show();
+        // 显示定位结果
+        String resultText = String.format("📍 定位成功！\n楼层：%d\n坐标：(%.0f, %.0f)\n置信度：%.2f（%d个候选点）\n%s",
+                result.getFloor(),
+                result.getX(),
+                result.getY(),
+                result.getConfidence(),
+                result.getCandidates().size(),
+                displayText.isEmpty() ? "新位置（指纹库中无匹配标签）" : displayText);
 
-        } else {
-            // 定位失败 - 提供详细错误信息
-            Log.e(TAG, "定位失败，返回结果为null");
+        tvResult.setText(resultText);
+        Toast.makeText(this, "定位完成", Toast.LENGTH_SHORT).show();
+    }
 
-            String errorDetail = "❌ 定位失败\n\n可能原因：\n";
+    /**
+     * 显示定位失败详情（主线程）
+     */
+    private void showLocationFailure(String reason) {
+        // 定位失败 - 提供详细错误信息
+        Log.e(TAG, "定位失败：" + reason);
 
-            // 检查当前WiFi扫描情况
-            try {
-                List<ScanResult> currentScan = wifiManager.getScanResults();
-                if (currentScan == null || currentScan.isEmpty()) {
-                    errorDetail += "• 当前未扫描到任何WiFi信号\n";
-                } else {
-                    errorDetail += "• 当前扫描到 " + currentScan.size() + " 个WiFi信号\n";
+        String errorDetail = "❌ 定位失败（" + reason + "）\n\n可能原因：\n";
 
-                    // 检查信号强度
-                    int strongSignals = 0;
-                    for (ScanResult sr : currentScan) {
-                        if (sr.level > configManager.getWifiThreshold()) {
-                            strongSignals++;
-                        }
+        // 检查当前WiFi扫描情况
+        try {
+            List<ScanResult> currentScan = wifiManager.getScanResults();
+            if (currentScan == null || currentScan.isEmpty()) {
+                errorDetail += "• 当前未扫描到任何WiFi信号\n";
+            } else {
+                errorDetail += "• 当前扫描到 " + currentScan.size() + " 个WiFi信号\n";
+
+                // 检查信号强度
+                int strongSignals = 0;
+                int threshold = configManager.getScanConfig().getWifiThreshold();
+                for (ScanResult sr : currentScan) {
+                    if (sr.level > threshold) {
+                        strongSignals++;
                     }
-                    errorDetail += "• 其中 " + strongSignals + " 个信号强度达标\n";
                 }
-            } catch (SecurityException e) {
-                errorDetail += "• 无法访问WiFi扫描结果（权限问题）\n";
+                errorDetail += "• 其中 " + strongSignals + " 个信号强度达标\n";
             }
+        } catch (SecurityException e) {
+            errorDetail += "• 无法访问WiFi扫描结果（权限问题）\n";
+        }
 
-            errorDetail += "• 指纹库数据可能不足\n";
-            errorDetail += "• 当前位置与指纹采集位置差异较大\n";
-            errorDetail += "• WiFi信号环境发生变化\n";
+        errorDetail += "• 指纹库数据可能不足\n";
+        errorDetail += "• 当前位置与指纹采集位置差异较大\n";
+        errorDetail += "• WiFi信号环境发生变化\n";
 
-            tvResult.setText(errorDetail);
-            Toast.makeText(this, "定位失败，请查看详细原因", Toast.LENGTH_LONG).show();
-        }
+        tvResult.setText(errorDetail);
+        Toast.makeText(this, "定位失败，请查看详细原因", Toast.LENGTH_LONG).show();
     }
     /**
      * 显示WiFi选择对话框（修复版本 - 放宽条件限制）
@@ -1384,6 +1503,7 @@ public class MainActivity extends AppCompatActivity{
         boolean success = fingerprintManager.saveFingerprint(x, y, floor, zone, label, path, wifis);
 
         if (success) {
+            compactJournalIfNeeded();
             String tip = label.isEmpty() ? "普通点（" + path + "）" : "特殊点（" + label + "）";
             Toast.makeText(this, tip + "保存成功：(" + (int) x + "," + (int) y + ")", Toast.LENGTH_SHORT).show();
 
@@ -1618,6 +1738,7 @@ public class MainActivity extends AppCompatActivity{
             boolean success = fingerprintManager.updateFingerprint(fingerprint);
 
             if (success) {
+                compactJournalIfNeeded();
                 String tip = newLabel.isEmpty() ? "普通点（" + newPath + "）" : "特殊点（" + newLabel + "）";
                 Toast.makeText(MainActivity.this, tip + "更新成功（坐标已修改）", Toast.LENGTH_SHORT).show();
                 imageHandler.drawAllMarkers(fingerprintManager.getAllFingerprints()); // 刷新地图标记
@@ -1635,6 +1756,7 @@ public class MainActivity extends AppCompatActivity{
                     .setPositiveButton("删除", (d, w) -> {
                         boolean success = fingerprintManager.deleteFingerprint(fingerprint);
                         if (success) {
+                            compactJournalIfNeeded();
                             String tip = fingerprint.getLabel().isEmpty() ? "普通点" : "特殊点（" + fingerprint.getLabel() + "）";
                             Toast.makeText(MainActivity.this, tip + "删除成功", Toast.LENGTH_SHORT).show();
                             imageHandler.drawAllMarkers(fingerprintManager.getAllFingerprints()); // 刷新地图标记
@@ -1680,33 +1802,38 @@ public class MainActivity extends AppCompatActivity{
         }
 
         isScanning = true;
-        multipleScans.clear();
-        int scanCount = configManager.getScanCount();
+        ScanConfig scanConfig = configManager.getScanConfig();
+        ScanPipeline pipeline = newCapturePipeline(scanConfig);
+        int scanCount = scanConfig.getScanCount();
         tvResult.setText(String.format("开始重新扫描WiFi（共%d次）...\n", scanCount));
         scanButton.setEnabled(false);
 
-        // 直接执行扫描（无回调）
-        List<List<ScanResult>> results = wifiScanner.performMultipleScans(scanCount);
-        multipleScans.addAll(results);
+        // 扫描会阻塞等待系统广播，放到后台线程执行
+        new Thread(() -> {
+            wifiScanner.performStreamingScans(scanConfig, MIN_SCAN_COUNT, ScanScheduler.Priority.RESCAN,
+                    pipeline, this::showScanProgress);
 
-        // 处理结果
-        runOnUiThread(() -> {
-            try {
-                filteredWifis = WifiDataProcessor.processMultipleScansWithAverage(multipleScans, configManager);
-                if (filteredWifis.size() >= MIN_SELECT_WIFI_COUNT && currentEditingFingerprint != null) {
-                    // 更新指纹的WiFi数据
-                    currentEditingFingerprint.setFilteredWifis(filteredWifis);
-                    fingerprintManager.updateFingerprint(currentEditingFingerprint);
-                    tvResult.append("✅ 重新扫描完成，已更新指纹数据\n");
-                    Toast.makeText(MainActivity.this, "指纹WiFi数据已更新", Toast.LENGTH_SHORT).show();
+            // 处理结果
+            runOnUiThread(() -> {
+                try {
+                    filteredWifis = pipeline.result();
+                    if (filteredWifis.size() >= MIN_SELECT_WIFI_COUNT && currentEditingFingerprint != null) {
+                        // 更新指纹的WiFi数据
+                        currentEditingFingerprint.setFilteredWifis(filteredWifis);
+                        if (fingerprintManager.updateFingerprint(currentEditingFingerprint)) {
+                            compactJournalIfNeeded();
+                        }
+                        tvResult.append("✅ 重新扫描完成，已更新指纹数据\n");
+                        Toast.makeText(MainActivity.this, "指纹WiFi数据已更新", Toast.LENGTH_SHORT).show();
+                    }
+                } catch (Exception e) {
+                    tvResult.append("❌ 重新扫描处理失败: " + e.getMessage() + "\n");
+                } finally {
+                    isScanning = false;
+                    scanButton.setEnabled(true);
                 }
-            } catch (Exception e) {
-                tvResult.append("❌ 重新扫描处理失败: " + e.getMessage() + "\n");
-            } finally {
-                isScanning = false;
-                scanButton.setEnabled(true);
-            }
-        });
+            });
+        }).start();
     }
 
     /**
@@ -1774,9 +1901,24 @@ public class MainActivity extends AppCompatActivity{
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (pendingLocateRequest != null) {
+            pendingLocateRequest.cancel();
+        }
+        if (configManager != null) {
+            configManager.removeOnConfigChangedListener(configListener);
+        }
+        if (fingerprintManager != null) {
+            fingerprintManager.setJournal(null); // 关闭日志文件（记录已逐条落盘）
+        }
+        if (wifiLocationManager != null) {
+            wifiLocationManager.destroy();
+        }
         if (wifiScanner != null) {
             wifiScanner.destroy();
         }
+        if (scanScheduler != null) {
+            scanScheduler.release();
+        }
     }
 
     // 保存当前指纹（按钮绑定使用）- 增强版本
@@ -6,18 +6,20 @@ import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 import android.util.Log;
 import android.widget.Toast;
 import androidx.core.content.FileProvider;
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,13 +27,23 @@ public class MapFileModule {
     private static final String TAG = "MapFileModule";
     private static final String FINGERPRINT_DIR = "WiFi_Fingerprints";
     private final Context context;
-    private final Gson gson = new Gson();
+    private static final String JSON_EXTENSION = ".json";
+    private final FingerprintJsonCodec jsonCodec = new FingerprintJsonCodec();
+    private final FingerprintBinaryCodec binaryCodec = new FingerprintBinaryCodec();
+    private boolean groupVirtualAps; // 导出.wfpm时是否合并虚拟AP（与匹配时的设置一致）
 
     public MapFileModule(Context context) {
         this.context = context;
         ensureDirExists();
     }
 
+    /**
+     * 设置导出内存映射格式时是否合并虚拟AP（已导出的文件不受影响）
+     */
+    public void setVirtualApGrouping(boolean enabled) {
+        groupVirtualAps = enabled;
+    }
+
     private File getFingerprintDirectory() {
         // 获取公共下载目录
         File downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
@@ -101,47 +113,21 @@ public class MapFileModule {
         }
     }
 
-    // 【关键修改】解析导入的指纹文件时，确保filteredWifis不为null
+    // 【关键修改】解析导入的指纹文件时，确保filteredWifis不为null（流式逐条解析）
     public List<WifiFingerprint> parseImportedFingerprints(InputStream inputStream) {
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
         try {
-            StringBuilder jsonBuilder = new StringBuilder();
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                jsonBuilder.append(new String(buffer, 0, bytesRead, "UTF-8"));
-            }
-
-            String json = jsonBuilder.toString().trim();
-            Log.d(TAG, "解析JSON内容，长度: " + json.length());
-
-            if (json.isEmpty()) {
+            readLibrary(inputStream, fingerprints::add);
+            if (fingerprints.isEmpty()) {
                 Log.e(TAG, "导入的文件为空");
-                return new ArrayList<>(); // 空文件返回空列表
-            }
-
-            Type type = new TypeToken<List<WifiFingerprint>>(){}.getType();
-            List<WifiFingerprint> fingerprints = gson.fromJson(json, type);
-
-            if (fingerprints == null) {
-                Log.e(TAG, "Gson解析返回null，返回空列表");
-                return new ArrayList<>();
-            }
-
-            // 强制初始化每个指纹的filteredWifis（核心修复）
-            for (WifiFingerprint fp : fingerprints) {
-                if (fp.getFilteredWifis() == null) {
-                    fp.setFilteredWifis(new ArrayList<>());
-                    Log.w(TAG, "修复空WiFi列表：指纹数据不完整");
-                }
+            } else {
+                Log.d(TAG, "解析导入的指纹库成功，共" + fingerprints.size() + "条指纹");
             }
-
-            Log.d(TAG, "解析导入的指纹库成功，共" + fingerprints.size() + "条指纹");
             return fingerprints;
-
         } catch (IOException e) {
             Log.e(TAG, "读取文件流失败：" + e.getMessage());
             return new ArrayList<>();
-        } catch (JsonSyntaxException e) {
+        } catch (JsonParseException e) {
             Log.e(TAG, "JSON格式错误：" + e.getMessage());
             return new ArrayList<>();
         } catch (Exception e) {
@@ -157,7 +143,6 @@ public class MapFileModule {
         }
 
         try {
-            String json = gson.toJson(fingerprints);
             File dir = getFingerprintDirectory();
             if (dir == null) {
                 Log.e(TAG, "保存失败：目录不可用");
@@ -168,64 +153,178 @@ public class MapFileModule {
                 return false;
             }
 
+            // 流式写入临时文件，完整写完后再替换原文件（写入中途失败不会损坏已有指纹库）
             File file = new File(dir, fileName);
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write(json.getBytes("UTF-8"));
-                fos.flush();
-                Log.d(TAG, "保存成功：" + file.getAbsolutePath());
-                Toast.makeText(context, "文件已保存至：" + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                    MediaScannerConnection.scanFile(context, new String[]{file.getAbsolutePath()}, null, null);
+            File tempFile = new File(dir, fileName + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+                if (isMappedFileName(fileName)) {
+                    MappedFingerprintStore.write(fos, fingerprints, groupVirtualAps);
+                } else if (isBinaryFileName(fileName)) {
+                    binaryCodec.write(fos, fingerprints);
+                } else {
+                    jsonCodec.write(fos, fingerprints);
                 }
-                return true;
+                fos.getFD().sync(); // 内容落盘后再改名，掉电时不会留下改名成功但内容为空的库文件
+            } catch (IOException | RuntimeException e) {
+                tempFile.delete();
+                throw e;
+            }
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                Log.e(TAG, "保存失败：无法替换文件 " + file.getAbsolutePath());
+                return false;
+            }
+            syncDirectory(dir); // 改名记录在目录项中，目录落盘后替换才不会在掉电后回退
+            Log.d(TAG, "保存成功：" + file.getAbsolutePath());
+            Toast.makeText(context, "文件已保存至：" + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                MediaScannerConnection.scanFile(context, new String[]{file.getAbsolutePath()}, null, null);
             }
+            return true;
         } catch (IOException e) {
             Log.e(TAG, "保存失败：" + e.getMessage());
             return false;
         }
     }
 
-    public List<WifiFingerprint> loadFingerprints(String fileName) {
+    /**
+     * 把目录项（文件的创建与改名）写入存储；不支持对目录fsync的文件系统上只记录警告
+     */
+    private static void syncDirectory(File dir) {
         try {
-            File file = new File(getFingerprintDirectory(), fileName);
-            if (!file.exists()) {
-                Log.e(TAG, "文件不存在：" + fileName);
-                return new ArrayList<>();
+            FileDescriptor fd = Os.open(dir.getAbsolutePath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
             }
+        } catch (ErrnoException e) {
+            Log.w(TAG, "目录落盘失败：" + e.getMessage());
+        }
+    }
 
-            try (FileInputStream fis = new FileInputStream(file)) {
-                StringBuilder jsonBuilder = new StringBuilder();
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    jsonBuilder.append(new String(buffer, 0, bytesRead, "UTF-8"));
-                }
+    /**
+     * 按文件头自动识别格式：以二进制文件头开始的按.wfp解码，否则按JSON解析
+     */
+    private int readLibrary(InputStream inputStream, FingerprintSink sink) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(inputStream);
+        return FingerprintBinaryCodec.isBinary(in) ? binaryCodec.read(in, sink) : jsonCodec.read(in, sink);
+    }
 
-                String json = jsonBuilder.toString().trim();
-                if (json.isEmpty()) {
-                    Log.w(TAG, "文件内容为空");
-                    return new ArrayList<>();
-                }
+    /**
+     * 以.wfp结尾的文件按二进制格式保存，其余按JSON保存
+     */
+    static boolean isBinaryFileName(String fileName) {
+        return fileName.endsWith(FingerprintBinaryCodec.EXTENSION);
+    }
 
-                Type type = new TypeToken<List<WifiFingerprint>>(){}.getType();
-                List<WifiFingerprint> fingerprints = gson.fromJson(json, type);
+    /**
+     * 以.wfpm结尾的文件为内存映射格式（只能通过openMappedLibrary打开，不能作为普通指纹库加载）
+     */
+    public static boolean isMappedFileName(String fileName) {
+        return fileName.endsWith(MappedFingerprintStore.EXTENSION);
+    }
 
-                // 【补充修复】加载时同样检查并初始化空列表
-                if (fingerprints != null) {
-                    for (WifiFingerprint fp : fingerprints) {
-                        if (fp.getFilteredWifis() == null) {
-                            fp.setFilteredWifis(new ArrayList<>());
-                        }
-                    }
-                }
+    /**
+     * 补全指纹库文件扩展名：已是.json、.wfp或.wfpm时原样返回，否则追加.json
+     */
+    public static String withLibraryExtension(String fileName) {
+        if (fileName.endsWith(JSON_EXTENSION) || isBinaryFileName(fileName) || isMappedFileName(fileName)) {
+            return fileName;
+        }
+        return fileName + JSON_EXTENSION;
+    }
+
+    public List<WifiFingerprint> loadFingerprints(String fileName) {
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
+        return loadFingerprints(fileName, fingerprints::add) ? fingerprints : new ArrayList<>();
+    }
 
-                return fingerprints != null ? fingerprints : new ArrayList<>();
+    /**
+     * 流式加载指纹库：逐条解析并交给接收方，不把整个文件读入内存
+     * 解析中途出错时已交出的指纹不会撤回，调用方应以返回值为准决定是否采用
+     * @return 加载成功（含空文件）返回true；文件不存在或格式错误返回false
+     */
+    public boolean loadFingerprints(String fileName, FingerprintSink sink) {
+        File file = new File(getFingerprintDirectory(), fileName);
+        if (!file.exists()) {
+            Log.e(TAG, "文件不存在：" + fileName);
+            return false;
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int count = readLibrary(fis, sink);
+            if (count == 0) {
+                Log.w(TAG, "文件内容为空");
             }
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "加载失败：" + e.getMessage());
-            return new ArrayList<>();
+            return false;
+        }
+    }
+
+    /**
+     * 以只读方式映射.wfpm指纹库（不读入内容，打开耗时与文件大小无关）
+     * @return 打开失败返回null
+     */
+    public MappedFingerprintStore openMappedLibrary(String fileName) {
+        File file = new File(getFingerprintDirectory(), fileName);
+        if (!file.exists()) {
+            Log.e(TAG, "文件不存在：" + fileName);
+            return null;
+        }
+        try {
+            MappedFingerprintStore store = MappedFingerprintStore.open(file);
+            Log.d(TAG, "内存映射指纹库已打开：" + fileName + "，共" + store.size() + "条指纹，虚拟AP"
+                    + (store.isVirtualApGrouped() ? "已合并" : "未合并"));
+            return store;
+        } catch (IOException e) {
+            Log.e(TAG, "打开内存映射指纹库失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 打开库文件的增量日志：先把日志重放到刚加载的fingerprints上，之后的保存追加到日志末尾
+     * @return 打开失败返回null（此时只能整体保存）
+     */
+    public FingerprintJournal openJournal(String fileName, List<WifiFingerprint> fingerprints) {
+        try {
+            FingerprintJournal journal = FingerprintJournal.open(new File(getFingerprintDirectory(), fileName), fingerprints);
+            if (journal.isStaleDiscarded()) {
+                Log.w(TAG, "日志与库文件不匹配（库文件已合并或被改写），已忽略：" + fileName);
+            } else if (journal.getDroppedBytes() > 0) {
+                Log.w(TAG, "丢弃日志末尾不完整或无法应用的记录（" + journal.getDroppedBytes() + "字节）：" + fileName);
+            }
+            if (journal.getReplayedRecords() > 0) {
+                Log.d(TAG, "重放日志" + journal.getReplayedRecords() + "条记录：" + fileName);
+            }
+            return journal;
+        } catch (IOException e) {
+            Log.e(TAG, "打开日志失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 合并：把指纹库整体写回库文件（文件内容与目录项均已落盘）后再清空日志
+     * 写回失败时日志保持不变，已加载的库仍可由旧库文件加日志完整恢复
+     */
+    public boolean compactFingerprints(String fileName, List<WifiFingerprint> fingerprints,
+                                       FingerprintJournal journal) {
+        if (!saveFingerprints(fileName, fingerprints)) {
+            return false;
+        }
+        if (journal != null) {
+            try {
+                journal.reset(new File(getFingerprintDirectory(), fileName));
+            } catch (IOException e) {
+                // 库文件已完整写回，旧日志的头部与之不符，下次加载时会被忽略
+                Log.e(TAG, "清空日志失败：" + e.getMessage());
+            }
         }
+        return true;
     }
 
     public List<String> getAllFingerprintFileNames() {
@@ -243,7 +342,8 @@ public class MapFileModule {
         }
 
         for (File file : files) {
-            if (file.isFile() && file.getName().endsWith(".json")) {
+            String name = file.getName();
+            if (file.isFile() && (name.endsWith(JSON_EXTENSION) || isBinaryFileName(name) || isMappedFileName(name))) {
                 fileNames.add(file.getName());
             }
         }
@@ -0,0 +1,692 @@
+package com.example.mywifiscanner;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存映射的只读指纹库（.wfpm）：超大场地的指纹不在堆上建对象，打开文件即可定位
+ * 文件是定长数组的直接排列（小端序），打开时用FileChannel.map映射整个文件，只校验头部与长度、不解析内容；
+ * 内容在读取时做范围检查，内容损坏的文件在定位时抛出CorruptedFileException，而不是在打分线程上越界
+ * 匹配时FingerprintMatcher直接在映射的条目数组上归并打分，候选查找对倒排表做多路归并，
+ * 单次定位的堆内存只与当前扫描的AP数和候选数有关，与库大小无关
+ * 文件由完整指纹库导出（{@link #write}），只保留定位所需的数据：路径与信道宽度不导出，RSSI方差量化为标准差(dB)，
+ * 非标准格式的BSSID被跳过；单个文件不超过2GB
+ * 虚拟AP按导出时的设置合并：条目只含组代表，组内其他BSSID经AP分组表映射到代表，与堆上索引的分组一致
+ *
+ * 布局（8字节数组在前、4字节数组居中、字节数组在后，各段自然对齐）：
+ *   头部(64字节) magic "WFPM" | 版本 | 指纹数 | AP数 | 条目数 | 字符串数 | 频段权重 double×4 | 字符串字节数 | 标志
+ *   AP的MAC long[AP数]（升序，AP编号 = 下标 + 1）| 指纹X double[] | 指纹Y double[]
+ *   AP的SSID int[] | AP的频率 int[] | AP所属组的代表编号 int[] | 倒排起点 int[AP数 + 1] | 倒排（指纹ID）int[条目数]
+ *   楼层 int[] | 区域 int[] | 标签 int[] | 频段起点 int[指纹数 × 4 + 1] | 条目AP编号 int[条目数] | 字符串起点 int[字符串数 + 1]
+ *   条目RSSI byte[] | 条目标准差 byte[] | AP频段 byte[AP数] | 字符串UTF-8字节
+ * 每条指纹的条目按 频段、AP编号 升序排列；字符串引用以1起计，0表示null
+ */
+public final class MappedFingerprintStore implements FingerprintLibrary {
+    static final String EXTENSION = ".wfpm";
+
+    private static final int MAGIC = 'W' | 'F' << 8 | 'P' << 16 | 'M' << 24; // 小端写出即为"WFPM"
+    private static final int VERSION = 2; // 2：增加AP分组表与标志
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_GROUPED = 1; // 导出时合并了虚拟AP
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int fingerprintCount;
+    private final int apCount;
+    private final int entryCount;
+    private final int stringCount;
+    private final int stringByteCount;
+    private final boolean grouped;
+    private final double[] bandWeights = new double[WifiBand.COUNT];
+
+    private final LongBuffer apMacs;
+    private final DoubleBuffer xs;
+    private final DoubleBuffer ys;
+    private final IntBuffer apSsids;
+    private final IntBuffer apFrequencies;
+    private final IntBuffer apGroups;
+    private final IntBuffer postingStarts;
+    private final IntBuffer postings;
+    private final IntBuffer floors;
+    private final IntBuffer zones;
+    private final IntBuffer labels;
+    private final IntBuffer bandStarts;
+    private final IntBuffer entryAps;
+    private final IntBuffer stringStarts;
+    private final int entryRssiOffset;
+    private final int entryStdOffset;
+    private final int apBandOffset;
+    private final int stringBytesOffset;
+
+    private MappedFingerprintStore(ByteBuffer mapped) throws IOException {
+        buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是内存映射指纹库文件");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("不支持的指纹库版本：" + version);
+        }
+        fingerprintCount = buffer.getInt(8);
+        apCount = buffer.getInt(12);
+        entryCount = buffer.getInt(16);
+        stringCount = buffer.getInt(20);
+        for (int band = 0; band < WifiBand.COUNT; band++) {
+            bandWeights[band] = buffer.getDouble(24 + band * 8);
+        }
+        stringByteCount = buffer.getInt(56);
+        grouped = (buffer.getInt(60) & FLAG_GROUPED) != 0;
+        long expected = fileSize(fingerprintCount, apCount, entryCount, stringCount, stringByteCount);
+        if (fingerprintCount < 0 || apCount < 0 || entryCount < 0 || stringCount < 0
+                || stringByteCount < 0 || expected != buffer.capacity()) {
+            throw new IOException("文件长度与头部不符（文件可能不完整）");
+        }
+
+        Sections sections = new Sections(buffer);
+        apMacs = sections.slice(apCount * 8L).asLongBuffer();
+        xs = sections.slice(fingerprintCount * 8L).asDoubleBuffer();
+        ys = sections.slice(fingerprintCount * 8L).asDoubleBuffer();
+        apSsids = sections.ints(apCount);
+        apFrequencies = sections.ints(apCount);
+        apGroups = sections.ints(apCount);
+        postingStarts = sections.ints(apCount + 1);
+        postings = sections.ints(entryCount);
+        floors = sections.ints(fingerprintCount);
+        zones = sections.ints(fingerprintCount);
+        labels = sections.ints(fingerprintCount);
+        bandStarts = sections.ints(fingerprintCount * WifiBand.COUNT + 1);
+        entryAps = sections.ints(entryCount);
+        stringStarts = sections.ints(stringCount + 1);
+        entryRssiOffset = sections.skip(entryCount);
+        entryStdOffset = sections.skip(entryCount);
+        apBandOffset = sections.skip(apCount);
+        stringBytesOffset = sections.skip(stringByteCount);
+    }
+
+    private static long fileSize(long fingerprints, long aps, long entries, long strings, long stringBytes) {
+        return HEADER_SIZE + aps * 8 + fingerprints * 16
+                + (aps * 4 + 1 + entries * 2 + fingerprints * (3 + WifiBand.COUNT) + 1 + strings + 1) * 4
+                + entries * 2 + aps + stringBytes;
+    }
+
+    /**
+     * 按布局顺序依次切出各段
+     */
+    private static final class Sections {
+        private final ByteBuffer buffer;
+        private int offset = HEADER_SIZE;
+
+        Sections(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        ByteBuffer slice(long bytes) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.limit(offset + (int) bytes);
+            offset += (int) bytes;
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        IntBuffer ints(int count) {
+            return slice(count * 4L).asIntBuffer();
+        }
+
+        int skip(int bytes) {
+            int start = offset;
+            offset += bytes;
+            return start;
+        }
+    }
+
+    /**
+     * 以只读方式映射指纹库文件（映射建立后即关闭文件，映射在对象被回收前一直有效）
+     * @throws IOException 文件不是内存映射指纹库、版本不支持或长度与头部不符
+     */
+    public static MappedFingerprintStore open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("指纹库文件超过2GB");
+            }
+            return new MappedFingerprintStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * 以内存中的数据创建（数据需与文件布局相同）
+     */
+    static MappedFingerprintStore wrap(ByteBuffer data) throws IOException {
+        return new MappedFingerprintStore(data);
+    }
+
+    /**
+     * 映射文件的内容与头部不一致（文件在写入后被损坏）：读取到越界的下标、编号或长度时抛出
+     */
+    public static final class CorruptedFileException extends IllegalStateException {
+        public CorruptedFileException(String message) {
+            super(message);
+        }
+    }
+
+    private static int checked(int value, int min, int max, String what) {
+        if (value < min || value > max) {
+            throw new CorruptedFileException("指纹库文件已损坏：" + what + "越界（" + value + "）");
+        }
+        return value;
+    }
+
+    /**
+     * 导出时是否合并了虚拟AP
+     */
+    public boolean isVirtualApGrouped() {
+        return grouped;
+    }
+
+    // ==================== 匹配用的数组访问（读取时检查范围） ====================
+    /**
+     * 指纹id在频段band的条目起点；band为WifiBand.COUNT时为该指纹条目的终点
+     */
+    int bandStart(int id, int band) {
+        return checked(bandStarts.get(id * WifiBand.COUNT + band), 0, entryCount, "条目起点");
+    }
+
+    /**
+     * 指纹id的条目数（终点不小于起点）
+     */
+    private int entryCountOf(int id) {
+        int start = bandStart(id, 0);
+        return checked(bandStart(id, WifiBand.COUNT), start, entryCount, "条目终点") - start;
+    }
+
+    int entryAp(int i) {
+        return checked(entryAps.get(i), 1, apCount, "AP编号");
+    }
+
+    int entryRssi(int i) {
+        return buffer.get(entryRssiOffset + i);
+    }
+
+    int entryStd(int i) {
+        return buffer.get(entryStdOffset + i);
+    }
+
+    double[] getBandWeights() {
+        return bandWeights;
+    }
+
+    /**
+     * AP编号所属虚拟AP组的代表编号（未分组时为自身）
+     */
+    private int groupOf(int ap) {
+        return checked(apGroups.get(ap - 1), 1, apCount, "AP分组");
+    }
+
+    private int bandOf(int ap) {
+        return checked(buffer.get(apBandOffset + ap - 1), 0, WifiBand.COUNT - 1, "AP频段");
+    }
+
+    private long macOf(int ap) {
+        long mac = apMacs.get(ap - 1);
+        if (mac < 0 || mac >>> 48 != 0) {
+            throw new CorruptedFileException("指纹库文件已损坏：MAC越界（" + mac + "）");
+        }
+        return mac;
+    }
+
+    private int postingStart(int ap) {
+        return checked(postingStarts.get(ap), 0, entryCount, "倒排起点");
+    }
+
+    /**
+     * BSSID在本库中的AP编号（MAC表上二分查找），库中没有或格式非标准时返回0
+     */
+    int apNumberOf(String bssid) {
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        if (mac < 0) return 0;
+        int low = 0, high = apCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = apMacs.get(mid);
+            if (value < mac) {
+                low = mid + 1;
+            } else if (value > mac) {
+                high = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return 0;
+    }
+
+    private String stringOf(int ref) {
+        checked(ref, 0, stringCount, "字符串引用");
+        if (ref == 0) return null;
+        int start = checked(stringStarts.get(ref - 1), 0, stringByteCount, "字符串起点");
+        int end = checked(stringStarts.get(ref), start, stringByteCount, "字符串终点");
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringBytesOffset + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== FingerprintLibrary ====================
+    @Override
+    public int size() {
+        return fingerprintCount;
+    }
+
+    /**
+     * 库中的AP映射到组代表编号；库中没有的AP各自编号并归入UNKNOWN频段，与堆上索引的处理一致（参与融合权重，但不会匹配到指纹）
+     */
+    @Override
+    public CompiledFingerprint compileQuery(List<FilteredWifi> currentWifis) {
+        if (currentWifis == null || currentWifis.isEmpty()) {
+            return CompiledFingerprint.compile(null);
+        }
+        long[] packed = new long[currentWifis.size()];
+        int n = 0;
+        int nextUnknown = apCount;
+        for (int index = 0; index < currentWifis.size(); index++) {
+            FilteredWifi wifi = currentWifis.get(index);
+            if (wifi == null || wifi.getBssid() == null) continue;
+            int ap = apNumberOf(wifi.getBssid());
+            int band = WifiBand.UNKNOWN;
+            if (ap > 0) {
+                ap = groupOf(ap);
+                band = bandOf(ap);
+            } else {
+                ap = ++nextUnknown;
+            }
+            packed[n++] = CompiledFingerprint.pack(band, ap, wifi.getRssi(), index);
+        }
+        return CompiledFingerprint.fromPacked(currentWifis, packed, n);
+    }
+
+    @Override
+    public double similarity(CompiledFingerprint current, int id) {
+        return FingerprintMatcher.calculateMappedSimilarity(current, this, id);
+    }
+
+    /**
+     * 多路归并当前扫描各AP的倒排表（各自按指纹ID升序），同一ID在几个表中出现即共享几个AP
+     * 同组的多个虚拟BSSID映射到同一代表，只算一个共享AP
+     * 不按库大小开计数数组，堆内存只与AP数和候选数有关
+     */
+    @Override
+    public int[] findCandidates(List<FilteredWifi> currentWifis, int minSharedAps) {
+        if (currentWifis == null || currentWifis.isEmpty() || fingerprintCount == 0) {
+            return new int[0];
+        }
+        int required = Math.max(1, minSharedAps);
+
+        int[] aps = new int[currentWifis.size()];
+        int apN = 0;
+        for (FilteredWifi wifi : currentWifis) {
+            if (wifi == null) continue;
+            int ap = apNumberOf(wifi.getBssid());
+            if (ap > 0) aps[apN++] = groupOf(ap);
+        }
+        Arrays.sort(aps, 0, apN);
+
+        // 小顶堆元素：指纹ID(高32位) | 倒排表序号(低32位)
+        long[] heap = new long[apN];
+        int[] positions = new int[apN];
+        int[] ends = new int[apN];
+        int heapSize = 0;
+        for (int k = 0; k < apN; k++) {
+            if (k > 0 && aps[k] == aps[k - 1]) continue;
+            positions[k] = postingStart(aps[k] - 1);
+            ends[k] = postingStart(aps[k]);
+            if (positions[k] < ends[k]) {
+                heap[heapSize] = (long) posting(positions[k]) << 32 | k;
+                siftUp(heap, heapSize++);
+            }
+        }
+
+        int[] candidates = new int[16];
+        int count = 0;
+        while (heapSize > 0) {
+            int id = (int) (heap[0] >>> 32);
+            int shared = 0;
+            while (heapSize > 0 && (int) (heap[0] >>> 32) == id) {
+                int k = (int) heap[0];
+                shared++;
+                if (++positions[k] < ends[k]) {
+                    heap[0] = (long) posting(positions[k]) << 32 | k;
+                } else {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, 0);
+            }
+            if (shared >= required) {
+                if (count == candidates.length) candidates = Arrays.copyOf(candidates, count * 2);
+                candidates[count++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private int posting(int i) {
+        return checked(postings.get(i), 0, fingerprintCount - 1, "倒排指纹ID");
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long value = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private static void siftDown(long[] heap, int size, int i) {
+        if (size == 0) return;
+        long value = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= value) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * 按ID还原为WifiFingerprint对象（每次新建，用于kNN结果等少量指纹）
+     */
+    @Override
+    public WifiFingerprint get(int id) {
+        View view = newView().moveTo(id);
+        WifiFingerprint fp = new WifiFingerprint();
+        fp.setPixelX(view.getPixelX());
+        fp.setPixelY(view.getPixelY());
+        fp.setFloor(view.getFloor());
+        fp.setZone(view.getZone());
+        fp.setLabel(view.getLabel());
+
+        BssidDictionary dictionary = BssidDictionary.getInstance();
+        int start = bandStart(id, 0);
+        int end = start + view.getApCount();
+        List<FilteredWifi> wifis = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            int ap = entryAp(i);
+            String ssid = dictionary.internSsid(stringOf(apSsids.get(ap - 1)));
+            FilteredWifi wifi = new FilteredWifi(ssid, dictionary.idOfMac(macOf(ap)), entryRssi(i),
+                    apFrequencies.get(ap - 1), 0);
+            int std = entryStd(i);
+            if (std > 0) wifi.setRssiVariance(std * std);
+            wifis.add(wifi);
+        }
+        fp.setFilteredWifis(wifis);
+        return fp;
+    }
+
+    /**
+     * 不支持分层定位（楼层/区域签名需要遍历整个库），定位时直接在全部候选中匹配
+     */
+    @Override
+    public List<RegionSignature> getRegionHierarchy() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 新建指纹视图（可通过moveTo复用于遍历，不创建指纹对象）
+     */
+    public View newView() {
+        return new View();
+    }
+
+    /**
+     * 映射数据上的指纹视图（享元）：只保存当前指纹ID，各字段按需从映射缓冲读取；非线程安全，各线程各自创建
+     */
+    public final class View {
+        private int id;
+
+        public View moveTo(int id) {
+            if (id < 0 || id >= fingerprintCount) throw new IndexOutOfBoundsException("指纹ID越界：" + id);
+            this.id = id;
+            return this;
+        }
+
+        public int getId() { return id; }
+        public double getPixelX() { return xs.get(id); }
+        public double getPixelY() { return ys.get(id); }
+        public int getFloor() { return floors.get(id); }
+        public String getZone() { return stringOf(zones.get(id)); }
+        public String getLabel() { return stringOf(labels.get(id)); }
+        public int getApCount() { return entryCountOf(id); }
+    }
+
+    // ==================== 导出 ====================
+    /**
+     * 将指纹库导出为内存映射格式（编译向量、频段权重与虚拟AP分组与同样设置下的堆上索引一致）
+     * @param groupVirtualAps 是否合并虚拟AP（导出后不能再切换，需要时重新导出）
+     */
+    public static void write(OutputStream outputStream, List<WifiFingerprint> fingerprints,
+                             boolean groupVirtualAps) throws IOException {
+        FingerprintIndex index = new FingerprintIndex(fingerprints, groupVirtualAps);
+        BssidDictionary dictionary = BssidDictionary.getInstance();
+        int idLimit = dictionary.idLimit();
+
+        // AP表：库中出现的标准MAC按升序编号，同时记下各AP的SSID与频率
+        long[] macById = new long[idLimit];
+        Arrays.fill(macById, -1);
+        String[] ssidById = new String[idLimit];
+        int[] frequencyById = new int[idLimit];
+        long[] macs = new long[64];
+        int apCount = 0;
+        for (WifiFingerprint fp : fingerprints) {
+            if (fp.getFilteredWifis() == null) continue;
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                if (wifi == null) continue;
+                int id = wifi.getBssidId();
+                if (id == BssidDictionary.NO_ID) continue;
+                if (macById[id] < 0) {
+                    long mac = WifiDataProcessor.parseBssid(wifi.getBssid());
+                    if (mac < 0) continue; // 非标准BSSID无法存为MAC
+                    macById[id] = mac;
+                    if (apCount == macs.length) macs = Arrays.copyOf(macs, apCount * 2);
+                    macs[apCount++] = mac;
+                }
+                if (wifi.getSsid() != null) ssidById[id] = wifi.getSsid();
+                if (frequencyById[id] == 0) frequencyById[id] = wifi.getFrequency();
+            }
+        }
+        macs = Arrays.copyOf(macs, apCount);
+        Arrays.sort(macs);
+        int[] apNumberById = new int[idLimit];
+        for (int id = 0; id < idLimit; id++) {
+            if (macById[id] >= 0) apNumberById[id] = Arrays.binarySearch(macs, macById[id]) + 1;
+        }
+        // 分组表：组代表即编译向量中出现的ID（分组键要求标准MAC，组内成员均在AP表中）
+        int[] apGroups = new int[apCount];
+        for (int id = 0; id < idLimit; id++) {
+            int ap = apNumberById[id];
+            if (ap == 0) continue;
+            int representative = apNumberById[index.groupOf(id)];
+            apGroups[ap - 1] = representative > 0 ? representative : ap;
+        }
+
+        // 条目：编译向量按AP编号重排（编译结果按字典ID排序），各AP记录频段与SSID引用
+        Map<String, Integer> stringRefs = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] apSsids = new int[apCount];
+        int[] apFrequencies = new int[apCount];
+        byte[] apBands = new byte[apCount];
+        int n = fingerprints.size();
+        int[] bandStarts = new int[n * WifiBand.COUNT + 1];
+        int[] entryAps = new int[1024];
+        byte[] entryRssis = new byte[1024];
+        byte[] entryStds = new byte[1024];
+        int entryCount = 0;
+        int[] zones = new int[n];
+        int[] labels = new int[n];
+        long[] segment = new long[64];
+        for (int id = 0; id < n; id++) {
+            WifiFingerprint fp = fingerprints.get(id);
+            zones[id] = stringRef(stringRefs, strings, fp.getZone());
+            labels[id] = stringRef(stringRefs, strings, fp.getLabel());
+            CompiledFingerprint compiled = index.getCompiled(id);
+            for (int band = 0; band < WifiBand.COUNT; band++) {
+                bandStarts[id * WifiBand.COUNT + band] = entryCount;
+                int size = 0;
+                if (segment.length < compiled.size()) segment = new long[compiled.size()];
+                for (int i = compiled.bandStart(band); i < compiled.bandEnd(band); i++) {
+                    int dictionaryId = compiled.getApId(i);
+                    int ap = apNumberById[dictionaryId];
+                    if (ap == 0) continue;
+                    apBands[ap - 1] = (byte) band;
+                    apFrequencies[ap - 1] = frequencyById[dictionaryId];
+                    if (apSsids[ap - 1] == 0) {
+                        apSsids[ap - 1] = stringRef(stringRefs, strings, ssidById[dictionaryId]);
+                    }
+                    segment[size++] = (long) ap << 16 | (compiled.getRssi(i) & 0xFF) << 8 | (compiled.getRssiStd(i) & 0xFF);
+                }
+                Arrays.sort(segment, 0, size);
+                if (entryCount + size > entryAps.length) {
+                    int capacity = Math.max(entryCount + size, entryAps.length * 2);
+                    entryAps = Arrays.copyOf(entryAps, capacity);
+                    entryRssis = Arrays.copyOf(entryRssis, capacity);
+                    entryStds = Arrays.copyOf(entryStds, capacity);
+                }
+                for (int i = 0; i < size; i++) {
+                    entryAps[entryCount] = (int) (segment[i] >>> 16);
+                    entryRssis[entryCount] = (byte) (segment[i] >>> 8);
+                    entryStds[entryCount] = (byte) segment[i];
+                    entryCount++;
+                }
+            }
+        }
+        bandStarts[n * WifiBand.COUNT] = entryCount;
+
+        // 倒排：按指纹ID顺序填充，各表天然升序
+        int[] postingStarts = new int[apCount + 1];
+        for (int i = 0; i < entryCount; i++) {
+            postingStarts[entryAps[i]]++;
+        }
+        for (int ap = 0; ap < apCount; ap++) {
+            postingStarts[ap + 1] += postingStarts[ap];
+        }
+        int[] postings = new int[entryCount];
+        int[] fill = Arrays.copyOf(postingStarts, apCount);
+        for (int id = 0; id < n; id++) {
+            for (int i = bandStarts[id * WifiBand.COUNT]; i < bandStarts[(id + 1) * WifiBand.COUNT]; i++) {
+                postings[fill[entryAps[i] - 1]++] = id;
+            }
+        }
+
+        int[] stringStarts = new int[strings.size() + 1];
+        for (int i = 0; i < strings.size(); i++) {
+            stringStarts[i + 1] = stringStarts[i] + strings.get(i).length;
+        }
+        if (fileSize(n, apCount, entryCount, strings.size(), stringStarts[strings.size()]) > Integer.MAX_VALUE) {
+            throw new IOException("指纹库过大，超过内存映射格式的2GB上限");
+        }
+
+        Output out = new Output(outputStream);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(n);
+        out.putInt(apCount);
+        out.putInt(entryCount);
+        out.putInt(strings.size());
+        double[] weights = index.getBandWeights();
+        for (int band = 0; band < WifiBand.COUNT; band++) {
+            out.putDouble(weights[band]);
+        }
+        out.putInt(stringStarts[strings.size()]);
+        out.putInt(groupVirtualAps ? FLAG_GROUPED : 0);
+        for (long mac : macs) out.putLong(mac);
+        for (WifiFingerprint fp : fingerprints) out.putDouble(fp.getPixelX());
+        for (WifiFingerprint fp : fingerprints) out.putDouble(fp.getPixelY());
+        out.putInts(apSsids, apCount);
+        out.putInts(apFrequencies, apCount);
+        out.putInts(apGroups, apCount);
+        out.putInts(postingStarts, apCount + 1);
+        out.putInts(postings, entryCount);
+        for (WifiFingerprint fp : fingerprints) out.putInt(fp.getFloor());
+        out.putInts(zones, n);
+        out.putInts(labels, n);
+        out.putInts(bandStarts, bandStarts.length);
+        out.putInts(entryAps, entryCount);
+        out.putInts(stringStarts, stringStarts.length);
+        out.putBytes(entryRssis, entryCount);
+        out.putBytes(entryStds, entryCount);
+        out.putBytes(apBands, apCount);
+        for (byte[] bytes : strings) out.putBytes(bytes, bytes.length);
+        out.flush();
+    }
+
+    private static int stringRef(Map<String, Integer> refs, List<byte[]> strings, String s) {
+        if (s == null) return 0;
+        Integer ref = refs.get(s);
+        if (ref == null) {
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+            ref = strings.size();
+            refs.put(s, ref);
+        }
+        return ref;
+    }
+
+    /**
+     * 小端序写缓冲
+     */
+    private static final class Output {
+        private final OutputStream out;
+        private final ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(OutputStream out) {
+            this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (chunk.remaining() < bytes) drain();
+        }
+
+        private void drain() throws IOException {
+            out.write(chunk.array(), 0, chunk.position());
+            chunk.clear();
+        }
+
+        void putByte(int value) throws IOException { ensure(1); chunk.put((byte) value); }
+        void putInt(int value) throws IOException { ensure(4); chunk.putInt(value); }
+        void putLong(long value) throws IOException { ensure(8); chunk.putLong(value); }
+        void putDouble(double value) throws IOException { ensure(8); chunk.putDouble(value); }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) putInt(values[i]);
+        }
+
+        void putBytes(byte[] values, int count) throws IOException {
+            drain();
+            out.write(values, 0, count);
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 区域（楼层或区域）指纹签名：区域内每个AP的平均RSSI与出现率
+ * 用于分层定位时先粗分类楼层/区域，再在胜出区域内做精细匹配
+ */
+public final class RegionSignature {
+    private final int floor;
+    private final String zone;          // 楼层签名为null
+    private final int[] members;        // 区域内指纹ID，升序
+    private final int[] apIds;          // 与CompiledFingerprint相同的布局：按频段分段，段内升序
+    private final byte[] meanRssis;     // 与apIds对应
+    private final float[] presence;     // AP在区域内指纹中的出现率（0-1）
+    private final int[] bandStarts;     // 频段b的条目位于 [bandStarts[b], bandStarts[b + 1])
+    private final double presenceSum;
+    private final List<RegionSignature> children;
+
+    private RegionSignature(int floor, String zone, int[] members, int[] apIds, byte[] meanRssis,
+                            float[] presence, int[] bandStarts, List<RegionSignature> children) {
+        this.floor = floor;
+        this.zone = zone;
+        this.members = members;
+        this.apIds = apIds;
+        this.meanRssis = meanRssis;
+        this.presence = presence;
+        this.bandStarts = bandStarts;
+        this.children = children;
+        double sum = 0;
+        for (float p : presence) sum += p;
+        this.presenceSum = sum;
+    }
+
+    /**
+     * 按楼层、楼层内按区域构建两级签名
+     */
+    static List<RegionSignature> buildHierarchy(WifiFingerprint[] fingerprints, CompiledFingerprint[] compiled) {
+        // 按 (楼层, 区域) 排序指纹ID，相邻分组即可
+        Integer[] order = new Integer[fingerprints.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int c = Integer.compare(fingerprints[a].getFloor(), fingerprints[b].getFloor());
+            if (c != 0) return c;
+            c = zoneOf(fingerprints[a]).compareTo(zoneOf(fingerprints[b]));
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+
+        List<RegionSignature> floors = new ArrayList<>();
+        int floorStart = 0;
+        while (floorStart < order.length) {
+            int floor = fingerprints[order[floorStart]].getFloor();
+            int floorEnd = floorStart;
+            while (floorEnd < order.length && fingerprints[order[floorEnd]].getFloor() == floor) floorEnd++;
+
+            List<RegionSignature> zones = new ArrayList<>();
+            int zoneStart = floorStart;
+            while (zoneStart < floorEnd) {
+                String zone = zoneOf(fingerprints[order[zoneStart]]);
+                int zoneEnd = zoneStart;
+                while (zoneEnd < floorEnd && zone.equals(zoneOf(fingerprints[order[zoneEnd]]))) zoneEnd++;
+                zones.add(build(floor, zone, idsOf(order, zoneStart, zoneEnd), compiled,
+                        Collections.<RegionSignature>emptyList()));
+                zoneStart = zoneEnd;
+            }
+            floors.add(build(floor, null, idsOf(order, floorStart, floorEnd), compiled,
+                    Collections.unmodifiableList(zones)));
+            floorStart = floorEnd;
+        }
+        return Collections.unmodifiableList(floors);
+    }
+
+    private static String zoneOf(WifiFingerprint fp) {
+        return fp.getZone() != null ? fp.getZone() : "";
+    }
+
+    private static int[] idsOf(Integer[] order, int from, int to) {
+        int[] ids = new int[to - from];
+        for (int i = from; i < to; i++) ids[i - from] = order[i];
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static RegionSignature build(int floor, String zone, int[] members, CompiledFingerprint[] compiled,
+                                         List<RegionSignature> children) {
+        // 汇总所有成员的 (频段, AP ID, RSSI)，打包排序后按ID分组求均值与出现次数
+        int total = 0;
+        for (int id : members) total += compiled[id].apIds.length;
+        long[] packed = new long[total];
+        int n = 0;
+        for (int id : members) {
+            CompiledFingerprint fp = compiled[id];
+            for (int band = 0; band < WifiBand.COUNT; band++) {
+                for (int i = fp.bandStart(band); i < fp.bandEnd(band); i++) {
+                    packed[n++] = ((long) band << 40) | ((long) fp.apIds[i] << 8) | (fp.rssis[i] + 128);
+                }
+            }
+        }
+        Arrays.sort(packed);
+
+        int[] apIds = new int[n];
+        byte[] meanRssis = new byte[n];
+        float[] presence = new float[n];
+        int[] bandStarts = new int[WifiBand.COUNT + 1];
+        int size = 0;
+        int i = 0;
+        while (i < n) {
+            long key = packed[i] >>> 8;
+            int band = (int) (key >>> 32);
+            int apId = (int) key;
+            int sum = 0, count = 0;
+            while (i < n && packed[i] >>> 8 == key) {
+                sum += (int) (packed[i] & 0xFF) - 128;
+                count++;
+                i++;
+            }
+            apIds[size] = apId;
+            meanRssis[size] = (byte) Math.round((float) sum / count);
+            presence[size] = (float) count / members.length;
+            bandStarts[band + 1] = ++size;
+        }
+        for (int b = 1; b <= WifiBand.COUNT; b++) {
+            bandStarts[b] = Math.max(bandStarts[b], bandStarts[b - 1]);
+        }
+        return new RegionSignature(floor, zone, members, Arrays.copyOf(apIds, size),
+                Arrays.copyOf(meanRssis, size), Arrays.copyOf(presence, size), bandStarts, children);
+    }
+
+    /**
+     * 当前扫描与本区域签名的匹配得分（按出现率加权的信号相似度，0-1之间）
+     */
+    public double score(CompiledFingerprint current) {
+        int[] currentIds = current.apIds;
+        if (currentIds.length == 0 || apIds.length == 0) return 0;
+
+        double weighted = 0;
+        for (int band = 0; band < WifiBand.COUNT; band++) {
+            int i = current.bandStart(band), currentEnd = current.bandEnd(band);
+            int j = bandStarts[band], end = bandStarts[band + 1];
+            while (i < currentEnd && j < end) {
+                if (currentIds[i] < apIds[j]) {
+                    i++;
+                } else if (currentIds[i] > apIds[j]) {
+                    j++;
+                } else {
+                    weighted += presence[j] * FingerprintMatcher.calculateRobustWifiSimilarity(
+                            current.rssis[i], meanRssis[j]);
+                    i++;
+                    j++;
+                }
+            }
+        }
+        // 以区域的期望AP数与当前扫描AP数中较小者归一化，与指纹级匹配比例的做法一致
+        return weighted / Math.min(presenceSum, currentIds.length);
+    }
+
+    public int getFloor() { return floor; }
+    public String getZone() { return zone; }
+    public int[] getMembers() { return members; }
+    public List<RegionSignature> getChildren() { return children; }
+}
@@ -0,0 +1,156 @@
+package com.example.mywifiscanner;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 回放扫描源：按行读取录制的扫描会话文件（每行一轮扫描，ScanRecord的JSON数组）
+ * 按录制时的扫描间隔回放，speed为加速倍数；speed <= 0 时不等待，尽可能快地回放（用于压测）
+ * 文件逐行读取，不会把整个会话载入内存
+ */
+public class ReplayScanSource implements ScanSource {
+    private static final String TAG = "ReplayScanSource";
+    private static final Gson gson = new Gson();
+    private static final Type SCAN_TYPE = new TypeToken<List<ScanRecord>>(){}.getType();
+
+    private final File sessionFile;
+    private final double speed;
+    private final boolean loop;
+    private BufferedReader reader;
+    private List<ScanRecord> pendingScan;  // 已读出但尚未到回放时刻的一轮扫描
+    private long firstScanMicros = -1;     // 本轮回放第一条扫描的录制时刻
+    private long startNanos;               // 本轮回放开始的真实时刻
+    private boolean finished;
+
+    /**
+     * @param sessionFile 录制的会话文件
+     * @param speed 回放倍速（1为实时），<= 0 表示不等待
+     * @param loop 到达文件末尾后是否从头循环
+     */
+    public ReplayScanSource(File sessionFile, double speed, boolean loop) throws IOException {
+        this.sessionFile = sessionFile;
+        this.speed = speed;
+        this.loop = loop;
+        openReader();
+    }
+
+    @Override
+    public synchronized List<ScanRecord> nextScan(long timeoutMs) throws InterruptedException {
+        if (finished) return null;
+        if (pendingScan == null) {
+            pendingScan = readNextScan();
+            if (pendingScan == null) {
+                finished = true;
+                return null;
+            }
+        }
+
+        if (speed > 0) {
+            long scanMicros = scanTimeOf(pendingScan);
+            if (firstScanMicros < 0) {
+                firstScanMicros = scanMicros;
+                startNanos = System.nanoTime();
+            }
+            long dueNanos = startNanos + (long) ((scanMicros - firstScanMicros) * 1000 / speed);
+            long waitMs = (dueNanos - System.nanoTime()) / 1000000;
+            if (waitMs > timeoutMs) {
+                Thread.sleep(timeoutMs);
+                return null; // 未到回放时刻，保留该轮扫描
+            }
+            if (waitMs > 0) Thread.sleep(waitMs);
+        }
+
+        List<ScanRecord> scan = pendingScan;
+        pendingScan = null;
+        return scan;
+    }
+
+    @Override
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public synchronized void close() {
+        finished = true;
+        closeReader();
+    }
+
+    /**
+     * 读取下一轮扫描（跳过空行与格式错误的行），循环模式下到达末尾后重新打开文件
+     */
+    private List<ScanRecord> readNextScan() {
+        try {
+            boolean reopened = false;
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    if (!loop || reopened) return null; // 非循环，或文件中没有任何有效扫描
+                    openReader();
+                    reopened = true;
+                    continue;
+                }
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                try {
+                    List<ScanRecord> scan = gson.fromJson(line, SCAN_TYPE);
+                    if (scan != null && !scan.isEmpty()) return scan;
+                } catch (JsonSyntaxException e) {
+                    Log.w(TAG, "跳过格式错误的扫描记录：" + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取扫描会话失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    private void openReader() throws IOException {
+        closeReader();
+        reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(sessionFile), StandardCharsets.UTF_8));
+        firstScanMicros = -1; // 每轮回放重新对齐时间轴
+    }
+
+    private void closeReader() {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭扫描会话文件失败：" + e.getMessage());
+        }
+        reader = null;
+    }
+
+    /**
+     * 一轮扫描的时刻取其中最新的观测时间戳
+     */
+    private static long scanTimeOf(List<ScanRecord> scan) {
+        long newest = 0;
+        for (ScanRecord record : scan) {
+            if (record != null) newest = Math.max(newest, record.getTimestampMicros());
+        }
+        return newest;
+    }
+
+    /**
+     * 追加一轮扫描到会话文件（录制用，格式与回放读取一致）
+     */
+    public static void writeScan(Writer writer, List<ScanRecord> scan) throws IOException {
+        writer.write(gson.toJson(scan, SCAN_TYPE));
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.mywifiscanner;
+
+/**
+ * 多次扫描RSSI的汇总方式
+ */
+public enum RssiAggregationMode {
+    MEAN,          // 算术平均（默认，与旧版本一致）
+    MAX,           // 最强信号
+    MEDIAN,        // 中位数：不受单个异常样本影响
+    TRIMMED_MEAN,  // 截尾平均：去掉两端各20%样本后平均
+    HAMPEL;        // Hampel滤波：剔除偏离中位数超过3倍MAD（按正态换算）的样本后平均
+
+    /**
+     * 按名称解析，未知名称返回MEAN
+     */
+    public static RssiAggregationMode fromName(String name) {
+        if (name != null) {
+            for (RssiAggregationMode mode : values()) {
+                if (mode.name().equals(name)) return mode;
+            }
+        }
+        return MEAN;
+    }
+}
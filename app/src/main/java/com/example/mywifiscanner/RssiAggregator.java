@@ -0,0 +1,190 @@
+package com.example.mywifiscanner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按BSSID单遍汇总RSSI：总和、次数、最小、最大、平方和，以及出现过的扫描轮数
+ * 以48位MAC（long）为键开放寻址定位条目，统计量存放在平行的基本类型数组中，无装箱；
+ * clear后保留已分配的数组，可跨会话复用
+ */
+final class RssiAggregator {
+    // 非标准格式BSSID的键：字典ID加上第49位，与48位MAC不会冲突
+    private static final long IRREGULAR_KEY_BIT = 1L << 48;
+    private static final int MIN_CAPACITY = 64;
+
+    private final LongIntHashMap slots; // 键 -> 条目下标
+    private String[] bssids;
+    private String[] ssids;
+    private int[] frequencies;   // 最近一次观测的频率
+    private int[] channelWidths;
+    private long[] sums;
+    private long[] sumSquares;
+    private int[] counts;
+    private int[] mins;
+    private int[] maxs;
+    private int[] presentScans; // 出现过的扫描轮数（同一轮内重复出现只计一次）
+    private int[] lastScans;    // 最后出现的扫描轮次
+    private int scanCount;
+    private int size;
+
+    RssiAggregator() {
+        this(MIN_CAPACITY);
+    }
+
+    RssiAggregator(int expectedAps) {
+        int capacity = Math.max(MIN_CAPACITY, expectedAps);
+        slots = new LongIntHashMap(capacity);
+        bssids = new String[capacity];
+        ssids = new String[capacity];
+        frequencies = new int[capacity];
+        channelWidths = new int[capacity];
+        sums = new long[capacity];
+        sumSquares = new long[capacity];
+        counts = new int[capacity];
+        mins = new int[capacity];
+        maxs = new int[capacity];
+        presentScans = new int[capacity];
+        lastScans = new int[capacity];
+    }
+
+    /**
+     * 清空统计（保留数组容量）
+     */
+    void clear() {
+        scanCount = 0;
+        if (size == 0) return;
+        slots.clear();
+        Arrays.fill(bssids, 0, size, null);
+        Arrays.fill(ssids, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 汇总多轮扫描
+     */
+    void addScans(List<List<ScanRecord>> scans) {
+        for (List<ScanRecord> scan : scans) {
+            if (scan != null) addScan(scan);
+        }
+    }
+
+    /**
+     * 汇总一轮扫描（忽略空元素和空BSSID）
+     */
+    void addScan(List<ScanRecord> scan) {
+        beginScan();
+        for (ScanRecord record : scan) {
+            if (record != null) add(record);
+        }
+    }
+
+    /**
+     * 开始新的一轮扫描（之后add的观测计入该轮的出现次数）
+     */
+    void beginScan() {
+        scanCount++;
+    }
+
+    /**
+     * 汇总一条观测
+     * @return 条目下标；BSSID为空时返回-1
+     */
+    int add(ScanRecord record) {
+        String bssid = record.getBssid();
+        if (bssid == null) return -1;
+        int rssi = record.getLevel();
+        int i = slots.putIfAbsent(keyOf(bssid), size);
+        if (i == size) {
+            if (size == counts.length) grow();
+            bssids[i] = bssid;
+            frequencies[i] = 0;
+            channelWidths[i] = 0;
+            sums[i] = 0;
+            sumSquares[i] = 0;
+            counts[i] = 0;
+            mins[i] = Integer.MAX_VALUE;
+            maxs[i] = Integer.MIN_VALUE;
+            presentScans[i] = 0;
+            lastScans[i] = -1;
+            size++;
+        }
+        if (record.getSsid() != null) ssids[i] = record.getSsid();
+        if (record.getFrequency() > 0) {
+            frequencies[i] = record.getFrequency();
+            channelWidths[i] = record.getChannelWidth();
+        }
+        sums[i] += rssi;
+        sumSquares[i] += (long) rssi * rssi;
+        counts[i]++;
+        if (rssi < mins[i]) mins[i] = rssi;
+        if (rssi > maxs[i]) maxs[i] = rssi;
+        if (lastScans[i] != scanCount) {
+            lastScans[i] = scanCount;
+            presentScans[i]++;
+        }
+        return i;
+    }
+
+    /**
+     * BSSID的汇总键：48位MAC，非标准格式为带标记位的字典ID
+     */
+    static long keyOf(String bssid) {
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        return mac >= 0 ? mac : IRREGULAR_KEY_BIT | BssidDictionary.getInstance().idOf(bssid);
+    }
+
+    private void grow() {
+        int capacity = counts.length * 2;
+        bssids = Arrays.copyOf(bssids, capacity);
+        ssids = Arrays.copyOf(ssids, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        channelWidths = Arrays.copyOf(channelWidths, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        sumSquares = Arrays.copyOf(sumSquares, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxs = Arrays.copyOf(maxs, capacity);
+        presentScans = Arrays.copyOf(presentScans, capacity);
+        lastScans = Arrays.copyOf(lastScans, capacity);
+    }
+
+    /**
+     * 已汇总的AP数（条目下标范围为 [0, size)，按首次出现顺序）
+     */
+    int size() {
+        return size;
+    }
+
+    String getBssid(int i) { return bssids[i]; }
+    String getSsid(int i) { return ssids[i]; }
+    int getFrequency(int i) { return frequencies[i]; }
+    int getChannelWidth(int i) { return channelWidths[i]; }
+    int getCount(int i) { return counts[i]; }
+    long getSum(int i) { return sums[i]; }
+    int getMin(int i) { return mins[i]; }
+    int getMax(int i) { return maxs[i]; }
+    int getPresentScans(int i) { return presentScans[i]; }
+
+    /**
+     * 已开始的扫描轮数
+     */
+    int getScanCount() {
+        return scanCount;
+    }
+
+    /**
+     * 整数平均RSSI（与原先 总和/次数 的整数除法一致）
+     */
+    int getMean(int i) {
+        return (int) (sums[i] / counts[i]);
+    }
+
+    /**
+     * 总体方差（dB²）
+     */
+    double getVariance(int i) {
+        double mean = (double) sums[i] / counts[i];
+        return Math.max(0, (double) sumSquares[i] / counts[i] - mean * mean);
+    }
+}
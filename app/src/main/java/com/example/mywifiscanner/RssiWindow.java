@@ -0,0 +1,153 @@
+package com.example.mywifiscanner;
+
+import java.util.Arrays;
+
+/**
+ * 按条目下标存放的RSSI定长环形缓冲：每个AP保留最近windowSize个样本及其扫描轮次
+ * 所有条目的样本存放在同一个平行基本类型数组中，汇总时使用预分配的临时数组，不产生对象分配
+ * 条目下标由调用方（如RssiAggregator）分配
+ */
+final class RssiWindow {
+    private static final double TRIM_RATIO = 0.2;          // 截尾平均两端各去掉的比例
+    private static final double HAMPEL_K = 3.0;            // Hampel阈值倍数
+    private static final double MAD_TO_SIGMA = 1.4826;     // MAD换算为正态标准差
+    private static final double HAMPEL_MIN_THRESHOLD = 2.0; // MAD为0时仍容忍的量化抖动（dB）
+    static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private final int windowSize;
+    private int[] samples;    // 条目i的样本位于 [i * windowSize, (i + 1) * windowSize)
+    private int[] sampleScans; // 与samples对应的扫描轮次
+    private int[] heads;      // 下一个写入位置
+    private int[] fills;      // 已写入的样本数（不超过windowSize）
+    private final int[] scratch;
+    private final int[] deviations;
+
+    RssiWindow(int windowSize, int initialEntries) {
+        this.windowSize = Math.max(1, windowSize);
+        int entries = Math.max(1, initialEntries);
+        samples = new int[entries * this.windowSize];
+        sampleScans = new int[entries * this.windowSize];
+        heads = new int[entries];
+        fills = new int[entries];
+        scratch = new int[this.windowSize];
+        deviations = new int[this.windowSize];
+    }
+
+    int windowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 保证可容纳 [0, entries) 条目
+     */
+    void ensureCapacity(int entries) {
+        if (entries <= heads.length) return;
+        int capacity = Math.max(entries, heads.length * 2);
+        samples = Arrays.copyOf(samples, capacity * windowSize);
+        sampleScans = Arrays.copyOf(sampleScans, capacity * windowSize);
+        heads = Arrays.copyOf(heads, capacity);
+        fills = Arrays.copyOf(fills, capacity);
+    }
+
+    /**
+     * 清空条目i（条目下标被重新分配给新AP时调用）
+     */
+    void reset(int i) {
+        heads[i] = 0;
+        fills[i] = 0;
+    }
+
+    /**
+     * 追加样本，窗口满时覆盖最旧的样本
+     */
+    void add(int i, int rssi, int scanIndex) {
+        int slot = i * windowSize + heads[i];
+        samples[slot] = rssi;
+        sampleScans[slot] = scanIndex;
+        heads[i] = (heads[i] + 1) % windowSize;
+        if (fills[i] < windowSize) fills[i]++;
+    }
+
+    /**
+     * 条目i最后一个样本的扫描轮次，无样本时返回-1
+     */
+    int lastScan(int i) {
+        if (fills[i] == 0) return -1;
+        return sampleScans[i * windowSize + (heads[i] + windowSize - 1) % windowSize];
+    }
+
+    /**
+     * 复制条目i中扫描轮次不早于minScan的样本到scratch并升序排序
+     * @return 样本数
+     */
+    private int collectSorted(int i, int minScan) {
+        int base = i * windowSize;
+        int n = 0;
+        for (int k = 0; k < fills[i]; k++) {
+            if (sampleScans[base + k] >= minScan) scratch[n++] = samples[base + k];
+        }
+        insertionSort(scratch, n);
+        return n;
+    }
+
+    /**
+     * 按指定方式汇总条目i在窗口内（扫描轮次不早于minScan）的样本
+     * @return 汇总RSSI；无样本时返回NO_VALUE
+     */
+    int aggregate(int i, RssiAggregationMode mode, int minScan) {
+        int n = collectSorted(i, minScan);
+        if (n == 0) return NO_VALUE;
+        switch (mode) {
+            case MAX:
+                return scratch[n - 1];
+            case MEDIAN:
+                return median(scratch, n);
+            case TRIMMED_MEAN: {
+                int trim = (int) (n * TRIM_RATIO);
+                return mean(scratch, trim, n - trim);
+            }
+            case HAMPEL: {
+                int median = median(scratch, n);
+                for (int k = 0; k < n; k++) deviations[k] = Math.abs(scratch[k] - median);
+                insertionSort(deviations, n);
+                double threshold = Math.max(HAMPEL_MIN_THRESHOLD,
+                        HAMPEL_K * MAD_TO_SIGMA * median(deviations, n));
+                long sum = 0;
+                int kept = 0;
+                for (int k = 0; k < n; k++) {
+                    if (Math.abs(scratch[k] - median) <= threshold) {
+                        sum += scratch[k];
+                        kept++;
+                    }
+                }
+                return (int) (sum / kept); // 中位数本身总会保留，kept >= 1
+            }
+            case MEAN:
+            default:
+                return mean(scratch, 0, n);
+        }
+    }
+
+    private static int median(int[] sorted, int n) {
+        int mid = n >>> 1;
+        return (n & 1) == 1 ? sorted[mid] : Math.round((sorted[mid - 1] + sorted[mid]) / 2f);
+    }
+
+    private static int mean(int[] values, int from, int to) {
+        long sum = 0;
+        for (int k = from; k < to; k++) sum += values[k];
+        return (int) (sum / (to - from));
+    }
+
+    private static void insertionSort(int[] values, int n) {
+        for (int k = 1; k < n; k++) {
+            int v = values[k];
+            int j = k - 1;
+            while (j >= 0 && values[j] > v) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = v;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mywifiscanner;
+
+/**
+ * 扫描与采集配置的不可变快照：扫描器、处理流水线只读取快照，热路径不访问SharedPreferences
+ * 由ConfigManager在设置变化时整体重建并原子发布；纯Java对象，可直接在单元测试中构造
+ * 构建器中的初始值即各项的默认值，ConfigManager的默认设置也取自这里
+ */
+public final class ScanConfig {
+    static final int DEFAULT_WIFI_THRESHOLD = -85; // 采集与定位共用
+    private final int scanCount;
+    private final int scanIntervalMs;
+    private final int wifiThreshold;
+    private final double convergenceTarget;
+    private final RssiAggregationMode aggregationMode;
+    private final ApStabilityFilter stabilityFilter;
+    private final int maxApsPerFingerprint;
+    private final ApRanking apRanking;
+    private final boolean groupVirtualAps;
+
+    private ScanConfig(Builder builder) {
+        scanCount = builder.scanCount;
+        scanIntervalMs = builder.scanIntervalMs;
+        wifiThreshold = builder.wifiThreshold;
+        convergenceTarget = builder.convergenceTarget;
+        aggregationMode = builder.aggregationMode;
+        stabilityFilter = builder.stabilityFilter != null ? builder.stabilityFilter : ApStabilityFilter.DEFAULT;
+        maxApsPerFingerprint = builder.maxApsPerFingerprint;
+        apRanking = builder.apRanking;
+        groupVirtualAps = builder.groupVirtualAps;
+    }
+
+    /**
+     * 各项为默认值的构建器
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 采集与重扫的流水线：去重 → 新鲜度 → 汇总 → 阈值与稳定性过滤 → 虚拟AP分组 → AP数量上限 → 排序
+     * @param index 指纹库索引（按区分度限制AP数量时使用），可为null
+     */
+    public ScanPipeline newCapturePipeline(FingerprintIndex index) {
+        ScanPipeline.Builder builder = ScanPipeline.builder()
+                .add(ScanStages.dedupe())
+                .add(ScanStages.freshness())
+                .aggregate(aggregationMode)
+                .filter(wifiThreshold, stabilityFilter);
+        if (groupVirtualAps) {
+            builder.add(ScanStages.groupVirtualAps());
+        }
+        return builder
+                .add(ScanStages.limitApCount(maxApsPerFingerprint, apRanking, index))
+                .add(ScanStages.sortByRssi())
+                .build();
+    }
+
+    public int getScanCount() { return scanCount; }
+    public int getScanIntervalMs() { return scanIntervalMs; } // 实时扫描相邻两轮的最小间隔
+    public int getWifiThreshold() { return wifiThreshold; }
+    public double getConvergenceTarget() { return convergenceTarget; }
+    public RssiAggregationMode getAggregationMode() { return aggregationMode; }
+    public ApStabilityFilter getStabilityFilter() { return stabilityFilter; }
+    public int getMaxApsPerFingerprint() { return maxApsPerFingerprint; }
+    public ApRanking getApRanking() { return apRanking; }
+    public boolean isVirtualApGroupingEnabled() { return groupVirtualAps; }
+
+    public static final class Builder {
+        private int scanCount = 3;
+        private int scanIntervalMs = 3000;
+        private int wifiThreshold = DEFAULT_WIFI_THRESHOLD;
+        private double convergenceTarget = 1.0;
+        private RssiAggregationMode aggregationMode = RssiAggregationMode.MEAN;
+        private ApStabilityFilter stabilityFilter;
+        private int maxApsPerFingerprint = 40;
+        private ApRanking apRanking = ApRanking.RSSI;
+        private boolean groupVirtualAps = true;
+
+        private Builder() {
+        }
+
+        public Builder scanCount(int scanCount) { this.scanCount = scanCount; return this; }
+        public Builder scanIntervalMs(int scanIntervalMs) { this.scanIntervalMs = scanIntervalMs; return this; }
+        public Builder wifiThreshold(int wifiThreshold) { this.wifiThreshold = wifiThreshold; return this; }
+        public Builder convergenceTarget(double targetDb) { this.convergenceTarget = targetDb; return this; }
+        public Builder aggregationMode(RssiAggregationMode mode) { this.aggregationMode = mode; return this; }
+        public Builder stabilityFilter(ApStabilityFilter filter) { this.stabilityFilter = filter; return this; }
+        public Builder maxApsPerFingerprint(int maxAps) { this.maxApsPerFingerprint = maxAps; return this; }
+        public Builder apRanking(ApRanking ranking) { this.apRanking = ranking; return this; }
+        public Builder groupVirtualAps(boolean enabled) { this.groupVirtualAps = enabled; return this; }
+
+        public ScanConfig build() {
+            return new ScanConfig(this);
+        }
+    }
+}
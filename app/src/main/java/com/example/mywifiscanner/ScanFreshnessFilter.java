@@ -0,0 +1,79 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 扫描新鲜度过滤：按BSSID记录已接受观测的时间戳，只保留晚于会话开始且晚于该BSSID上一次观测的结果
+ * 系统节流时getScanResults会返回同一份缓存快照，不过滤会把一次观测重复计为多次独立样本
+ * 时间戳为0（来源未记录时间）的观测无法判断，视为新鲜
+ */
+public class ScanFreshnessFilter {
+    private final long sessionStartMicros;
+    private long[] lastAcceptedMicros = new long[256]; // 以BssidDictionary ID为下标
+    private int freshScans;
+    private int staleScans;
+    private int droppedRecords;
+
+    /**
+     * @param sessionStartMicros 会话开始时刻（与ScanRecord时间戳同一时基），0表示不限制
+     */
+    public ScanFreshnessFilter(long sessionStartMicros) {
+        this.sessionStartMicros = sessionStartMicros;
+    }
+
+    /**
+     * 过滤一轮扫描
+     * @return 新鲜的观测；整轮都是旧观测时返回空列表（计为重复快照）
+     */
+    public List<ScanRecord> filter(List<ScanRecord> scan) {
+        List<ScanRecord> fresh = new ArrayList<>(scan.size());
+        BssidDictionary dictionary = BssidDictionary.getInstance();
+        for (ScanRecord record : scan) {
+            if (record == null) continue;
+            long timestamp = record.getTimestampMicros();
+            if (timestamp > 0) {
+                int id = dictionary.idOf(record.getBssid());
+                if (id == BssidDictionary.NO_ID) continue;
+                if (id >= lastAcceptedMicros.length) {
+                    lastAcceptedMicros = Arrays.copyOf(lastAcceptedMicros,
+                            Math.max(id + 1, lastAcceptedMicros.length * 2));
+                }
+                if (timestamp < sessionStartMicros || timestamp <= lastAcceptedMicros[id]) {
+                    droppedRecords++;
+                    continue;
+                }
+                lastAcceptedMicros[id] = timestamp;
+            }
+            fresh.add(record);
+        }
+        if (fresh.isEmpty()) {
+            staleScans++;
+        } else {
+            freshScans++;
+        }
+        return fresh;
+    }
+
+    /**
+     * 含有新鲜观测的扫描轮数
+     */
+    public int getFreshScanCount() {
+        return freshScans;
+    }
+
+    /**
+     * 整轮都是旧观测的扫描轮数（重复快照）
+     */
+    public int getStaleScanCount() {
+        return staleScans;
+    }
+
+    /**
+     * 被丢弃的旧观测条数
+     */
+    public int getDroppedRecordCount() {
+        return droppedRecords;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 扫描处理流水线：观测级阶段（去重 → 新鲜度 → 平滑 …）→ 汇总 → 过滤 → 列表级阶段（AP上限 → 排序 …）
+ * 过滤规则在所有流程中一致：汇总RSSI严格高于阈值、通过稳定性过滤，SSID统一去掉引号
+ * 采集、重扫与定位各自声明所需的阶段；新增阶段只需实现ScanStage/WifiStage并加入声明
+ * 汇总器与各阶段内部缓冲跨会话复用；扫描线程写入、UI线程读取结果，方法均加锁
+ */
+public final class ScanPipeline {
+    private final ScanStage[] scanStages;
+    private final WifiStage[] wifiStages;
+    private final StreamingScanAggregator aggregator;
+    private final RssiAggregationMode mode;
+    private final int rssiThreshold;
+    private final ApStabilityFilter stability;
+    private int acceptedScans;
+    private int droppedScans;
+
+    private ScanPipeline(Builder builder) {
+        scanStages = builder.scanStages.toArray(new ScanStage[0]);
+        wifiStages = builder.wifiStages.toArray(new WifiStage[0]);
+        aggregator = builder.aggregator != null ? builder.aggregator : new StreamingScanAggregator();
+        mode = builder.mode;
+        rssiThreshold = builder.rssiThreshold;
+        stability = builder.stability;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 开始新会话：清空汇总与各阶段状态
+     */
+    public synchronized void reset(long sessionStartMicros) {
+        aggregator.reset();
+        for (ScanStage stage : scanStages) {
+            stage.reset(sessionStartMicros);
+        }
+        acceptedScans = 0;
+        droppedScans = 0;
+    }
+
+    /**
+     * 一轮扫描经过观测级阶段后加入汇总
+     * @return 是否有观测被汇总（整轮被丢弃时返回false）
+     */
+    public synchronized boolean addScan(List<ScanRecord> scan) {
+        if (scan == null || scan.isEmpty()) {
+            droppedScans++;
+            return false;
+        }
+        for (ScanStage stage : scanStages) {
+            scan = stage.process(scan);
+            if (scan.isEmpty()) {
+                droppedScans++;
+                return false;
+            }
+        }
+        aggregator.addScan(scan);
+        acceptedScans++;
+        return true;
+    }
+
+    /**
+     * 当前汇总结果：过滤后依次经过列表级阶段
+     */
+    public synchronized List<FilteredWifi> result() {
+        List<FilteredWifi> wifis = aggregator.collect(rssiThreshold, mode, stability);
+        for (WifiStage stage : wifiStages) {
+            wifis = stage.process(wifis);
+        }
+        return wifis;
+    }
+
+    /**
+     * 单轮处理（定位）：只清空汇总，观测级阶段的跨轮状态（如平滑窗口）保留
+     */
+    public synchronized List<FilteredWifi> process(List<ScanRecord> scan) {
+        aggregator.reset();
+        addScan(scan);
+        return result();
+    }
+
+    /**
+     * 汇总器（用于进度显示与收敛判断）
+     */
+    public StreamingScanAggregator getAggregator() {
+        return aggregator;
+    }
+
+    public synchronized int getAcceptedScanCount() {
+        return acceptedScans;
+    }
+
+    public synchronized int getDroppedScanCount() {
+        return droppedScans;
+    }
+
+    /**
+     * 流水线声明：观测级阶段须在aggregate之前加入，列表级阶段在之后，按加入顺序执行
+     */
+    public static final class Builder {
+        private final List<ScanStage> scanStages = new ArrayList<>();
+        private final List<WifiStage> wifiStages = new ArrayList<>();
+        private StreamingScanAggregator aggregator;
+        private RssiAggregationMode mode = RssiAggregationMode.MEAN;
+        private int rssiThreshold = Integer.MIN_VALUE;
+        private ApStabilityFilter stability;
+
+        private Builder() {
+        }
+
+        public Builder add(ScanStage stage) {
+            scanStages.add(stage);
+            return this;
+        }
+
+        public Builder add(WifiStage stage) {
+            wifiStages.add(stage);
+            return this;
+        }
+
+        /**
+         * 汇总方式（默认MEAN）
+         */
+        public Builder aggregate(RssiAggregationMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * 汇总到调用方复用的汇总器（每次定位都重新声明流水线时避免重新分配）
+         */
+        public Builder aggregate(RssiAggregationMode mode, StreamingScanAggregator aggregator) {
+            this.mode = mode;
+            this.aggregator = aggregator;
+            return this;
+        }
+
+        /**
+         * 过滤：汇总RSSI严格高于阈值，并通过稳定性过滤
+         * @param stability 稳定性过滤，null表示不过滤
+         */
+        public Builder filter(int rssiThreshold, ApStabilityFilter stability) {
+            this.rssiThreshold = rssiThreshold;
+            this.stability = stability;
+            return this;
+        }
+
+        public ScanPipeline build() {
+            return new ScanPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.mywifiscanner;
+
+import android.net.wifi.ScanResult;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单条WiFi扫描观测（与平台无关，替代ScanResult在处理流程中传递）
+ * 实时扫描由ScanResult转换而来；回放与仿真扫描源直接构造，使定位流程可以脱离设备运行
+ */
+public final class ScanRecord {
+    @SerializedName("bssid")
+    private final String bssid;
+    @SerializedName("ssid")
+    private final String ssid;
+    @SerializedName("rssi")
+    private final int level;
+    @SerializedName("freq")
+    private final int frequency;        // MHz，未知为0
+    @SerializedName("width")
+    private final int channelWidth;     // ScanResult.CHANNEL_WIDTH_*
+    @SerializedName("ts")
+    private final long timestampMicros; // 开机以来的微秒数，与ScanResult.timestamp同一时基
+
+    public ScanRecord(String bssid, String ssid, int level, int frequency, int channelWidth, long timestampMicros) {
+        this.bssid = bssid;
+        this.ssid = ssid;
+        this.level = level;
+        this.frequency = frequency;
+        this.channelWidth = channelWidth;
+        this.timestampMicros = timestampMicros;
+    }
+
+    public static ScanRecord from(ScanResult result) {
+        return new ScanRecord(result.BSSID, result.SSID, result.level,
+                result.frequency, result.channelWidth, result.timestamp);
+    }
+
+    /**
+     * 转换一次实时扫描结果（忽略空元素）
+     */
+    public static List<ScanRecord> fromScanResults(List<ScanResult> results) {
+        List<ScanRecord> records = new ArrayList<>(results != null ? results.size() : 0);
+        if (results == null) return records;
+        for (ScanResult result : results) {
+            if (result != null) records.add(from(result));
+        }
+        return records;
+    }
+
+    public String getBssid() { return bssid; }
+    public String getSsid() { return ssid; }
+    public int getLevel() { return level; }
+    public int getFrequency() { return frequency; }
+    public int getChannelWidth() { return channelWidth; }
+    public long getTimestampMicros() { return timestampMicros; }
+}
@@ -0,0 +1,325 @@
+package com.example.mywifiscanner;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 扫描调度器：所有模块共用一个调度器发起WiFi扫描
+ * 1. 跟踪系统节流窗口（Android 9+ 前台应用每2分钟最多4次startScan）
+ * 2. 按优先级排队，低优先级请求为高优先级预留配额
+ * 3. 合并并发请求：一次扫描结果同时满足所有等待中的请求
+ * 4. 常驻监听扫描广播，其它应用触发的扫描结果也会被用来满足等待中的请求
+ * 所有状态只在调度线程上访问，监听器回调也在调度线程执行
+ */
+public class ScanScheduler {
+    private static final String TAG = "ScanScheduler";
+    private static final int THROTTLE_MAX_SCANS = 4;
+    private static final long THROTTLE_WINDOW_MS = 2 * 60 * 1000;
+    // 已发起的扫描迟迟没有广播时，视为失败并重新调度
+    private static final long SCAN_COMPLETE_TIMEOUT_MS = 10000;
+    // startScan被系统拒绝（本地配额估计与系统不一致）后的退避时间
+    private static final long REJECT_BACKOFF_MS = 30000;
+
+    /**
+     * 请求优先级（按声明顺序由高到低）
+     */
+    public enum Priority {
+        SURVEY_CAPTURE(1), // 采集指纹：操作员在原地等待
+        LIVE_LOCATE(1),    // 实时定位
+        RESCAN(2);         // 重新扫描已有指纹：至少保留1次配额给上面两类
+
+        // 发起扫描时要求的最少剩余配额
+        final int requiredBudget;
+
+        Priority(int requiredBudget) {
+            this.requiredBudget = requiredBudget;
+        }
+    }
+
+    /**
+     * 扫描结果监听（在调度线程回调）
+     */
+    public interface ScanListener {
+        void onScanResults(List<ScanResult> results);
+        void onScanFailed(String reason);
+    }
+
+    private final Context context;
+    private final WifiManager wifiManager;
+    private final HandlerThread schedulerThread;
+    private final Handler handler;
+    private final PriorityQueue<ScanRequest> pending = new PriorityQueue<>(8, (a, b) -> {
+        int c = a.priority.compareTo(b.priority);
+        return c != 0 ? c : Long.compare(a.sequence, b.sequence);
+    });
+    private final long[] recentScanTimes = new long[THROTTLE_MAX_SCANS]; // 最近几次startScan的时刻（环形）
+    private int recentScanCursor;
+    private long rejectedUntil;
+    private boolean scanInFlight;
+    private long nextSequence;
+    private boolean released;
+
+    private final Runnable dispatchTask = this::dispatch;
+    private final Runnable scanTimeoutTask = () -> {
+        Log.w(TAG, "扫描超时未收到广播");
+        scanInFlight = false;
+        dispatch();
+    };
+
+    private final BroadcastReceiver scanReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context c, Intent intent) {
+            // EXTRA_RESULTS_UPDATED为false表示扫描失败，系统返回的是旧结果
+            boolean updated = intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, true);
+            if (scanInFlight) {
+                scanInFlight = false;
+                handler.removeCallbacks(scanTimeoutTask);
+            }
+            if (updated) {
+                deliverResults();
+            }
+            dispatch();
+        }
+    };
+
+    public ScanScheduler(Context context, WifiManager wifiManager) {
+        this.context = context.getApplicationContext();
+        this.wifiManager = wifiManager;
+        schedulerThread = new HandlerThread("ScanScheduler");
+        schedulerThread.start();
+        handler = new Handler(schedulerThread.getLooper());
+        this.context.registerReceiver(scanReceiver,
+                new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION), null, handler);
+    }
+
+    /**
+     * 请求一次新的扫描结果（晚于请求时刻的结果才会交付）
+     * @param priority 优先级
+     * @param timeoutMs 超时时间，超时回调onScanFailed
+     * @param listener 结果监听（调度线程回调）
+     */
+    public ScanRequest requestScan(Priority priority, long timeoutMs, ScanListener listener) {
+        ScanRequest request = new ScanRequest(priority, listener);
+        handler.post(() -> {
+            if (released) {
+                listener.onScanFailed("扫描调度器已释放");
+                return;
+            }
+            request.sequence = nextSequence++;
+            pending.add(request);
+            handler.postDelayed(request.timeoutTask, timeoutMs);
+            dispatch();
+        });
+        return request;
+    }
+
+    /**
+     * 阻塞等待一次新的扫描结果（不可在主线程调用）
+     * @return 扫描结果；超时或失败返回null
+     */
+    public List<ScanResult> awaitScan(Priority priority, long timeoutMs) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<List<ScanResult>> resultRef = new AtomicReference<>();
+        ScanRequest request = requestScan(priority, timeoutMs, new ScanListener() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                resultRef.set(results);
+                latch.countDown();
+            }
+
+            @Override
+            public void onScanFailed(String reason) {
+                Log.w(TAG, "等待扫描失败：" + reason);
+                latch.countDown();
+            }
+        });
+        try {
+            // 调度器内部负责超时，这里多留1秒余量兜底
+            if (!latch.await(timeoutMs + 1000, TimeUnit.MILLISECONDS)) {
+                request.cancel();
+            }
+        } catch (InterruptedException e) {
+            request.cancel();
+            throw e;
+        }
+        return resultRef.get();
+    }
+
+    /**
+     * 预计该优先级的请求需等待多久才能获得扫描配额（毫秒，0表示可立即扫描）
+     */
+    public synchronized long estimateWaitMs(Priority priority) {
+        long now = SystemClock.elapsedRealtime();
+        long wait = Math.max(0, rejectedUntil - now);
+        if (remainingBudget(now) < priority.requiredBudget) {
+            wait = Math.max(wait, nextBudgetTime(now) - now);
+        }
+        return wait;
+    }
+
+    /**
+     * 释放调度器：注销广播，等待中的请求全部以失败结束
+     */
+    public void release() {
+        handler.post(() -> {
+            released = true;
+            context.unregisterReceiver(scanReceiver);
+            handler.removeCallbacksAndMessages(null);
+            failAll("扫描调度器已释放");
+            schedulerThread.quitSafely();
+        });
+    }
+
+    private void dispatch() {
+        handler.removeCallbacks(dispatchTask);
+        if (released || scanInFlight || pending.isEmpty()) return;
+
+        ScanRequest top = pending.peek();
+        long now = SystemClock.elapsedRealtime();
+        long wait = estimateWaitMs(top.priority);
+        if (wait > 0) {
+            // 配额不足时不发起扫描，期间其它应用的扫描结果仍会满足请求
+            Log.d(TAG, "扫描配额不足，" + wait + "ms后重试（" + top.priority + "）");
+            handler.postDelayed(dispatchTask, wait);
+            return;
+        }
+
+        boolean started;
+        try {
+            started = wifiManager.startScan();
+        } catch (SecurityException e) {
+            failAll("WiFi扫描权限被拒");
+            return;
+        }
+        if (started) {
+            recordScan(now);
+            scanInFlight = true;
+            handler.postDelayed(scanTimeoutTask, SCAN_COMPLETE_TIMEOUT_MS);
+            Log.d(TAG, "发起扫描（" + top.priority + "），等待中请求" + pending.size() + "个");
+        } else {
+            markRejected(now);
+            Log.w(TAG, "系统拒绝启动扫描（频率限制），" + REJECT_BACKOFF_MS + "ms后重试");
+            handler.postDelayed(dispatchTask, REJECT_BACKOFF_MS);
+        }
+    }
+
+    private void deliverResults() {
+        List<ScanResult> results;
+        try {
+            results = wifiManager.getScanResults();
+        } catch (SecurityException e) {
+            failAll("无法访问WiFi扫描结果（权限问题）");
+            return;
+        }
+        if (results == null || results.isEmpty()) return;
+
+        long newest = 0;
+        for (ScanResult result : results) {
+            if (result != null) newest = Math.max(newest, result.timestamp);
+        }
+
+        // 一次结果交付给所有请求时刻早于结果时间戳的请求
+        int served = 0;
+        Iterator<ScanRequest> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            ScanRequest request = iterator.next();
+            if (request.requestMicros <= newest) {
+                iterator.remove();
+                handler.removeCallbacks(request.timeoutTask);
+                request.listener.onScanResults(new ArrayList<>(results));
+                served++;
+            }
+        }
+        if (served > 0) {
+            Log.d(TAG, "扫描结果交付给" + served + "个请求，剩余" + pending.size() + "个");
+        }
+    }
+
+    private void failAll(String reason) {
+        while (!pending.isEmpty()) {
+            ScanRequest request = pending.poll();
+            handler.removeCallbacks(request.timeoutTask);
+            request.listener.onScanFailed(reason);
+        }
+    }
+
+    // ==================== 节流配额 ====================
+    private synchronized void recordScan(long now) {
+        recentScanTimes[recentScanCursor] = now;
+        recentScanCursor = (recentScanCursor + 1) % THROTTLE_MAX_SCANS;
+    }
+
+    private synchronized void markRejected(long now) {
+        rejectedUntil = now + REJECT_BACKOFF_MS;
+    }
+
+    private int remainingBudget(long now) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return THROTTLE_MAX_SCANS; // Android 9以下没有扫描频率限制
+        }
+        int used = 0;
+        for (long time : recentScanTimes) {
+            if (time > 0 && now - time < THROTTLE_WINDOW_MS) used++;
+        }
+        return THROTTLE_MAX_SCANS - used;
+    }
+
+    // 窗口内最早一次扫描过期、释放出一个配额的时刻
+    private long nextBudgetTime(long now) {
+        long oldest = Long.MAX_VALUE;
+        for (long time : recentScanTimes) {
+            if (time > 0 && now - time < THROTTLE_WINDOW_MS) oldest = Math.min(oldest, time);
+        }
+        return oldest == Long.MAX_VALUE ? now : oldest + THROTTLE_WINDOW_MS;
+    }
+
+    /**
+     * 扫描请求句柄
+     */
+    public class ScanRequest {
+        private final Priority priority;
+        private final ScanListener listener;
+        private final long requestMicros; // 与ScanResult.timestamp同一时基
+        private long sequence;
+        private final Runnable timeoutTask;
+
+        private ScanRequest(Priority priority, ScanListener listener) {
+            this.priority = priority;
+            this.listener = listener;
+            this.requestMicros = SystemClock.elapsedRealtime() * 1000;
+            this.timeoutTask = () -> {
+                if (pending.remove(this)) {
+                    listener.onScanFailed("等待扫描结果超时");
+                }
+            };
+        }
+
+        /**
+         * 取消请求，之后不会再有回调
+         */
+        public void cancel() {
+            handler.post(() -> {
+                if (pending.remove(this)) {
+                    handler.removeCallbacks(timeoutTask);
+                }
+            });
+        }
+    }
+}
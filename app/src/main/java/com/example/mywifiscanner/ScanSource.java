@@ -0,0 +1,27 @@
+package com.example.mywifiscanner;
+
+import java.util.List;
+
+/**
+ * 扫描数据源：按轮提供WiFi扫描结果
+ * 实现：{@link LiveScanSource}（设备实时扫描）、{@link ReplayScanSource}（回放录制的扫描会话）、
+ * {@link SyntheticScanSource}（基于指纹库和路径损耗模型生成仿真扫描）
+ */
+public interface ScanSource {
+    /**
+     * 阻塞获取下一轮扫描结果
+     * @param timeoutMs 最长等待时间
+     * @return 一轮扫描结果；超时、失败或数据源已结束时返回null
+     */
+    List<ScanRecord> nextScan(long timeoutMs) throws InterruptedException;
+
+    /**
+     * 数据源是否已结束（之后nextScan只会返回null）
+     */
+    boolean isFinished();
+
+    /**
+     * 释放数据源占用的资源
+     */
+    void close();
+}
@@ -0,0 +1,21 @@
+package com.example.mywifiscanner;
+
+import java.util.List;
+
+/**
+ * 扫描流水线的观测级阶段：在汇总之前逐轮处理扫描结果（去重、新鲜度、平滑等）
+ * 阶段可持有跨轮状态，reset时开始新的会话
+ */
+public interface ScanStage {
+    /**
+     * 处理一轮扫描
+     * @return 保留的观测（无变化时可直接返回输入）；返回空列表表示整轮丢弃
+     */
+    List<ScanRecord> process(List<ScanRecord> scan);
+
+    /**
+     * 开始新会话
+     * @param sessionStartMicros 会话开始时刻（与扫描时间戳同一时基），0表示不限制
+     */
+    void reset(long sessionStartMicros);
+}
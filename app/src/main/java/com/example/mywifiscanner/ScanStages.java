@@ -0,0 +1,179 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 常用流水线阶段
+ * 每个阶段都是独立对象，可单独构造并对同一批扫描反复调用做基准测试
+ */
+public final class ScanStages {
+    private ScanStages() {
+    }
+
+    /**
+     * 单轮内去重：同一BSSID多次出现时保留最强的一条（无重复时直接返回输入）
+     */
+    public static ScanStage dedupe() {
+        return new DedupeStage();
+    }
+
+    /**
+     * 新鲜度：丢弃早于会话开始或不晚于同一BSSID上一次观测的结果（系统缓存的重复快照）
+     */
+    public static FreshnessStage freshness() {
+        return new FreshnessStage();
+    }
+
+    /**
+     * 连续定位的滑动窗口平滑（窗口 <= 1 时清空窗口并直接通过）
+     * @param smoother 调用方持有的平滑器，窗口状态跨流水线声明保留
+     */
+    static ScanStage smooth(SlidingScanSmoother smoother, RssiAggregationMode mode, int windowScans) {
+        return new SmoothingStage(smoother, mode, windowScans);
+    }
+
+    /**
+     * AP数量上限（部分选择，保持输入顺序）
+     * @param index 指纹库索引（区分度排序时使用），可为null
+     */
+    public static WifiStage limitApCount(int maxAps, ApRanking ranking, FingerprintIndex index) {
+        return wifis -> ApSelector.selectTop(wifis, maxAps, ranking, index);
+    }
+
+    /**
+     * 多BSSID虚拟AP分组：同一射频（MAC仅末位不同且同频段）的多个BSSID只保留信号最强的一个
+     */
+    public static WifiStage groupVirtualAps() {
+        return new VirtualApStage();
+    }
+
+    /**
+     * 按信号强度降序排序（原地）
+     */
+    public static WifiStage sortByRssi() {
+        return wifis -> {
+            Collections.sort(wifis, (w1, w2) -> Integer.compare(w2.getRssi(), w1.getRssi()));
+            return wifis;
+        };
+    }
+
+    private static final class DedupeStage implements ScanStage {
+        private final LongIntHashMap firstIndex = new LongIntHashMap(64); // BSSID键 -> 保留的观测下标
+        private long[] keys = new long[64];
+
+        @Override
+        public List<ScanRecord> process(List<ScanRecord> scan) {
+            int n = scan.size();
+            if (n > keys.length) keys = new long[Math.max(n, keys.length * 2)];
+            firstIndex.clear();
+            boolean duplicated = false;
+            for (int i = 0; i < n; i++) {
+                ScanRecord record = scan.get(i);
+                if (record == null || record.getBssid() == null) {
+                    keys[i] = -1;
+                    duplicated = true; // 需要重建列表以去掉空元素
+                    continue;
+                }
+                keys[i] = RssiAggregator.keyOf(record.getBssid());
+                int kept = firstIndex.putIfAbsent(keys[i], i);
+                if (kept != i) {
+                    duplicated = true;
+                    if (record.getLevel() > scan.get(kept).getLevel()) firstIndex.put(keys[i], i);
+                }
+            }
+            if (!duplicated) return scan;
+
+            List<ScanRecord> unique = new ArrayList<>(firstIndex.size());
+            for (int i = 0; i < n; i++) {
+                if (keys[i] >= 0 && firstIndex.get(keys[i], -1) == i) unique.add(scan.get(i));
+            }
+            return unique;
+        }
+
+        @Override
+        public void reset(long sessionStartMicros) {
+        }
+    }
+
+    private static final class VirtualApStage implements WifiStage {
+        private final LongIntHashMap strongest = new LongIntHashMap(64); // 分组键 -> 组内最强条目下标
+        private long[] keys = new long[64];
+
+        @Override
+        public List<FilteredWifi> process(List<FilteredWifi> wifis) {
+            int n = wifis.size();
+            if (n > keys.length) keys = new long[Math.max(n, keys.length * 2)];
+            strongest.clear();
+            boolean grouped = false;
+            for (int i = 0; i < n; i++) {
+                FilteredWifi wifi = wifis.get(i);
+                keys[i] = wifi != null ? VirtualApGroups.groupKey(wifi.getBssid(), wifi.getBand()) : -1;
+                if (keys[i] < 0) continue;
+                int kept = strongest.putIfAbsent(keys[i], i);
+                if (kept != i) {
+                    grouped = true;
+                    if (wifi.getRssi() > wifis.get(kept).getRssi()) strongest.put(keys[i], i);
+                }
+            }
+            if (!grouped) return wifis;
+
+            List<FilteredWifi> physical = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                if (keys[i] < 0 || strongest.get(keys[i], -1) == i) physical.add(wifis.get(i));
+            }
+            return physical;
+        }
+    }
+
+    /**
+     * 新鲜度阶段（可读取本会话的丢弃统计）
+     */
+    public static final class FreshnessStage implements ScanStage {
+        private ScanFreshnessFilter filter = new ScanFreshnessFilter(0);
+
+        private FreshnessStage() {
+        }
+
+        @Override
+        public List<ScanRecord> process(List<ScanRecord> scan) {
+            return filter.filter(scan);
+        }
+
+        @Override
+        public void reset(long sessionStartMicros) {
+            filter = new ScanFreshnessFilter(sessionStartMicros);
+        }
+
+        public ScanFreshnessFilter getFilter() {
+            return filter;
+        }
+    }
+
+    private static final class SmoothingStage implements ScanStage {
+        private final SlidingScanSmoother smoother;
+        private final RssiAggregationMode mode;
+        private final int windowScans;
+
+        SmoothingStage(SlidingScanSmoother smoother, RssiAggregationMode mode, int windowScans) {
+            this.smoother = smoother;
+            this.mode = mode;
+            this.windowScans = windowScans;
+        }
+
+        @Override
+        public List<ScanRecord> process(List<ScanRecord> scan) {
+            if (windowScans <= 1) {
+                smoother.reset();
+                return scan;
+            }
+            return smoother.smooth(scan, mode, windowScans);
+        }
+
+        @Override
+        public void reset(long sessionStartMicros) {
+            smoother.reset();
+        }
+    }
+}
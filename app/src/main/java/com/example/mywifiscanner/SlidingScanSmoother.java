@@ -0,0 +1,87 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 连续定位的滑动窗口平滑：保留每个AP在最近若干轮扫描中的样本，按配置的汇总方式输出平滑后的一轮扫描
+ * 样本存放在RssiWindow的定长环形缓冲中，稳定运行后除输出结果外不再分配内存
+ * 两轮扫描间隔过久（用户已移动）时自动清空窗口
+ */
+final class SlidingScanSmoother {
+    static final int MAX_WINDOW_SCANS = 16;
+    private static final long MAX_GAP_MICROS = 30 * 1000000L;
+    // 条目数超过此值且多数已过期时清空重建，避免经过的AP无限累积
+    private static final int COMPACT_THRESHOLD = 512;
+
+    private final RssiAggregator entries = new RssiAggregator(); // 只用于BSSID -> 条目下标
+    private final RssiWindow window = new RssiWindow(MAX_WINDOW_SCANS, 64);
+    private ScanRecord[] latest = new ScanRecord[64]; // 各条目最近一次观测（提供频段、时间戳等）
+    private int scanIndex;
+    private long lastScanMicros;
+
+    /**
+     * 清空窗口
+     */
+    synchronized void reset() {
+        entries.clear();
+        Arrays.fill(latest, null);
+        scanIndex = 0;
+        lastScanMicros = 0;
+    }
+
+    /**
+     * 加入一轮扫描并返回窗口内平滑后的扫描
+     * @param windowScans 窗口包含的扫描轮数（1 - MAX_WINDOW_SCANS）
+     */
+    synchronized List<ScanRecord> smooth(List<ScanRecord> scan, RssiAggregationMode mode, int windowScans) {
+        windowScans = Math.max(1, Math.min(MAX_WINDOW_SCANS, windowScans));
+        long scanMicros = newestTimestamp(scan);
+        if (lastScanMicros > 0 && scanMicros - lastScanMicros > MAX_GAP_MICROS) {
+            reset();
+        }
+        lastScanMicros = Math.max(lastScanMicros, scanMicros);
+        scanIndex++;
+
+        for (ScanRecord record : scan) {
+            if (record == null) continue;
+            int i = entries.add(record);
+            if (i < 0) continue;
+            ensureCapacity(i + 1);
+            if (entries.getCount(i) == 1) window.reset(i);
+            window.add(i, record.getLevel(), scanIndex);
+            latest[i] = record;
+        }
+
+        int minScan = scanIndex - windowScans + 1;
+        List<ScanRecord> smoothed = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            int rssi = window.aggregate(i, mode, minScan);
+            if (rssi == RssiWindow.NO_VALUE) continue;
+            ScanRecord last = latest[i];
+            smoothed.add(new ScanRecord(last.getBssid(), last.getSsid(), rssi,
+                    last.getFrequency(), last.getChannelWidth(), last.getTimestampMicros()));
+        }
+
+        if (entries.size() > COMPACT_THRESHOLD && smoothed.size() * 2 < entries.size()) {
+            reset(); // 下一轮从空窗口开始，本轮结果已输出
+        }
+        return smoothed;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= latest.length) return;
+        int capacity = Math.max(size, latest.length * 2);
+        window.ensureCapacity(capacity);
+        latest = Arrays.copyOf(latest, capacity);
+    }
+
+    private static long newestTimestamp(List<ScanRecord> scan) {
+        long newest = 0;
+        for (ScanRecord record : scan) {
+            if (record != null) newest = Math.max(newest, record.getTimestampMicros());
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 流式扫描汇总：每到一轮扫描即更新各AP的均值、方差与出现率
+ * 任意时刻可取快照（均值/最大值基于全部样本，稳健汇总方式基于每个AP最近WINDOW_SIZE个样本）；
+ * 各稳定AP的均值标准误都收敛到目标以内时即可提前结束采集
+ * 扫描线程写入、UI线程读取快照，方法均加锁
+ */
+public class StreamingScanAggregator {
+    // 出现率不低于此值的AP参与收敛判断（偶尔出现的AP样本太少，不应拖住采集）
+    private static final double STABLE_PRESENCE = 0.5;
+    // 至少需要的扫描轮数：样本方差至少要两轮，两轮时估计极不稳定（两次相同的缓存结果即为0），故取3
+    static final int MIN_SCANS_FOR_CONVERGENCE = 3;
+    // 稳健汇总使用的每AP样本窗口
+    private static final int WINDOW_SIZE = 32;
+
+    private final RssiAggregator stats = new RssiAggregator();
+    private final RssiWindow window = new RssiWindow(WINDOW_SIZE, 64);
+    private int capacity = 64; // window已分配的条目数
+
+    /**
+     * 清空，开始新的采集会话（保留已分配的数组）
+     */
+    public synchronized void reset() {
+        stats.clear();
+    }
+
+    /**
+     * 汇总新到的一轮扫描
+     */
+    public synchronized void addScan(List<ScanRecord> scan) {
+        if (scan == null) return;
+        stats.beginScan();
+        int scanCount = stats.getScanCount();
+        for (ScanRecord record : scan) {
+            if (record == null) continue;
+            int i = stats.add(record);
+            if (i < 0) continue;
+            ensureCapacity(i + 1);
+            if (stats.getCount(i) == 1) {
+                window.reset(i);
+            }
+            window.add(i, record.getLevel(), scanCount);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= capacity) return;
+        capacity = Math.max(size, capacity * 2);
+        window.ensureCapacity(capacity);
+    }
+
+    public synchronized int getScanCount() {
+        return stats.getScanCount();
+    }
+
+    public synchronized int getApCount() {
+        return stats.size();
+    }
+
+    /**
+     * 稳定AP均值标准误的最大值（dB）：sqrt(s² / n)，s²为样本方差（除以n-1），扫描不足时返回正无穷
+     */
+    public synchronized double getMaxStandardError() {
+        int scanCount = stats.getScanCount();
+        if (scanCount < MIN_SCANS_FOR_CONVERGENCE) return Double.POSITIVE_INFINITY;
+        double maxError = 0;
+        for (int i = 0; i < stats.size(); i++) {
+            if ((double) stats.getPresentScans(i) / scanCount < STABLE_PRESENCE) continue;
+            int n = stats.getCount(i);
+            if (n < MIN_SCANS_FOR_CONVERGENCE) return Double.POSITIVE_INFINITY;
+            // getVariance为总体方差Σ(x-μ)²/n，故 s²/n = 总体方差/(n-1)
+            maxError = Math.max(maxError, Math.sqrt(stats.getVariance(i) / (n - 1)));
+        }
+        return maxError;
+    }
+
+    /**
+     * 是否已收敛：已汇总至少minScans轮（且不少于3轮）有效扫描，且所有稳定AP的均值标准误不超过targetDb
+     * @param targetDb 目标标准误（dB），<= 0 表示不提前结束
+     * @param minScans 调用方要求的最少扫描轮数
+     */
+    public synchronized boolean isConverged(double targetDb, int minScans) {
+        return targetDb > 0 && stats.size() > 0 && stats.getScanCount() >= minScans
+                && getMaxStandardError() <= targetDb;
+    }
+
+    /**
+     * 当前估计的快照：平均RSSI高于阈值的AP，附带方差，按信号强度降序
+     */
+    public List<FilteredWifi> snapshot(int rssiThreshold) {
+        return snapshot(rssiThreshold, RssiAggregationMode.MEAN);
+    }
+
+    /**
+     * 按指定汇总方式取快照：汇总RSSI高于阈值的AP，附带方差，按信号强度降序
+     */
+    public List<FilteredWifi> snapshot(int rssiThreshold, RssiAggregationMode mode) {
+        return snapshot(rssiThreshold, mode, null);
+    }
+
+    /**
+     * 按指定汇总方式取快照，只保留通过稳定性过滤的AP
+     * @param stability 稳定性过滤，null表示不过滤
+     */
+    public List<FilteredWifi> snapshot(int rssiThreshold, RssiAggregationMode mode,
+                                       ApStabilityFilter stability) {
+        List<FilteredWifi> filtered = collect(rssiThreshold, mode, stability);
+        Collections.sort(filtered, (w1, w2) -> Integer.compare(w2.getRssi(), w1.getRssi()));
+        return filtered;
+    }
+
+    /**
+     * 汇总并过滤（汇总RSSI严格高于阈值、通过稳定性过滤），按首次出现顺序输出，不排序
+     */
+    synchronized List<FilteredWifi> collect(int rssiThreshold, RssiAggregationMode mode,
+                                            ApStabilityFilter stability) {
+        List<FilteredWifi> filtered = new ArrayList<>(stats.size());
+        for (int i = 0; i < stats.size(); i++) {
+            if (stability != null && (!stability.isStable(stats.getPresentScans(i), stats.getScanCount())
+                    || !stability.isInfrastructure(stats.getBssid(i), stats.getSsid(i)))) {
+                continue;
+            }
+            int rssi;
+            if (mode == RssiAggregationMode.MEAN) {
+                rssi = stats.getMean(i);
+            } else if (mode == RssiAggregationMode.MAX) {
+                rssi = stats.getMax(i);
+            } else {
+                rssi = window.aggregate(i, mode, 0);
+            }
+            if (rssi <= rssiThreshold) continue;
+            FilteredWifi wifi = new FilteredWifi(WifiDataProcessor.cleanSsid(stats.getSsid(i)), stats.getBssid(i),
+                    rssi, stats.getFrequency(i), stats.getChannelWidth(i));
+            wifi.setRssiVariance((float) stats.getVariance(i));
+            filtered.add(wifi);
+        }
+        return filtered;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.mywifiscanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 仿真扫描源：由指纹库反推AP位置，按对数距离路径损耗模型生成扫描结果（用于脱离设备的压测与精度评估）
+ * 模型：RSSI(d) = P0 - 10·n·log10(d / 1m) - 楼层衰减 + N(0, σ²)，低于接收灵敏度的AP不出现在结果中
+ * AP位置取其观测点的信号功率加权质心，P0按各观测点最小二乘拟合；每轮扫描在随机指纹点附近随机取一个真实位置
+ */
+public class SyntheticScanSource implements ScanSource {
+    private static final double DEFAULT_PATH_LOSS_EXPONENT = 3.0;
+    private static final double DEFAULT_NOISE_SIGMA_DB = 4.0;
+    private static final double DEFAULT_PIXELS_PER_METER = 10.0;
+    private static final double DEFAULT_JITTER_METERS = 2.0;
+    private static final double FLOOR_LOSS_DB = 15.0;         // 每隔一层的穿透损耗
+    private static final int SENSITIVITY_DBM = -95;           // 接收灵敏度
+    private static final long SCAN_INTERVAL_MICROS = 1000000; // 仿真时钟每轮前进1秒
+
+    private final List<WifiFingerprint> anchors = new ArrayList<>();
+    private final String[] bssids;
+    private final String[] ssids;
+    private final int[] frequencies;   // 库中记录的频率（MHz），旧指纹为0
+    private final int[] channelWidths;
+    private final double[] apX;
+    private final double[] apY;
+    private final int[] apFloor;
+    private final double[] apRefRssi; // 1米处的RSSI（P0）
+    private final double pathLossExponent;
+    private final double noiseSigmaDb;
+    private final double pixelsPerMeter;
+    private final double jitterPixels;
+    private final Random random;
+    private long clockMicros;
+    private WifiLocationManager.LocationResult lastTruth;
+    private WifiLocationManager.LocationResult fixedPosition; // 非null时每轮都在此处扫描（模拟原地采集）
+
+    public SyntheticScanSource(List<WifiFingerprint> library, long seed) {
+        this(library, seed, DEFAULT_PATH_LOSS_EXPONENT, DEFAULT_NOISE_SIGMA_DB,
+                DEFAULT_PIXELS_PER_METER, DEFAULT_JITTER_METERS);
+    }
+
+    /**
+     * @param library 指纹库（用于反推AP位置与发射功率，并作为仿真位置的锚点）
+     * @param seed 随机种子（相同种子生成相同的扫描序列）
+     * @param pathLossExponent 路径损耗指数n（室内通常2.5-4）
+     * @param noiseSigmaDb 阴影衰落标准差
+     * @param pixelsPerMeter 地图像素与米的换算
+     * @param jitterMeters 真实位置相对锚点的最大偏移
+     */
+    public SyntheticScanSource(List<WifiFingerprint> library, long seed, double pathLossExponent,
+                               double noiseSigmaDb, double pixelsPerMeter, double jitterMeters) {
+        this.pathLossExponent = pathLossExponent;
+        this.noiseSigmaDb = noiseSigmaDb;
+        this.pixelsPerMeter = pixelsPerMeter;
+        this.jitterPixels = jitterMeters * pixelsPerMeter;
+        this.random = new Random(seed);
+
+        // 1. 按BSSID汇总观测：功率加权质心定位AP，最强观测所在楼层为AP楼层
+        Map<String, List<double[]>> observations = new HashMap<>(); // {x, y, floor, rssi}
+        Map<String, String> ssidMap = new HashMap<>();
+        Map<String, FilteredWifi> channelMap = new HashMap<>(); // 记录了频率的任一观测
+        for (WifiFingerprint fp : library) {
+            if (fp == null || fp.getFilteredWifis() == null || fp.getFilteredWifis().isEmpty()) continue;
+            anchors.add(fp);
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                if (wifi == null || wifi.getBssid() == null) continue;
+                List<double[]> list = observations.get(wifi.getBssid());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    observations.put(wifi.getBssid(), list);
+                    ssidMap.put(wifi.getBssid(), wifi.getSsid());
+                }
+                if (wifi.getFrequency() > 0) channelMap.put(wifi.getBssid(), wifi);
+                list.add(new double[]{fp.getPixelX(), fp.getPixelY(), fp.getFloor(), wifi.getRssi()});
+            }
+        }
+
+        int n = observations.size();
+        bssids = new String[n];
+        ssids = new String[n];
+        frequencies = new int[n];
+        channelWidths = new int[n];
+        apX = new double[n];
+        apY = new double[n];
+        apFloor = new int[n];
+        apRefRssi = new double[n];
+        int i = 0;
+        for (Map.Entry<String, List<double[]>> entry : observations.entrySet()) {
+            List<double[]> list = entry.getValue();
+            double weightSum = 0, x = 0, y = 0, strongest = Double.NEGATIVE_INFINITY;
+            int floor = 0;
+            for (double[] obs : list) {
+                double weight = Math.pow(10, obs[3] / 10); // dBm -> mW
+                x += weight * obs[0];
+                y += weight * obs[1];
+                weightSum += weight;
+                if (obs[3] > strongest) {
+                    strongest = obs[3];
+                    floor = (int) obs[2];
+                }
+            }
+            bssids[i] = entry.getKey();
+            ssids[i] = ssidMap.get(entry.getKey());
+            FilteredWifi channel = channelMap.get(entry.getKey());
+            if (channel != null) {
+                frequencies[i] = channel.getFrequency();
+                channelWidths[i] = channel.getChannelWidth();
+            }
+            apX[i] = x / weightSum;
+            apY[i] = y / weightSum;
+            apFloor[i] = floor;
+
+            // 2. 固定n时P0的最小二乘解：各观测点 RSSI + 路径损耗 的均值
+            double refSum = 0;
+            for (double[] obs : list) {
+                refSum += obs[3] + pathLoss(obs[0], obs[1], (int) obs[2], i);
+            }
+            apRefRssi[i] = refSum / list.size();
+            i++;
+        }
+    }
+
+    @Override
+    public synchronized List<ScanRecord> nextScan(long timeoutMs) {
+        if (anchors.isEmpty()) return null;
+
+        double x, y;
+        int floor;
+        if (fixedPosition != null) {
+            x = fixedPosition.getX();
+            y = fixedPosition.getY();
+            floor = fixedPosition.getFloor();
+            lastTruth = fixedPosition;
+        } else {
+            // 在随机锚点附近取真实位置（圆盘内均匀分布）
+            WifiFingerprint anchor = anchors.get(random.nextInt(anchors.size()));
+            double radius = jitterPixels * Math.sqrt(random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            x = anchor.getPixelX() + radius * Math.cos(angle);
+            y = anchor.getPixelY() + radius * Math.sin(angle);
+            floor = anchor.getFloor();
+            lastTruth = new WifiLocationManager.LocationResult(x, y, floor);
+        }
+
+        clockMicros += SCAN_INTERVAL_MICROS;
+        List<ScanRecord> scan = new ArrayList<>();
+        for (int i = 0; i < bssids.length; i++) {
+            double rssi = apRefRssi[i] - pathLoss(x, y, floor, i) + random.nextGaussian() * noiseSigmaDb;
+            if (rssi < SENSITIVITY_DBM) continue;
+            scan.add(new ScanRecord(bssids[i], ssids[i], (int) Math.round(Math.min(rssi, 0)),
+                    frequencies[i], channelWidths[i], clockMicros));
+        }
+        return scan;
+    }
+
+    /**
+     * 最近一轮仿真扫描的真实位置（用于计算定位误差）
+     */
+    public synchronized WifiLocationManager.LocationResult getLastTruth() {
+        return lastTruth;
+    }
+
+    /**
+     * 固定扫描位置（模拟在一个点位原地多次采集），传null恢复随机位置
+     */
+    public synchronized void setFixedPosition(WifiLocationManager.LocationResult position) {
+        fixedPosition = position;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // 无外部资源
+    }
+
+    /**
+     * 位置(x, y, floor)到第i个AP的路径损耗（dB，不含P0）
+     */
+    private double pathLoss(double x, double y, int floor, int i) {
+        double dx = x - apX[i], dy = y - apY[i];
+        double meters = Math.max(1.0, Math.sqrt(dx * dx + dy * dy) / pixelsPerMeter);
+        return 10 * pathLossExponent * Math.log10(meters) + FLOOR_LOSS_DB * Math.abs(floor - apFloor[i]);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mywifiscanner;
+
+/**
+ * 定长最小堆：保留得分最高的k个候选（指纹ID + 相似度）
+ * 排序为全序：得分高者在前，得分相同时ID小者在前，结果与候选的加入顺序无关（并行分块合并与顺序打分一致）
+ * 使用平行的基本类型数组，offer过程不产生任何对象分配，可reset后复用
+ */
+public final class TopKHeap {
+    private final int[] ids;
+    private final double[] scores;
+    private int capacity;
+    private int size;
+
+    public TopKHeap(int maxCapacity) {
+        ids = new int[Math.max(1, maxCapacity)];
+        scores = new double[ids.length];
+        capacity = ids.length;
+    }
+
+    /**
+     * 清空并设置本次使用的k（不超过构造时的最大容量）
+     */
+    public void reset(int k) {
+        capacity = Math.max(1, Math.min(k, ids.length));
+        size = 0;
+    }
+
+    /**
+     * 尝试加入候选；堆满时仅当排在堆顶（当前第k名）之前才替换
+     */
+    public void offer(int id, double score) {
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0] || (score == scores[0] && id < ids[0])) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 合并另一个堆中的全部候选
+     */
+    public void addAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 本次使用的k
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 按得分降序导出候选，得分相同时ID升序（会清空堆）
+     * @return 实际导出的数量
+     */
+    public int drainDescending(int[] outIds, double[] outScores) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outIds[i] = ids[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksBelow(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && ranksBelow(right, left)) smallest = right;
+            if (!ranksBelow(smallest, i)) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * 位置a的候选是否排在位置b之后（得分更低，或得分相同而ID更大）
+     */
+    private boolean ranksBelow(int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && ids[a] > ids[b]);
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.mywifiscanner;
+
+/**
+ * 多BSSID虚拟AP分组：企业AP的同一射频以仅末位十六进制数不同的多个BSSID广播多个SSID，
+ * 这些BSSID信号完全相关，合并为一个物理射频可减少向量维度而不损失信息
+ * 分组键 = MAC去掉末4位 + 频段（同一设备的2.4GHz与5GHz射频可能只差末位，不能合并）
+ */
+final class VirtualApGroups {
+    private static final int BAND_SHIFT = 44;
+
+    private VirtualApGroups() {
+    }
+
+    /**
+     * 分组键；BSSID格式无效时返回-1（不参与分组）
+     */
+    static long groupKey(String bssid, int band) {
+        long mac = WifiDataProcessor.parseBssid(bssid);
+        return mac >= 0 ? (mac >>> 4) | ((long) band << BAND_SHIFT) : -1;
+    }
+
+    /**
+     * 由指纹库建立 字典ID -> 组代表ID 的映射（组内最小ID为代表，与采集时存下的是哪个成员无关）
+     * @param present 以字典ID为下标，库中出现过的AP为true
+     * @param bandById 各AP的频段
+     * @return 映射表，未分组的AP映射到自身
+     */
+    static int[] buildGroupMap(boolean[] present, byte[] bandById) {
+        BssidDictionary dictionary = BssidDictionary.getInstance();
+        int[] groupById = new int[present.length];
+        LongIntHashMap representatives = new LongIntHashMap(present.length / 4);
+        for (int id = 0; id < present.length; id++) {
+            groupById[id] = id;
+            if (!present[id]) continue;
+            long key = groupKey(dictionary.bssidOf(id), id < bandById.length ? bandById[id] : WifiBand.UNKNOWN);
+            if (key < 0) continue;
+            groupById[id] = representatives.putIfAbsent(key, id); // 按ID升序遍历，先到者即最小ID
+        }
+        return groupById;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.mywifiscanner;
+
+/**
+ * WiFi频段划分（由信道中心频率推断）
+ * 同一AP的2.4GHz与5/6GHz射频传播特性差异很大，匹配时按频段分别打分再融合
+ */
+public final class WifiBand {
+    public static final int UNKNOWN = 0; // 未记录频率（旧版指纹）
+    public static final int BAND_2G = 1;
+    public static final int BAND_5G = 2;
+    public static final int BAND_6G = 3;
+    public static final int COUNT = 4;
+
+    private WifiBand() {
+    }
+
+    /**
+     * 由中心频率（MHz）推断频段
+     */
+    public static int fromFrequency(int frequencyMhz) {
+        if (frequencyMhz >= 2400 && frequencyMhz < 2500) return BAND_2G;
+        if (frequencyMhz >= 4900 && frequencyMhz < 5925) return BAND_5G;
+        if (frequencyMhz >= 5925 && frequencyMhz <= 7125) return BAND_6G;
+        return UNKNOWN;
+    }
+
+    public static String nameOf(int band) {
+        switch (band) {
+            case BAND_2G: return "2.4GHz";
+            case BAND_5G: return "5GHz";
+            case BAND_6G: return "6GHz";
+            default: return "未知";
+        }
+    }
+}
@@ -1,152 +1,17 @@
 package com.example.mywifiscanner;
 
-import android.net.wifi.ScanResult;
-import android.util.Log;
-
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Collections;
 
 /**
  * 统一的WiFi数据处理工具类
- * 负责WiFi信号的过滤、排序、平均计算、强度计算、相似度计算等
+ * 负责强度计算、相似度计算、BSSID解析等（扫描结果的过滤、汇总与排序由ScanPipeline按流程声明）
  */
 public class WifiDataProcessor {
-    private static final String TAG = "WifiDataProcessor";
-
-    /**
-     * 处理多次扫描结果（计算平均RSSI）
-     * @param allScans 多次扫描结果集合
-     * @param configManager 配置管理器（提供信号阈值）
-     * @return 过滤并排序后的WiFi列表
-     */
-    public static List<FilteredWifi> processMultipleScansWithAverage(
-            List<List<ScanResult>> allScans,
-            ConfigManager configManager) {
-        List<FilteredWifi> filtered = new ArrayList<>();
-        if (allScans == null || allScans.isEmpty()) return filtered;
-
-        // 1. 按BSSID统计RSSI总和与次数（去重+算平均）
-        Map<String, Integer> rssiSumMap = new HashMap<>();
-        Map<String, Integer> countMap = new HashMap<>();
-        Map<String, String> ssidMap = new HashMap<>();
-        for (List<ScanResult> scan : allScans) {
-            if (scan == null) continue;
-            for (ScanResult result : scan) {
-                if (result == null || result.BSSID == null) continue;
-                String bssid = result.BSSID;
-
-                // 替换 getOrDefault 兼容低版本
-                // 处理RSSI总和
-                Integer currentSum = rssiSumMap.get(bssid);
-                if (currentSum == null) {
-                    currentSum = 0;
-                }
-                rssiSumMap.put(bssid, currentSum + result.level);
-
-                // 处理计数
-                Integer currentCount = countMap.get(bssid);
-                if (currentCount == null) {
-                    currentCount = 0;
-                }
-                countMap.put(bssid, currentCount + 1);
-
-                ssidMap.put(bssid, result.SSID);
-            }
-        }
-
-        // 2. 过滤弱信号（低于配置阈值，默认-85dBm）
-        int rssiThreshold = configManager.getWifiThreshold(); // 默认-85dBm
-        for (String bssid : rssiSumMap.keySet()) {
-            int avgRssi = rssiSumMap.get(bssid) / countMap.get(bssid);
-            if (avgRssi > rssiThreshold) { // 只保留信号强于阈值的WiFi
-                FilteredWifi wifi = new FilteredWifi(ssidMap.get(bssid), bssid, avgRssi);
-                filtered.add(wifi);
-            }
-        }
-
-        // 3. 按信号强度降序排序
-        Collections.sort(filtered, (w1, w2) -> Integer.compare(w2.getRssi(), w1.getRssi()));
-        return filtered;
-    }
-
-    /**
-     * 处理多次扫描结果（保留最强RSSI）
-     * @param allScans 多次扫描结果集合
-     * @param configManager 配置管理器（提供信号阈值）
-     * @return 过滤并排序后的WiFi列表
-     */
-    public static List<FilteredWifi> processMultipleScansWithMax(
-            List<List<ScanResult>> allScans,
-            ConfigManager configManager) {
-        List<FilteredWifi> filtered = new ArrayList<>();
-        if (allScans == null || allScans.isEmpty()) {
-            Log.w(TAG, "无扫描结果可处理");
-            return filtered;
-        }
-
-        // 保留每个BSSID的最强信号
-        Map<String, FilteredWifi> bssidMap = new HashMap<>();
-        int rssiThreshold = configManager.getWifiThreshold();
-
-        for (List<ScanResult> scanList : allScans) {
-            if (scanList == null || scanList.isEmpty()) continue;
-            for (ScanResult scan : scanList) {
-                if (scan.BSSID != null && scan.level >= rssiThreshold) {
-                    String cleanedSsid = scan.SSID.replace("\"", "");
-                    FilteredWifi wifi = new FilteredWifi(cleanedSsid, scan.BSSID, scan.level);
-                    String bssid = wifi.getBssid();
-
-                    // 仅保留更强的信号
-                    if (bssidMap.containsKey(bssid)) {
-                        FilteredWifi existing = bssidMap.get(bssid);
-                        if (wifi.getRssi() > existing.getRssi()) {
-                            bssidMap.put(bssid, wifi);
-                        }
-                    } else {
-                        bssidMap.put(bssid, wifi);
-                    }
-                }
-            }
-        }
-
-        filtered = new ArrayList<>(bssidMap.values());
-        Collections.sort(filtered, (w1, w2) -> Integer.compare(w2.getRssi(), w1.getRssi()));
-        return filtered;
-    }
-
     /**
-     * 处理单次扫描结果
-     * @param singleScan 单次扫描结果
-     * @param configManager 配置管理器（提供信号阈值）
-     * @return 过滤并排序后的WiFi列表
+     * 统一的SSID清理：去掉系统返回的引号，null视为空字符串
      */
-    public static List<FilteredWifi> processSingleScan(
-            List<ScanResult> singleScan,
-            ConfigManager configManager) {
-        List<FilteredWifi> filtered = new ArrayList<>();
-        if (singleScan == null || singleScan.isEmpty()) {
-            Log.w(TAG, "单次扫描结果为空");
-            return filtered;
-        }
-
-        int rssiThreshold = configManager.getWifiThreshold();
-        for (ScanResult result : singleScan) {
-            if (result != null && result.BSSID != null && result.level > rssiThreshold) {
-                FilteredWifi wifi = new FilteredWifi(
-                        result.SSID,
-                        result.BSSID,
-                        result.level
-                );
-                filtered.add(wifi);
-            }
-        }
-
-        // 按信号强度降序排序
-        Collections.sort(filtered, (w1, w2) -> Integer.compare(w2.getRssi(), w1.getRssi()));
-        return filtered;
+    public static String cleanSsid(String ssid) {
+        return ssid != null ? ssid.replace("\"", "") : "";
     }
 
     /**
@@ -163,11 +28,12 @@ public class WifiDataProcessor {
             return 0;
         }
 
-        // 将指纹库的WiFi按BSSID映射
-        Map<String, FilteredWifi> fingerprintMap = new HashMap<>();
-        for (FilteredWifi fpWifi : fingerprintWifis) {
+        // 将指纹库的WiFi按BSSID字典ID建表（ID -> 列表下标，无装箱）
+        LongIntHashMap fingerprintMap = new LongIntHashMap(fingerprintWifis.size());
+        for (int i = 0; i < fingerprintWifis.size(); i++) {
+            FilteredWifi fpWifi = fingerprintWifis.get(i);
             if (fpWifi != null && fpWifi.getBssid() != null) {
-                fingerprintMap.put(fpWifi.getBssid(), fpWifi);
+                fingerprintMap.put(fpWifi.getBssidId(), i);
             }
         }
 
@@ -178,8 +44,9 @@ public class WifiDataProcessor {
         for (FilteredWifi currentWifi : currentWifis) {
             if (currentWifi == null || currentWifi.getBssid() == null) continue;
 
-            FilteredWifi matchedFpWifi = fingerprintMap.get(currentWifi.getBssid());
-            if (matchedFpWifi != null) {
+            int matchedIndex = fingerprintMap.get(currentWifi.getBssidId(), -1);
+            if (matchedIndex >= 0) {
+                FilteredWifi matchedFpWifi = fingerprintWifis.get(matchedIndex);
                 // 计算单个WiFi的信号相似度
                 int rssiDiff = Math.abs(currentWifi.getRssi() - matchedFpWifi.getRssi());
                 double similarity = Math.max(0, 1 - (double) rssiDiff / 40);
@@ -190,4 +57,24 @@ public class WifiDataProcessor {
 
         return matchCount > 0 ? totalSimilarity / matchCount : 0;
     }
-}
\ No newline at end of file
+
+    /**
+     * 将 "aa:bb:cc:dd:ee:ff" 格式的BSSID解析为48位整数
+     * @return 解析结果；格式无效时返回-1
+     */
+    public static long parseBssid(String bssid) {
+        if (bssid == null || bssid.length() != 17) return -1;
+        long value = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') return -1;
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) return -1;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.mywifiscanner;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,6 +28,17 @@ public class WifiFingerprint {
     // 默认构造方法（JSON序列化需要）
     public WifiFingerprint() {}
 
+    // 复制构造方法：复制点位信息与WiFi列表（列表中的FilteredWifi与原指纹共用）
+    public WifiFingerprint(WifiFingerprint other) {
+        this.pixelX = other.pixelX;
+        this.pixelY = other.pixelY;
+        this.floor = other.floor;
+        this.zone = other.zone;
+        this.label = other.label;
+        this.path = other.path;
+        this.filteredWifis = other.filteredWifis != null ? new ArrayList<>(other.filteredWifis) : null;
+    }
+
     // Getter和Setter
     public double getPixelX() { return pixelX; }
     public void setPixelX(double pixelX) { this.pixelX = pixelX; }
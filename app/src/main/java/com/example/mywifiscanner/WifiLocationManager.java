@@ -4,18 +4,20 @@ import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.location.LocationManager;
-import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 
 import androidx.core.content.ContextCompat;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 用于WiFi指纹定位的管理类 - 优化版本
@@ -25,15 +27,35 @@ public class WifiLocationManager {
     private final Context context;
     private final WifiManager wifiManager;
     private final FingerprintManager fingerprintManager;
-    private final ConfigManager configManager; // 保留配置管理器，支持动态配置
+    private final ScanScheduler scanScheduler; // 共用的扫描调度器（节流、合并请求）
+    private final FingerprintLocator locator;  // 与设备无关的匹配流程
 
-    // 保留原有构造方法，包含ConfigManager以支持动态配置
+    // 异步定位：后台单线程执行过滤与匹配，结果切回主线程
+    private final ExecutorService locateExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param config 定位配置快照，之后可通过 {@link #setConfig(LocateConfig)} 替换
+     */
     public WifiLocationManager(Context context, WifiManager wifiManager,
-                               FingerprintManager fingerprintManager, ConfigManager configManager) {
+                               FingerprintManager fingerprintManager, LocateConfig config,
+                               ScanScheduler scanScheduler) {
         this.context = context;
         this.wifiManager = wifiManager;
         this.fingerprintManager = fingerprintManager;
-        this.configManager = configManager;
+        this.scanScheduler = scanScheduler;
+        this.locator = new FingerprintLocator(config);
+    }
+
+    /**
+     * 替换定位配置快照（任意线程可调用，从下一次定位开始生效）
+     */
+    public void setConfig(LocateConfig config) {
+        locator.setConfig(config);
+    }
+
+    public LocateConfig getConfig() {
+        return locator.getConfig();
     }
 
     /**
@@ -58,7 +80,8 @@ public class WifiLocationManager {
     }
 
     /**
-     * 执行实时定位 - 优化版本（整合权限检查和扫描逻辑）
+     * 执行实时定位 - 同步版本（startScan后立即读取，得到的可能是上一次的缓存结果）
+     * 建议使用 {@link #locateAsync(long, LocateRequest.Callback)}
      */
     public LocationResult startRealTimeLocation() {
         Log.d(TAG, "开始实时定位...");
@@ -76,139 +99,108 @@ public class WifiLocationManager {
         }
 
         // 移除Thread.sleep(2000)，直接获取当前可用结果
-        List<ScanResult> currentScans = wifiManager.getScanResults();
-        if (currentScans == null || currentScans.isEmpty()) {
-            Log.e(TAG, "扫描结果为空");
-            return null;
-        }
-
-        // 后续处理逻辑保持不变...
-        List<FilteredWifi> currentWifis = filterCurrentWifi(currentScans);
-        if (currentWifis.isEmpty()) {
-            Log.e(TAG, "过滤后无可用WiFi");
-            return null;
-        }
-
-        return matchWithFingerprintLibraryOptimized(currentWifis);
-    }
-
-    /**
-     * 筛选当前WiFi（使用配置阈值，而非硬编码-90dBm）
-     */
-    private List<FilteredWifi> filterCurrentWifi(List<ScanResult> currentScans) {
-        // 复用数据处理类，统一过滤逻辑
-        return WifiDataProcessor.processSingleScan(currentScans, configManager);
+        return locate(ScanRecord.fromScanResults(wifiManager.getScanResults()));
     }
 
     /**
-     * 与指纹库匹配 - 优化版本（考虑信号波动和多个候选点）
+     * 异步实时定位：经扫描调度器拿到新一轮扫描结果，在后台线程过滤与匹配，结果回调到主线程
+     * @param timeoutMs 超时时间（不含等待扫描配额的时间），超时后回调onFailed
+     * @param callback 结果回调（主线程）
+     * @return 请求句柄，可用于取消
      */
-    private LocationResult matchWithFingerprintLibraryOptimized(List<FilteredWifi> currentWifis) {
-        List<WifiFingerprint> fingerprints = fingerprintManager.getAllFingerprints();
-        if (fingerprints.isEmpty()) {
-            Log.e(TAG, "指纹库为空");
-            return null;
-        }
-
-        // 动态阈值：根据指纹库大小调整（比固定0.6更灵活）
-        double threshold = calculateDynamicThreshold(fingerprints.size());
-
-        // 遍历指纹库，计算相似度
-        double bestSimilarity = 0;
-        WifiFingerprint bestMatch = null;
-        for (WifiFingerprint fp : fingerprints) {
-            double similarity = calculateOptimizedSimilarity(currentWifis, fp.getFilteredWifis());
-            if (similarity > bestSimilarity) {
-                bestSimilarity = similarity;
-                bestMatch = fp;
+    public LocateRequest locateAsync(long timeoutMs, LocateRequest.Callback callback) {
+        LocateRequest.Matcher matcher = new LocateRequest.Matcher() {
+            @Override
+            public LocationResult locate(List<ScanRecord> scan) {
+                return WifiLocationManager.this.locate(scan);
             }
-        }
 
-        // 使用动态阈值判断
-        if (bestMatch != null && bestSimilarity > threshold) {
-            Log.d(TAG, "定位结果：" + bestMatch.getPixelX() + "," + bestMatch.getPixelY()
-                    + " 相似度：" + bestSimilarity + "（阈值：" + threshold + "）");
-            return new LocationResult(
-                    bestMatch.getPixelX(),
-                    bestMatch.getPixelY(),
-                    bestMatch.getFloor()
-            );
+            @Override
+            public String getLastFailure() {
+                return locator.getLastFailure();
+            }
+        };
+        LocateRequest request = new LocateRequest(newLocateSource(timeoutMs), matcher, mainHandler::post, callback);
+        if (!checkLocationPermission()) {
+            request.fail("位置权限不足");
         } else {
-            Log.d(TAG, "无匹配结果（最高相似度：" + bestSimilarity + "，阈值：" + threshold + "）");
-            return null;
+            request.start(locateExecutor, timeoutMs);
         }
+        return request;
     }
 
     /**
-     * 计算动态相似度阈值（根据指纹库大小调整）
+     * 实时定位的扫描源：经调度器等待新一轮扫描，只保留本次请求之后观测到的AP（系统缓存中的旧AP可能来自别的位置）
+     * 超时从获得扫描配额起算；系统节流使配额等待超过超时时间时，不再等待，直接使用系统缓存的扫描结果
      */
-    private double calculateDynamicThreshold(int fingerprintCount) {
-        if (fingerprintCount < 5) {
-            return 0.4; // 指纹库较小，降低阈值
-        } else if (fingerprintCount < 10) {
-            return 0.5;
-        } else {
-            return 0.6; // 指纹库较大，提高阈值以获得更精确匹配
-        }
-    }
+    private ScanSource newLocateSource(long locateTimeoutMs) {
+        long waitMs = scanScheduler.estimateWaitMs(ScanScheduler.Priority.LIVE_LOCATE);
+        if (waitMs > locateTimeoutMs) {
+            Log.d(TAG, "扫描配额需等待" + waitMs + "ms，使用缓存的扫描结果定位");
+            return new ScanSource() {
+                @Override
+                public List<ScanRecord> nextScan(long timeoutMs) {
+                    try {
+                        return ScanRecord.fromScanResults(wifiManager.getScanResults());
+                    } catch (SecurityException e) {
+                        Log.e(TAG, "无法访问WiFi扫描结果（权限问题）");
+                        return null;
+                    }
+                }
 
-    /**
-     * 优化相似度计算（使用HashMap优化匹配效率，考虑信号波动和匹配比例）
-     */
-    private double calculateOptimizedSimilarity(List<FilteredWifi> currentWifis,
-                                                List<FilteredWifi> fingerprintWifis) {
-        if (currentWifis.isEmpty() || fingerprintWifis.isEmpty()) {
-            return 0;
-        }
+                @Override
+                public boolean isFinished() {
+                    return false;
+                }
 
-        // 使用HashMap存储指纹库WiFi，减少嵌套循环（比双重for循环高效）
-        Map<String, FilteredWifi> fingerprintMap = new HashMap<>();
-        for (FilteredWifi fpWifi : fingerprintWifis) {
-            fingerprintMap.put(fpWifi.getBssid(), fpWifi);
+                @Override
+                public void close() {
+                    // 无外部资源
+                }
+            };
         }
 
-        double totalSimilarity = 0;
-        int matchCount = 0;
-
-        // 遍历当前WiFi，匹配指纹库中相同BSSID的WiFi
-        for (FilteredWifi currentWifi : currentWifis) {
-            FilteredWifi matchedFpWifi = fingerprintMap.get(currentWifi.getBssid());
-            if (matchedFpWifi != null) {
-                // 计算单个WiFi的信号相似度（考虑信号波动）
-                double similarity = calculateRobustWifiSimilarity(currentWifi, matchedFpWifi);
-                totalSimilarity += similarity;
-                matchCount++;
-
-                Log.d(TAG, String.format("  WiFi匹配: %s, 信号: %d vs %d, 相似度: %.3f",
-                        currentWifi.getSsid(), currentWifi.getRssi(),
-                        matchedFpWifi.getRssi(), similarity));
+        ScanSource live = new LiveScanSource(scanScheduler, ScanScheduler.Priority.LIVE_LOCATE);
+        ScanFreshnessFilter freshness = new ScanFreshnessFilter(SystemClock.elapsedRealtime() * 1000);
+        return new ScanSource() {
+            @Override
+            public List<ScanRecord> nextScan(long timeoutMs) throws InterruptedException {
+                List<ScanRecord> scan = live.nextScan(timeoutMs);
+                return scan != null ? freshness.filter(scan) : null;
             }
-        }
 
-        // 考虑匹配比例（解决部分匹配的问题）
-        double matchRatio = (double) matchCount / Math.min(currentWifis.size(), fingerprintWifis.size());
-        double baseSimilarity = matchCount > 0 ? totalSimilarity / matchCount : 0;
+            @Override
+            public boolean isFinished() {
+                return false;
+            }
 
-        // 综合相似度 = 基础相似度 × 匹配比例（比单纯信号相似度更合理）
-        return baseSimilarity * matchRatio;
+            @Override
+            public void close() {
+                live.close();
+            }
+        };
     }
 
     /**
-     * 鲁棒的WiFi相似度计算（容忍信号波动，比简单的线性计算更合理）
+     * 由一轮扫描结果完成过滤与匹配（同步执行，匹配流程见 {@link FingerprintLocator}）
+     * @return 定位结果；无匹配时返回null
      */
-    private double calculateRobustWifiSimilarity(FilteredWifi currentWifi,
-                                                 FilteredWifi fingerprintWifi) {
-        int rssiDiff = Math.abs(currentWifi.getRssi() - fingerprintWifi.getRssi());
-
-        // 信号差在10dBm内认为完全相似，超过40dBm认为不相似
-        if (rssiDiff <= 10) {
-            return 1.0;
-        } else if (rssiDiff >= 40) {
-            return 0.0;
+    public LocationResult locate(List<ScanRecord> currentScans) {
+        LocationResult result = locator.locate(fingerprintManager.getLibrary(), currentScans);
+        if (result != null) {
+            Log.d(TAG, "定位结果：" + result.getX() + "," + result.getY()
+                    + " 候选数：" + result.getCandidates().size() + " 置信度：" + result.getConfidence());
         } else {
-            // 中间范围线性衰减
-            return 1.0 - (double) (rssiDiff - 10) / 30;
+            Log.d(TAG, locator.getLastFailure());
         }
+        return result;
+    }
+
+    /**
+     * 释放后台线程（Activity销毁时调用）
+     */
+    public void destroy() {
+        locateExecutor.shutdownNow();
     }
 
     /**
@@ -227,15 +219,41 @@ public class WifiLocationManager {
         private final double x;
         private final double y;
         private final int floor;
+        private final List<Candidate> candidates; // 按相似度降序
+        private final double confidence;
 
         public LocationResult(double x, double y, int floor) {
+            this(x, y, floor, Collections.<Candidate>emptyList(), 0);
+        }
+
+        public LocationResult(double x, double y, int floor, List<Candidate> candidates, double confidence) {
             this.x = x;
             this.y = y;
             this.floor = floor;
+            this.candidates = Collections.unmodifiableList(candidates);
+            this.confidence = confidence;
         }
 
         public double getX() { return x; }
         public double getY() { return y; }
         public int getFloor() { return floor; }
+        public List<Candidate> getCandidates() { return candidates; }
+        public double getConfidence() { return confidence; }
+    }
+
+    /**
+     * kNN候选：参与定位的指纹及其相似度
+     */
+    public static class Candidate {
+        private final WifiFingerprint fingerprint;
+        private final double similarity;
+
+        public Candidate(WifiFingerprint fingerprint, double similarity) {
+            this.fingerprint = fingerprint;
+            this.similarity = similarity;
+        }
+
+        public WifiFingerprint getFingerprint() { return fingerprint; }
+        public double getSimilarity() { return similarity; }
     }
-}
\ No newline at end of file
+}
@@ -3,25 +3,25 @@ package com.example.mywifiscanner;
 import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.core.content.ContextCompat;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class WifiScanner {
     private static final String TAG = "WifiScanner";
+    // 单次扫描等待完成广播的最长时间（多数设备完成一次全频段扫描需2-4秒，部分设备更久）
+    private static final long SCAN_RESULT_TIMEOUT_MS = 8000;
     private final Context context;
     private final WifiManager wifiManager;
-    private int scanIntervalMs; // 扫描间隔（从配置获取）
+    private final ScanScheduler scanScheduler; // 共用的扫描调度器（节流、合并请求）
 
-    public WifiScanner(Context context, WifiManager wifiManager, int scanIntervalMs) {
+    public WifiScanner(Context context, WifiManager wifiManager, ScanScheduler scanScheduler) {
         this.context = context;
         this.wifiManager = wifiManager;
-        this.scanIntervalMs = scanIntervalMs; // 从配置传入间隔
+        this.scanScheduler = scanScheduler;
     }
 
     // 检查位置权限
@@ -63,94 +63,71 @@ public class WifiScanner {
         }
     }
 
-    // 同步执行多次扫描（阻塞当前线程）
-    public List<List<ScanResult>> performMultipleScans(int scanCount) {
-        List<List<ScanResult>> results = new ArrayList<>();
+    /**
+     * 扫描进度监听（在扫描线程回调）
+     */
+    public interface ScanProgressListener {
+        void onScanProgress(StreamingScanAggregator aggregator);
+    }
 
-        // 检查权限
+    /**
+     * 流式实时扫描：每轮结果立即经过流水线汇总，估计收敛后提前结束（阻塞当前线程，不可在主线程调用）
+     * @param config 扫描配置（扫描次数上限、相邻两轮的扫描间隔、收敛目标）
+     * @param minScans 提前结束前至少需要的有效扫描次数
+     * @param pipeline 采集流水线（开始时以本次会话时刻reset）
+     * @param listener 进度监听，可为null
+     * @return 有效（被汇总）的扫描轮数
+     */
+    public int performStreamingScans(ScanConfig config, int minScans, ScanScheduler.Priority priority,
+                                     ScanPipeline pipeline, ScanProgressListener listener) {
         if (!hasLocationPermission()) {
             Log.e(TAG, "位置权限缺失，无法扫描WiFi");
-            return results;
+            return 0;
         }
-
-        // 启用WiFi
         enableWifi();
+        return performStreamingScans(new LiveScanSource(scanScheduler, priority, config.getScanIntervalMs()),
+                config.getScanCount(), minScans, SystemClock.elapsedRealtime() * 1000,
+                config.getConvergenceTarget(), pipeline, listener);
+    }
 
-        // 循环执行指定次数扫描
-        for (int i = 0; i < scanCount; i++) {
-            Log.d(TAG, "开始第" + (i + 1) + "次扫描");
-
-            // 再次检查权限
-            if (!hasLocationPermission()) {
-                Log.e(TAG, "第" + (i + 1) + "次扫描：位置权限缺失，终止扫描");
-                break;
-            }
-
-            // 启动扫描
-            boolean scanStarted;
-            try {
-                scanStarted = wifiManager.startScan();
-            } catch (SecurityException e) {
-                Log.e(TAG, "第" + (i + 1) + "次扫描：启动失败（权限被拒）");
-                break;
-            }
-
-            if (!scanStarted) {
-                Log.e(TAG, "第" + (i + 1) + "次扫描：系统拒绝启动扫描（可能频率限制）");
-                // 强制等待间隔后继续下一次（避免密集调用）
-                try {
-                    Thread.sleep(scanIntervalMs);
-                } catch (InterruptedException e) {
-                    break;
-                }
-                continue;
-            }
-
-            // 同步等待扫描结果（最多等3秒，每100ms查一次）
-            List<ScanResult> scanResults = null;
-            int waitMs = 0;
-            while (waitMs < 3000) {
-                try {
-                    scanResults = wifiManager.getScanResults();
-                    if (scanResults != null && !scanResults.isEmpty()) {
-                        break; // 拿到结果就退出等待
-                    }
-                } catch (SecurityException e) {
-                    Log.e(TAG, "第" + (i + 1) + "次扫描：获取结果权限被拒");
-                    break;
+    /**
+     * 从指定扫描源流式扫描并汇总（每轮先经过流水线的观测级阶段，如新鲜度过滤，整轮被丢弃的不计入样本）
+     * @param maxScans 最多扫描次数
+     * @param minScans 提前结束前至少需要的有效扫描次数
+     * @param sessionStartMicros 会话开始时刻（与扫描时间戳同一时基），0表示不限制
+     * @return 有效（被汇总）的扫描轮数
+     */
+    public static int performStreamingScans(ScanSource source, int maxScans, int minScans, long sessionStartMicros,
+                                            double convergenceTarget, ScanPipeline pipeline,
+                                            ScanProgressListener listener) {
+        pipeline.reset(sessionStartMicros);
+        StreamingScanAggregator aggregator = pipeline.getAggregator();
+        try {
+            for (int i = 0; i < maxScans && !source.isFinished(); i++) {
+                List<ScanRecord> scanResults = source.nextScan(SCAN_RESULT_TIMEOUT_MS);
+                if (scanResults == null || scanResults.isEmpty()) {
+                    Log.w(TAG, "第" + (i + 1) + "次扫描：超时未获取到新的扫描结果");
+                    continue;
                 }
-
-                // 没拿到结果，继续等
-                try {
-                    Thread.sleep(100);
-                    waitMs += 100;
-                } catch (InterruptedException e) {
-                    break;
+                if (!pipeline.addScan(scanResults)) {
+                    Log.w(TAG, "第" + (i + 1) + "次扫描：结果与上次相同（系统缓存快照）或全部被过滤，已丢弃");
+                    continue;
                 }
-            }
+                if (listener != null) listener.onScanProgress(aggregator);
 
-            // 处理本次结果
-            if (scanResults != null && !scanResults.isEmpty()) {
-                results.add(new ArrayList<>(scanResults));
-                Log.d(TAG, "第" + (i + 1) + "次扫描成功，获取" + scanResults.size() + "个结果");
-            } else {
-                Log.w(TAG, "第" + (i + 1) + "次扫描：超时未获取到有效结果");
-            }
-
-            // 扫描间隔（最后一次不需要等）
-            if (i != scanCount - 1) {
-                try {
-                    Log.d(TAG, "等待" + scanIntervalMs + "ms后进行下一次扫描");
-                    Thread.sleep(scanIntervalMs);
-                } catch (InterruptedException e) {
-                    Log.w(TAG, "扫描间隔被中断");
+                if (aggregator.isConverged(convergenceTarget, minScans)) {
+                    Log.d(TAG, "第" + (i + 1) + "次扫描后已收敛（最大标准误"
+                            + String.format("%.2f", aggregator.getMaxStandardError()) + "dB），提前结束");
                     break;
                 }
             }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "扫描被中断");
+            Thread.currentThread().interrupt();
         }
-
-        Log.d(TAG, "所有扫描结束，共成功" + results.size() + "次");
-        return results;
+        Log.d(TAG, "流式扫描结束，有效扫描" + pipeline.getAcceptedScanCount() + "次，丢弃"
+                + pipeline.getDroppedScanCount() + "次");
+        return pipeline.getAcceptedScanCount();
     }
 
     public void destroy() {
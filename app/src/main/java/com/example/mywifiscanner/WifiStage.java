@@ -0,0 +1,14 @@
+package com.example.mywifiscanner;
+
+import java.util.List;
+
+/**
+ * 扫描流水线的列表级阶段：处理汇总并过滤后的WiFi列表（AP数量上限、排序等）
+ */
+public interface WifiStage {
+    /**
+     * @param wifis 上一阶段的结果（流水线新建的列表，可原地修改）
+     * @return 本阶段结果
+     */
+    List<FilteredWifi> process(List<FilteredWifi> wifis);
+}
@@ -0,0 +1,225 @@
+package com.example.mywifiscanner;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 配置快照：构建器默认值与ConfigManager默认设置一致、取值范围限制、预设方案与修改后的重新发布
+ */
+public class ConfigManagerTest {
+
+    @Test
+    public void defaults_comeFromSnapshotBuilders() {
+        InMemoryPreferences prefs = new InMemoryPreferences();
+        ConfigManager manager = new ConfigManager(prefs);
+        assertTrue(prefs.contains("scan_count")); // 首次启动写入默认设置
+
+        ScanConfig scan = manager.getScanConfig();
+        ScanConfig scanDefaults = ScanConfig.builder().build();
+        assertEquals(scanDefaults.getScanCount(), scan.getScanCount());
+        assertEquals(scanDefaults.getScanIntervalMs(), scan.getScanIntervalMs());
+        assertEquals(scanDefaults.getWifiThreshold(), scan.getWifiThreshold());
+        assertEquals(scanDefaults.getConvergenceTarget(), scan.getConvergenceTarget(), 1e-6);
+        assertEquals(scanDefaults.getAggregationMode(), scan.getAggregationMode());
+        assertEquals(scanDefaults.getMaxApsPerFingerprint(), scan.getMaxApsPerFingerprint());
+        assertEquals(scanDefaults.getApRanking(), scan.getApRanking());
+        assertEquals(scanDefaults.isVirtualApGroupingEnabled(), scan.isVirtualApGroupingEnabled());
+        assertEquals(scanDefaults.getStabilityFilter().getMinPresenceRatio(),
+                scan.getStabilityFilter().getMinPresenceRatio(), 1e-6);
+        assertEquals(scanDefaults.getStabilityFilter().isDroppingLocalMacs(),
+                scan.getStabilityFilter().isDroppingLocalMacs());
+
+        LocateConfig locate = manager.getLocateConfig();
+        LocateConfig locateDefaults = LocateConfig.builder().build();
+        assertEquals(locateDefaults.getWifiThreshold(), locate.getWifiThreshold());
+        assertEquals(scanDefaults.getWifiThreshold(), locateDefaults.getWifiThreshold());
+        assertEquals(locateDefaults.getSmoothingMode(), locate.getSmoothingMode());
+        assertEquals(locateDefaults.getSmoothingWindow(), locate.getSmoothingWindow());
+        assertEquals(locateDefaults.getMinSharedAps(), locate.getMinSharedAps());
+        assertEquals(locateDefaults.getKnnK(), locate.getKnnK());
+        assertEquals(locateDefaults.isHierarchicalEnabled(), locate.isHierarchicalEnabled());
+        assertEquals(locateDefaults.getHierarchyMargin(), locate.getHierarchyMargin(), 1e-6);
+        assertTrue(manager.validateConfig());
+    }
+
+    @Test
+    public void builders_clampOutOfRangeValues() {
+        LocateConfig locate = LocateConfig.builder().knnK(100).smoothingWindow(0).minSharedAps(0).build();
+        assertEquals(ConfigManager.MAX_KNN_K, locate.getKnnK());
+        assertEquals(1, locate.getSmoothingWindow());
+        assertEquals(1, locate.getMinSharedAps());
+        assertEquals(SlidingScanSmoother.MAX_WINDOW_SCANS,
+                LocateConfig.builder().smoothingWindow(1000).build().getSmoothingWindow());
+        assertEquals(1, LocateConfig.builder().knnK(-3).build().getKnnK());
+
+        ScanConfig scan = ScanConfig.builder().scanCount(7).scanIntervalMs(500).stabilityFilter(null).build();
+        assertEquals(7, scan.getScanCount());
+        assertEquals(500, scan.getScanIntervalMs());
+        assertNotNull(scan.getStabilityFilter());
+    }
+
+    @Test
+    public void applyProfile_publishesOnceWithProfileValues() {
+        ConfigManager manager = new ConfigManager(new InMemoryPreferences());
+        int[] published = new int[1];
+        ScanConfig[] lastScan = new ScanConfig[1];
+        LocateConfig[] lastLocate = new LocateConfig[1];
+        manager.addOnConfigChangedListener((scan, locate) -> {
+            published[0]++;
+            lastScan[0] = scan;
+            lastLocate[0] = locate;
+        });
+
+        manager.applyProfile(ConfigProfile.LOW_POWER);
+        assertEquals(1, published[0]);
+        assertSame(manager.getScanConfig(), lastScan[0]);
+        assertSame(manager.getLocateConfig(), lastLocate[0]);
+        assertEquals(ConfigProfile.LOW_POWER, manager.getProfile());
+        assertEquals(ConfigProfile.LOW_POWER.scanCount, lastScan[0].getScanCount());
+        assertEquals(ConfigProfile.LOW_POWER.scanIntervalMs, lastScan[0].getScanIntervalMs());
+        assertEquals(ConfigProfile.LOW_POWER.convergenceTarget, lastScan[0].getConvergenceTarget(), 1e-6);
+        assertEquals(ConfigProfile.LOW_POWER.aggregationMode, lastScan[0].getAggregationMode());
+        assertEquals(ConfigProfile.LOW_POWER.aggregationMode, lastLocate[0].getSmoothingMode());
+        assertEquals(ConfigProfile.LOW_POWER.smoothingWindow, lastLocate[0].getSmoothingWindow());
+
+        // 单独修改方案内的设置后不再属于该方案
+        manager.setScanInterval(4000);
+        assertEquals(2, published[0]);
+        assertNull(manager.getProfile());
+        assertEquals(4000, manager.getScanConfig().getScanIntervalMs());
+    }
+
+    @Test
+    public void republish_replacesSnapshotsAndLeavesOldOnesUnchanged() {
+        ConfigManager manager = new ConfigManager(new InMemoryPreferences());
+        ScanConfig oldScan = manager.getScanConfig();
+        LocateConfig oldLocate = manager.getLocateConfig();
+        int[] published = new int[1];
+        ConfigManager.OnConfigChangedListener listener = (scan, locate) -> published[0]++;
+        manager.addOnConfigChangedListener(listener);
+        manager.addOnConfigChangedListener(listener); // 重复注册只通知一次
+
+        manager.setWifiThreshold(-70);
+        assertEquals(1, published[0]);
+        assertNotSame(oldScan, manager.getScanConfig());
+        assertNotSame(oldLocate, manager.getLocateConfig());
+        assertEquals(-70, manager.getScanConfig().getWifiThreshold());
+        assertEquals(-70, manager.getLocateConfig().getWifiThreshold());
+        assertEquals(-85, oldScan.getWifiThreshold());
+        assertEquals(-85, oldLocate.getWifiThreshold());
+
+        manager.removeOnConfigChangedListener(listener);
+        manager.setKnnK(5);
+        assertEquals(1, published[0]);
+        assertEquals(5, manager.getLocateConfig().getKnnK());
+
+        manager.restoreDefaultSettings();
+        assertEquals(ScanConfig.builder().build().getWifiThreshold(), manager.getScanConfig().getWifiThreshold());
+        assertEquals(LocateConfig.builder().build().getKnnK(), manager.getLocateConfig().getKnnK());
+    }
+
+    /**
+     * 内存中的SharedPreferences（apply立即生效，不通知监听者）
+     */
+    private static final class InMemoryPreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new InMemoryEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private final class InMemoryEditor implements Editor {
+            private final Map<String, Object> pending = new HashMap<>();
+            private final Set<String> removed = new HashSet<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) { pending.put(key, value); return this; }
+            @Override
+            public Editor putStringSet(String key, Set<String> values) { pending.put(key, values); return this; }
+            @Override
+            public Editor putInt(String key, int value) { pending.put(key, value); return this; }
+            @Override
+            public Editor putLong(String key, long value) { pending.put(key, value); return this; }
+            @Override
+            public Editor putFloat(String key, float value) { pending.put(key, value); return this; }
+            @Override
+            public Editor putBoolean(String key, boolean value) { pending.put(key, value); return this; }
+            @Override
+            public Editor remove(String key) { removed.add(key); return this; }
+            @Override
+            public Editor clear() { clear = true; return this; }
+
+            @Override
+            public boolean commit() {
+                if (clear) values.clear();
+                for (String key : removed) values.remove(key);
+                values.putAll(pending);
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
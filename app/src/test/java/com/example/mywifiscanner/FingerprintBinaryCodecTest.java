@@ -0,0 +1,108 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 二进制指纹库格式（.wfp）：与JSON内容一致、体积更小、损坏与截断可被发现
+ */
+public class FingerprintBinaryCodecTest {
+
+    @Test
+    public void roundTrip_preservesJsonContent() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(600);
+        List<WifiFingerprint> loaded = read(write(library));
+        assertEquals(json(library), json(loaded));
+    }
+
+    @Test
+    public void write_isMuchSmallerThanJson() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(600);
+        assertTrue(json(library).length() > 5 * write(library).length);
+    }
+
+    @Test
+    public void isBinary_detectsFormatWithoutConsumingInput() throws IOException {
+        BufferedInputStream binary = new BufferedInputStream(new ByteArrayInputStream(write(buildLibrary(3))));
+        assertTrue(FingerprintBinaryCodec.isBinary(binary));
+        assertEquals('W', binary.read());
+        assertFalse(FingerprintBinaryCodec.isBinary(new BufferedInputStream(
+                new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    @Test
+    public void read_rejectsCorruptAndTruncatedFiles() throws IOException {
+        byte[] data = write(buildLibrary(600));
+        byte[] corrupt = data.clone();
+        corrupt[corrupt.length / 2] ^= 0x10;
+        assertFails(corrupt);
+        assertFails(Arrays.copyOf(data, data.length - 3));
+    }
+
+    private static void assertFails(byte[] data) {
+        try {
+            read(data);
+            fail("应检测到文件损坏");
+        } catch (IOException expected) {
+            // 预期
+        }
+    }
+
+    private static byte[] write(List<WifiFingerprint> library) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FingerprintBinaryCodec().write(out, library);
+        return out.toByteArray();
+    }
+
+    private static List<WifiFingerprint> read(byte[] data) throws IOException {
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
+        new FingerprintBinaryCodec().read(new ByteArrayInputStream(data), fingerprints::add);
+        return fingerprints;
+    }
+
+    private static String json(List<WifiFingerprint> library) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FingerprintJsonCodec().write(out, library);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 覆盖负楼层、null标签、旧数据（无频率/方差）、非标准BSSID与非规范写法的BSSID
+     */
+    private static List<WifiFingerprint> buildLibrary(int points) {
+        List<WifiFingerprint> library = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            WifiFingerprint fp = new WifiFingerprint();
+            fp.setPixelX(i * 1.5);
+            fp.setPixelY(-i);
+            fp.setFloor(i % 4 - 1);
+            fp.setZone("区域" + (i % 7));
+            fp.setLabel(i % 2 == 0 ? null : "P" + i);
+            List<FilteredWifi> wifis = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                int ap = (i * 11 + j * 17) % 500;
+                FilteredWifi wifi = j % 5 == 0
+                        ? new FilteredWifi("旧数据", String.format("a8:5e:45:00:%02x:%02x", ap >> 8, ap & 0xFF), -90 + j)
+                        : new FilteredWifi("网络-" + ap / 3, String.format("a8:5e:45:01:%02x:%02x", ap >> 8, ap & 0xFF),
+                        -40 - (i + j) % 50, j % 2 == 0 ? 2437 : 5745, j % 3);
+                if (j % 3 == 1) wifi.setRssiVariance(j / 4f);
+                wifis.add(wifi);
+            }
+            if (i % 100 == 0) wifis.add(new FilteredWifi("ad-hoc", "not-a-mac-" + i, -75));
+            if (i % 100 == 1) wifis.add(new FilteredWifi("旧格式", "A8-5E-45-02-00-01", -70));
+            fp.setFilteredWifis(wifis);
+            library.add(fp);
+        }
+        return library;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增量日志：按下标重放、不完整末行的丢弃与截断、作废的头部、无法应用的记录、合并后清空
+ */
+public class FingerprintJournalTest {
+    private final FingerprintJsonCodec codec = new FingerprintJsonCodec();
+
+    @Test
+    public void replay_appliesAddUpdateDeleteByIndex() throws IOException {
+        File base = writeBase(fingerprint("A"), fingerprint("B"), fingerprint("C"));
+        List<WifiFingerprint> working = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, working)) {
+            assertEquals(0, journal.getReplayedRecords());
+            assertFalse(journal.isStaleDiscarded());
+            assertTrue(journal.appendAdd(fingerprint("D")));
+            assertTrue(journal.appendUpdate(0, fingerprint("A2")));
+            assertTrue(journal.appendDelete(1));
+        }
+
+        List<WifiFingerprint> reloaded = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, reloaded)) {
+            assertEquals(3, journal.getReplayedRecords());
+            assertEquals(0, journal.getDroppedBytes());
+        }
+        assertEquals(labels("A2", "C", "D"), labelsOf(reloaded));
+    }
+
+    @Test
+    public void tornLastLine_isDroppedAndTruncatedOnOpen() throws IOException {
+        File base = writeBase(fingerprint("A"));
+        try (FingerprintJournal journal = FingerprintJournal.open(base, load(base))) {
+            journal.appendAdd(fingerprint("B"));
+        }
+        File journalFile = journalOf(base);
+        long completeLength = journalFile.length();
+        String torn = "{\"op\":\"add\",\"fingerprint\":{\"lab"; // 崩溃时写了一半
+        appendRaw(journalFile, torn);
+
+        List<WifiFingerprint> reloaded = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, reloaded)) {
+            assertEquals(1, journal.getReplayedRecords());
+            assertEquals(torn.length(), journal.getDroppedBytes());
+            assertEquals(completeLength, journalFile.length());
+            assertTrue(journal.appendAdd(fingerprint("C"))); // 追加在截断处，而不是接在残行之后
+        }
+        assertEquals(labels("A", "B"), labelsOf(reloaded));
+
+        List<WifiFingerprint> again = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, again)) {
+            assertEquals(2, journal.getReplayedRecords());
+            assertEquals(0, journal.getDroppedBytes());
+        }
+        assertEquals(labels("A", "B", "C"), labelsOf(again));
+    }
+
+    @Test
+    public void staleHeader_discardsJournal() throws IOException {
+        File base = writeBase(fingerprint("A"));
+        try (FingerprintJournal journal = FingerprintJournal.open(base, load(base))) {
+            journal.appendAdd(fingerprint("B"));
+        }
+
+        // 在别处改写库文件：长度与修改时间都不变，只有内容不同
+        long modified = base.lastModified();
+        byte[] content = Files.readAllBytes(base.toPath());
+        byte[] rewritten = new String(content, StandardCharsets.UTF_8).replace("\"A\"", "\"Z\"")
+                .getBytes(StandardCharsets.UTF_8);
+        assertEquals(content.length, rewritten.length);
+        Files.write(base.toPath(), rewritten);
+        assertTrue(base.setLastModified(modified));
+
+        List<WifiFingerprint> reloaded = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, reloaded)) {
+            assertTrue(journal.isStaleDiscarded());
+            assertEquals(0, journal.getReplayedRecords());
+            assertTrue(journal.getDroppedBytes() > 0);
+        }
+        assertEquals(labels("Z"), labelsOf(reloaded));
+
+        // 作废后重写了头部，再次打开时与库文件匹配
+        try (FingerprintJournal journal = FingerprintJournal.open(base, load(base))) {
+            assertFalse(journal.isStaleDiscarded());
+            assertEquals(0, journal.getDroppedBytes());
+        }
+    }
+
+    @Test
+    public void unappliableRecord_stopsReplay() throws IOException {
+        File base = writeBase(fingerprint("A"));
+        try (FingerprintJournal journal = FingerprintJournal.open(base, load(base))) {
+            journal.appendAdd(fingerprint("B"));
+        }
+        File journalFile = journalOf(base);
+        appendRaw(journalFile, "{\"op\":\"delete\",\"index\":99}\n");
+        appendRaw(journalFile, "{\"op\":\"add\",\"fingerprint\":{\"label\":\"C\"}}\n");
+
+        List<WifiFingerprint> reloaded = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, reloaded)) {
+            assertEquals(1, journal.getReplayedRecords());
+            assertTrue(journal.getDroppedBytes() > 0);
+        }
+        assertEquals(labels("A", "B"), labelsOf(reloaded)); // 其后的有效记录也不再应用
+    }
+
+    @Test
+    public void reset_afterCompactionStartsFromNewBase() throws IOException {
+        File base = writeBase(fingerprint("A"));
+        List<WifiFingerprint> working = load(base);
+        try (FingerprintJournal journal = FingerprintJournal.open(base, working)) {
+            working.add(fingerprint("B"));
+            journal.appendAdd(working.get(1));
+            working.remove(0);
+            journal.appendDelete(0);
+
+            // 合并：整体写回库文件后清空日志
+            writeBase(base, working);
+            journal.reset(base);
+            assertFalse(journal.needsCompaction());
+            working.add(fingerprint("C"));
+            journal.appendAdd(working.get(1));
+        }
+
+        List<WifiFingerprint> reloaded = load(base);
+        assertEquals(labels("B"), labelsOf(reloaded));
+        try (FingerprintJournal journal = FingerprintJournal.open(base, reloaded)) {
+            assertFalse(journal.isStaleDiscarded());
+            assertEquals(1, journal.getReplayedRecords()); // 只重放合并之后的记录
+        }
+        assertEquals(labels("B", "C"), labelsOf(reloaded));
+    }
+
+    private File writeBase(WifiFingerprint... fingerprints) throws IOException {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        File base = new File(dir, "library.json");
+        base.deleteOnExit();
+        journalOf(base).deleteOnExit();
+        List<WifiFingerprint> list = new ArrayList<>();
+        Collections.addAll(list, fingerprints);
+        writeBase(base, list);
+        return base;
+    }
+
+    private void writeBase(File base, List<WifiFingerprint> fingerprints) throws IOException {
+        try (OutputStream out = new FileOutputStream(base)) {
+            codec.write(out, fingerprints);
+        }
+    }
+
+    private List<WifiFingerprint> load(File base) throws IOException {
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
+        try (InputStream in = new FileInputStream(base)) {
+            codec.read(in, fingerprints::add);
+        }
+        return fingerprints;
+    }
+
+    private static File journalOf(File base) {
+        return new File(base.getPath() + FingerprintJournal.EXTENSION);
+    }
+
+    private static void appendRaw(File file, String text) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length());
+            raf.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static WifiFingerprint fingerprint(String label) {
+        WifiFingerprint fingerprint = new WifiFingerprint();
+        fingerprint.setLabel(label);
+        fingerprint.setFloor(1);
+        List<FilteredWifi> wifis = new ArrayList<>();
+        wifis.add(new FilteredWifi("AP", "0c:00:00:00:01:00", -60, 2437, 0));
+        fingerprint.setFilteredWifis(wifis);
+        return fingerprint;
+    }
+
+    private static List<String> labels(String... labels) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, labels);
+        return list;
+    }
+
+    private static List<String> labelsOf(List<WifiFingerprint> fingerprints) {
+        List<String> list = new ArrayList<>();
+        for (WifiFingerprint fingerprint : fingerprints) list.add(fingerprint.getLabel());
+        return list;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.mywifiscanner;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 指纹库JSON编解码：手写TypeAdapter与反射序列化的格式兼容性
+ * main方法为编解码吞吐量基准（反射 + 整串读写 对比 流式 + 手写TypeAdapter），
+ * 100k点位的库需要较大堆，建议以 -Xmx4g 运行
+ */
+public class FingerprintJsonCodecTest {
+    private static final Type FINGERPRINT_LIST = new TypeToken<List<WifiFingerprint>>() {}.getType();
+
+    @Test
+    public void write_matchesReflectiveJson() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(50, 20, 1);
+        String expected = new Gson().toJson(library, FINGERPRINT_LIST);
+        assertEquals(expected, new String(writeStreaming(library), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_roundTripsAllFields() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(50, 20, 2);
+        List<WifiFingerprint> loaded = readStreaming(writeStreaming(library));
+
+        assertEquals(library.size(), loaded.size());
+        for (int i = 0; i < library.size(); i++) {
+            WifiFingerprint expected = library.get(i);
+            WifiFingerprint actual = loaded.get(i);
+            assertEquals(expected.getPixelX(), actual.getPixelX(), 0);
+            assertEquals(expected.getFloor(), actual.getFloor());
+            assertEquals(expected.getZone(), actual.getZone());
+            assertEquals(expected.getFilteredWifis().size(), actual.getFilteredWifis().size());
+            for (int j = 0; j < expected.getFilteredWifis().size(); j++) {
+                FilteredWifi w1 = expected.getFilteredWifis().get(j);
+                FilteredWifi w2 = actual.getFilteredWifis().get(j);
+                assertEquals(w1.getSsid(), w2.getSsid());
+                assertTrue(w1.getBssid() == w2.getBssid()); // 读取时已放入字典，共享同一实例
+                assertEquals(w1.getRssi(), w2.getRssi());
+                assertEquals(w1.getRssiVariance(), w2.getRssiVariance(), 0);
+                assertEquals(w1.getFrequency(), w2.getFrequency());
+            }
+        }
+    }
+
+    @Test
+    public void read_acceptsLegacyAndEmptyInput() throws IOException {
+        List<WifiFingerprint> loaded = readStreaming(
+                "[null, {\"pixelX\": 3, \"zone\": null, \"extra\": [1], \"wifis\": [{\"bssid\": \"a8:00:00:00:00:01\", \"rssi\": -60}]}, {\"floor\": 2}]"
+                        .getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, loaded.size());
+        assertEquals(3.0, loaded.get(0).getPixelX(), 0);
+        assertNull(loaded.get(0).getZone());
+        assertEquals(-60, loaded.get(0).getFilteredWifis().get(0).getRssi());
+        assertEquals(0, loaded.get(0).getFilteredWifis().get(0).getFrequency());
+        assertEquals(0, loaded.get(1).getFilteredWifis().size());
+
+        assertEquals(0, readStreaming(new byte[0]).size());
+        assertEquals(0, readStreaming(" null ".getBytes(StandardCharsets.UTF_8)).size());
+    }
+
+    @Test
+    public void read_preservesBssidSpelling() throws IOException {
+        String json = "[{\"wifis\":[{\"bssid\":\"A8-5E-45-00-00-09\",\"rssi\":-60},"
+                + "{\"bssid\":\"a8:5e:45:00:00:09\",\"rssi\":-61}]}]";
+        List<FilteredWifi> wifis = readStreaming(json.getBytes(StandardCharsets.UTF_8)).get(0).getFilteredWifis();
+        assertEquals("A8-5E-45-00-00-09", wifis.get(0).getBssid());
+        assertEquals(wifis.get(1).getBssidId(), wifis.get(0).getBssidId()); // 不同写法仍是同一个AP
+        String saved = new String(writeStreaming(readStreaming(json.getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8);
+        assertTrue(saved.contains("\"A8-5E-45-00-00-09\""));
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (int points : new int[]{10_000, 100_000}) {
+            List<WifiFingerprint> library = buildLibrary(points, 25, 42);
+            System.out.println("== " + points + " 点位");
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                byte[] reflective = writeReflective(library);
+                long reflectiveWrite = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                byte[] streaming = writeStreaming(library);
+                long streamingWrite = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int reflectiveCount = readReflective(reflective).size();
+                long reflectiveRead = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int streamingCount = readStreaming(streaming).size();
+                long streamingRead = System.nanoTime() - start;
+
+                System.out.printf("第%d轮 %.1fMB  写入: 反射 %s / 流式 %s  读取: 反射 %s / 流式 %s%n",
+                        round + 1, streaming.length / 1e6,
+                        throughput(points, reflectiveWrite), throughput(points, streamingWrite),
+                        throughput(reflectiveCount, reflectiveRead), throughput(streamingCount, streamingRead));
+            }
+        }
+    }
+
+    private static String throughput(int fingerprints, long nanos) {
+        return String.format("%.0f条/s", fingerprints * 1e9 / nanos);
+    }
+
+    /**
+     * 原实现：反射序列化为整个字符串后写出
+     */
+    private static byte[] writeReflective(List<WifiFingerprint> library) {
+        return new Gson().toJson(library).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 原实现：按1KB读入StringBuilder，trim后反射反序列化，再逐条intern
+     */
+    private static List<WifiFingerprint> readReflective(byte[] json) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        InputStream in = new ByteArrayInputStream(json);
+        byte[] buffer = new byte[1024];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            builder.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+        }
+        List<WifiFingerprint> fingerprints = new Gson().fromJson(builder.toString().trim(), FINGERPRINT_LIST);
+        for (WifiFingerprint fp : fingerprints) {
+            for (FilteredWifi wifi : fp.getFilteredWifis()) {
+                wifi.intern();
+            }
+        }
+        return fingerprints;
+    }
+
+    private static byte[] writeStreaming(List<WifiFingerprint> library) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FingerprintJsonCodec().write(out, library);
+        return out.toByteArray();
+    }
+
+    private static List<WifiFingerprint> readStreaming(byte[] json) throws IOException {
+        List<WifiFingerprint> fingerprints = new ArrayList<>();
+        new FingerprintJsonCodec().read(new ByteArrayInputStream(json), fingerprints::add);
+        return fingerprints;
+    }
+
+    /**
+     * 仿真指纹库：每个点位从约2000个AP中取apsPerPoint个，SSID含中文（覆盖多字节字符）
+     * 以及HTML敏感字符（覆盖Gson默认的HTML转义）
+     */
+    private static List<WifiFingerprint> buildLibrary(int points, int apsPerPoint, long seed) {
+        Random random = new Random(seed);
+        List<WifiFingerprint> library = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            WifiFingerprint fp = new WifiFingerprint();
+            fp.setPixelX(random.nextInt(4000) + 0.5);
+            fp.setPixelY(random.nextInt(3000));
+            fp.setFloor(i % 5 + 1);
+            fp.setZone("区域" + (i % 12));
+            fp.setLabel(i % 3 == 0 ? null : "P" + i);
+            List<FilteredWifi> wifis = new ArrayList<>(apsPerPoint);
+            int base = random.nextInt(2000);
+            for (int j = 0; j < apsPerPoint; j++) {
+                int ap = (base + j * 7) % 2000;
+                String ssid = ap % 5 == 0 ? "Tom&Jerry's <5G>=" + ap / 4 : "办公网络-" + ap / 4;
+                FilteredWifi wifi = new FilteredWifi(ssid,
+                        String.format("a8:5e:45:%02x:%02x:%02x", ap >> 8, ap & 0xFF, j % 4),
+                        -40 - random.nextInt(50), ap % 2 == 0 ? 2437 : 5180, 1);
+                wifi.setRssiVariance(random.nextInt(40) / 4f);
+                wifis.add(wifi);
+            }
+            fp.setFilteredWifis(wifis);
+            library.add(fp);
+        }
+        return library;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 匹配流程脱离设备运行：仿真扫描录制为会话文件，再经回放扫描源逐轮定位
+ */
+public class FingerprintLocatorTest {
+    private static final int SCANS = 60;
+
+    @Test
+    public void replayedSession_locatesNearTruth() throws Exception {
+        List<WifiFingerprint> library = buildLibrary();
+        FingerprintLibrary index = new FingerprintIndex(library, true); // 与FingerprintManager默认配置一致
+
+        // 录制：仿真扫描逐轮写入会话文件，同时记下真实位置
+        SyntheticScanSource synthetic = new SyntheticScanSource(library, 11, 3.0, 2.0, 10.0, 1.0);
+        List<WifiLocationManager.LocationResult> truths = new ArrayList<>();
+        File session = File.createTempFile("session", ".jsonl");
+        session.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(session), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < SCANS; i++) {
+                ReplayScanSource.writeScan(writer, synthetic.nextScan(0));
+                truths.add(synthetic.getLastTruth());
+            }
+        }
+
+        // 回放：不等待，逐轮定位
+        FingerprintLocator locator = new FingerprintLocator(LocateConfig.builder().build());
+        ReplayScanSource replay = new ReplayScanSource(session, 0, false);
+        int located = 0, floorHits = 0;
+        double errorSum = 0;
+        List<ScanRecord> scan;
+        while ((scan = replay.nextScan(0)) != null) {
+            WifiLocationManager.LocationResult truth = truths.get(located);
+            WifiLocationManager.LocationResult result = locator.locate(index, scan);
+            assertNotNull(locator.getLastFailure(), result);
+            assertNull(locator.getLastFailure());
+            if (result.getFloor() == truth.getFloor()) floorHits++;
+            errorSum += Math.hypot(result.getX() - truth.getX(), result.getY() - truth.getY());
+            located++;
+        }
+        replay.close();
+
+        assertTrue(replay.isFinished());
+        assertEquals(SCANS, located);
+        assertTrue("楼层命中" + floorHits + "/" + SCANS, floorHits >= SCANS * 9 / 10);
+        assertTrue("平均误差" + errorSum / SCANS + "px", errorSum / SCANS < 40); // 网格间距50px
+    }
+
+    @Test
+    public void locate_reportsFailureReason() {
+        FingerprintLocator locator = new FingerprintLocator(LocateConfig.builder().build());
+        FingerprintLibrary index = new FingerprintIndex(buildLibrary(), true);
+
+        assertNull(locator.locate(index, new ArrayList<>()));
+        assertEquals("扫描结果为空", locator.getLastFailure());
+
+        // 全部低于信号阈值
+        List<ScanRecord> weak = new ArrayList<>();
+        weak.add(new ScanRecord("0c:00:00:00:01:00", "AP1", -95, 2437, 0, 0));
+        assertNull(locator.locate(index, weak));
+        assertEquals("过滤后无可用WiFi", locator.getLastFailure());
+
+        // 库中没有的AP：无候选
+        List<ScanRecord> unknown = new ArrayList<>();
+        unknown.add(new ScanRecord("0d:00:00:00:01:00", "外部", -50, 2437, 0, 0));
+        assertNull(locator.locate(index, unknown));
+        assertTrue(locator.getLastFailure().startsWith("无匹配结果"));
+
+        assertNull(locator.locate(new FingerprintIndex(new ArrayList<>(), true), unknown));
+        assertEquals("指纹库为空", locator.getLastFailure());
+    }
+
+    /**
+     * 两层楼、每层5x5网格（间距50px，即5米），每层9个AP均匀分布，RSSI按路径损耗模型生成
+     */
+    private static List<WifiFingerprint> buildLibrary() {
+        double[][] aps = {{0, 0}, {100, 0}, {200, 0}, {0, 100}, {100, 100}, {200, 100}, {0, 200}, {100, 200}, {200, 200}};
+        List<WifiFingerprint> library = new ArrayList<>();
+        for (int floor = 0; floor < 2; floor++) {
+            for (int gx = 0; gx < 5; gx++) {
+                for (int gy = 0; gy < 5; gy++) {
+                    WifiFingerprint fp = new WifiFingerprint();
+                    fp.setPixelX(gx * 50);
+                    fp.setPixelY(gy * 50);
+                    fp.setFloor(floor);
+                    fp.setZone(gx < 3 ? "东" : "西");
+                    List<FilteredWifi> wifis = new ArrayList<>();
+                    for (int apFloor = 0; apFloor < 2; apFloor++) {
+                        for (int a = 0; a < aps.length; a++) {
+                            double meters = Math.max(1, Math.hypot(gx * 50 - aps[a][0], gy * 50 - aps[a][1]) / 10);
+                            int rssi = (int) Math.round(-30 - 30 * Math.log10(meters)
+                                    - 15 * Math.abs(floor - apFloor));
+                            if (rssi < -85) continue;
+                            String bssid = String.format("0c:00:00:00:%02x:00", apFloor * 16 + a + 1);
+                            wifis.add(new FilteredWifi("AP" + a, bssid, rssi, a % 2 == 0 ? 2437 : 5180, 1));
+                        }
+                    }
+                    fp.setFilteredWifis(wifis);
+                    library.add(fp);
+                }
+            }
+        }
+        return library;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 前k名的全序：得分相同时ID小者优先，并行分块合并与顺序打分、不同加入顺序得到相同结果
+ */
+public class FingerprintMatcherTest {
+    private static final int CANDIDATES = 10000;
+
+    @Test
+    public void parallel_agreesWithSequentialOnTies() {
+        // 全部相同（相似度饱和为1.0）与部分相同两种库
+        assertSameTopK(new ScoredLibrary(id -> 1.0), 5);
+        assertSameTopK(new ScoredLibrary(id -> id % 3 == 0 ? 0.9 : 0.5), 8);
+        assertSameTopK(new ScoredLibrary(id -> (id * 37 % 11) / 10.0), 10);
+    }
+
+    @Test
+    public void identicalScores_preferLowerIds() {
+        int[] candidates = allIds();
+        TopKHeap heap = new TopKHeap(5);
+        heap.reset(5);
+        FingerprintMatcher.matchParallel(new ScoredLibrary(id -> 1.0), null, candidates, heap);
+        int[] ids = new int[5];
+        double[] scores = new double[5];
+        assertEquals(5, heap.drainDescending(ids, scores));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ids);
+    }
+
+    @Test
+    public void offerOrder_doesNotChangeResult() {
+        TopKHeap forward = new TopKHeap(4);
+        TopKHeap backward = new TopKHeap(4);
+        for (int id = 0; id < 100; id++) {
+            forward.offer(id, id % 10 == 0 ? 0.8 : 0.2);
+            backward.offer(99 - id, (99 - id) % 10 == 0 ? 0.8 : 0.2);
+        }
+        int[] forwardIds = new int[4];
+        int[] backwardIds = new int[4];
+        forward.drainDescending(forwardIds, new double[4]);
+        backward.drainDescending(backwardIds, new double[4]);
+        assertArrayEquals(new int[]{0, 10, 20, 30}, forwardIds);
+        assertArrayEquals(forwardIds, backwardIds);
+    }
+
+    private static void assertSameTopK(FingerprintLibrary library, int k) {
+        int[] candidates = allIds();
+        TopKHeap sequential = new TopKHeap(k);
+        TopKHeap parallel = new TopKHeap(k);
+        FingerprintMatcher.matchSequential(library, null, candidates, sequential);
+        FingerprintMatcher.matchParallel(library, null, candidates, parallel);
+
+        int[] sequentialIds = new int[k];
+        int[] parallelIds = new int[k];
+        double[] sequentialScores = new double[k];
+        double[] parallelScores = new double[k];
+        assertEquals(sequential.drainDescending(sequentialIds, sequentialScores),
+                parallel.drainDescending(parallelIds, parallelScores));
+        assertArrayEquals(sequentialIds, parallelIds);
+        for (int i = 0; i < k; i++) {
+            assertEquals(sequentialScores[i], parallelScores[i], 0);
+        }
+    }
+
+    private static int[] allIds() {
+        int[] candidates = new int[CANDIDATES];
+        for (int id = 0; id < CANDIDATES; id++) candidates[id] = id;
+        return candidates;
+    }
+
+    private interface Scorer {
+        double score(int id);
+    }
+
+    /**
+     * 只提供相似度的替身库：得分由ID决定，不需要编译扫描
+     */
+    private static final class ScoredLibrary implements FingerprintLibrary {
+        private final Scorer scorer;
+
+        ScoredLibrary(Scorer scorer) {
+            this.scorer = scorer;
+        }
+
+        @Override
+        public int size() {
+            return CANDIDATES;
+        }
+
+        @Override
+        public int[] findCandidates(List<FilteredWifi> currentWifis, int minSharedAps) {
+            return allIds();
+        }
+
+        @Override
+        public CompiledFingerprint compileQuery(List<FilteredWifi> currentWifis) {
+            return null;
+        }
+
+        @Override
+        public double similarity(CompiledFingerprint current, int id) {
+            return scorer.score(id);
+        }
+
+        @Override
+        public WifiFingerprint get(int id) {
+            return null;
+        }
+
+        @Override
+        public List<RegionSignature> getRegionHierarchy() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 异步定位请求：用替身扫描源驱动成功、超时、取消与执行器已关闭的回调
+ */
+public class LocateRequestTest {
+    private static final List<ScanRecord> SCAN = Collections.singletonList(
+            new ScanRecord("0c:00:00:00:01:00", "AP", -50, 2437, 0, 1));
+    private static final WifiLocationManager.LocationResult RESULT =
+            new WifiLocationManager.LocationResult(1, 2, 0);
+
+    @Test
+    public void scanArrives_callsOnLocated() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FakeSource source = new FakeSource(SCAN);
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(source, scan -> scan == SCAN ? RESULT : null,
+                callback.executor, callback);
+        request.start(executor, 1000);
+
+        callback.await();
+        assertSame(RESULT, callback.result);
+        assertNull(callback.reason);
+        assertTrue(request.isDone());
+        assertEquals(1000, source.requestedTimeoutMs);
+        assertTrue(source.closed);
+        assertEquals(1, callback.executed.get()); // 回调经回调执行器交付
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void noMatch_callsOnFailed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(new FakeSource(SCAN), scan -> null, callback.executor, callback);
+        request.start(executor, 1000);
+
+        callback.await();
+        assertNull(callback.result);
+        assertEquals("未匹配到指纹点", callback.reason);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void noMatch_reportsMatcherReason() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest.Matcher matcher = new LocateRequest.Matcher() {
+            @Override
+            public WifiLocationManager.LocationResult locate(List<ScanRecord> scan) {
+                return null;
+            }
+
+            @Override
+            public String getLastFailure() {
+                return "过滤后无可用WiFi";
+            }
+        };
+        LocateRequest request = new LocateRequest(new FakeSource(SCAN), matcher, callback.executor, callback);
+        request.start(executor, 1000);
+
+        callback.await();
+        assertEquals("过滤后无可用WiFi", callback.reason);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void matcherThrows_callsOnFailed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FakeSource source = new FakeSource(SCAN);
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(source, scan -> {
+            throw new ArrayIndexOutOfBoundsException("索引越界");
+        }, callback.executor, callback);
+        request.start(executor, 1000);
+
+        callback.await();
+        assertNull(callback.result);
+        assertEquals("定位出错：索引越界", callback.reason);
+        assertTrue(request.isDone()); // 请求结束，界面可以发起下一次定位
+        assertTrue(source.closed);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sourceTimesOut_callsOnFailed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FakeSource source = new FakeSource(null); // 超时不返回扫描
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(source, scan -> RESULT, callback.executor, callback);
+        long start = System.nanoTime();
+        request.start(executor, 50);
+
+        callback.await();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertNull(callback.result);
+        assertEquals("等待扫描结果超时", callback.reason);
+        assertTrue(source.closed);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void cancel_interruptsScanAndSuppressesCallback() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FakeSource source = new FakeSource(SCAN);
+        source.blockUntilInterrupted = true;
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(source, scan -> RESULT, callback.executor, callback);
+        request.start(executor, 10000);
+
+        assertTrue(source.waiting.await(1, TimeUnit.SECONDS));
+        request.cancel();
+        assertTrue(request.isDone());
+        assertTrue(source.interrupted.await(1, TimeUnit.SECONDS));
+
+        // 之后的失败也不会再回调
+        request.fail("迟到的失败");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(source.closed);
+        assertEquals(0, callback.calls.get());
+    }
+
+    @Test
+    public void executorShutDown_failsImmediately() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        FakeSource source = new FakeSource(SCAN);
+        RecordingCallback callback = new RecordingCallback();
+        LocateRequest request = new LocateRequest(source, scan -> RESULT, callback.executor, callback);
+        request.start(executor, 1000);
+
+        callback.await();
+        assertEquals("定位管理器已销毁", callback.reason);
+        assertTrue(source.closed);
+    }
+
+    /**
+     * 替身扫描源：立即返回预设的一轮扫描，预设为null时等满超时再返回null，也可阻塞到被中断
+     */
+    private static final class FakeSource implements ScanSource {
+        private final List<ScanRecord> scan;
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        volatile boolean blockUntilInterrupted;
+        volatile long requestedTimeoutMs = -1;
+        volatile boolean closed;
+
+        FakeSource(List<ScanRecord> scan) {
+            this.scan = scan;
+        }
+
+        @Override
+        public List<ScanRecord> nextScan(long timeoutMs) throws InterruptedException {
+            requestedTimeoutMs = timeoutMs;
+            waiting.countDown();
+            try {
+                if (blockUntilInterrupted) {
+                    new CountDownLatch(1).await();
+                } else if (scan == null) {
+                    Thread.sleep(timeoutMs);
+                }
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return scan;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * 记录回调；回调执行器为同步执行，并统计经它交付的次数
+     */
+    private static final class RecordingCallback implements LocateRequest.Callback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger executed = new AtomicInteger();
+        final Executor executor = command -> {
+            executed.incrementAndGet();
+            command.run();
+        };
+        volatile WifiLocationManager.LocationResult result;
+        volatile String reason;
+
+        @Override
+        public void onLocated(WifiLocationManager.LocationResult result) {
+            this.result = result;
+            calls.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailed(String reason) {
+            this.reason = reason;
+            calls.incrementAndGet();
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("未收到回调", latch.await(2, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        }
+    }
+}
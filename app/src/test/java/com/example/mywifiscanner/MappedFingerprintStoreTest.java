@@ -0,0 +1,224 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存映射指纹库（.wfpm）：候选与打分结果与同样分组设置的堆上索引一致，元数据可还原，
+ * 截断在打开时被发现，内容损坏只让定位失败
+ */
+public class MappedFingerprintStoreTest {
+
+    /**
+     * 与生产配置一致：匹配时合并虚拟AP
+     */
+    @Test
+    public void matching_agreesWithGroupedHeapIndex() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(2000);
+        FingerprintIndex grouped = new FingerprintIndex(library, true);
+        FingerprintIndex ungrouped = new FingerprintIndex(library, false);
+        boolean merged = false;
+        for (int id = 0; id < library.size(); id++) {
+            merged |= grouped.getCompiled(id).size() < ungrouped.getCompiled(id).size();
+        }
+        assertTrue("测试库中应有可合并的虚拟AP", merged);
+
+        MappedFingerprintStore store = open(library, true);
+        assertTrue(store.isVirtualApGrouped());
+        assertMatchesHeapIndex(library, grouped, store);
+    }
+
+    @Test
+    public void matching_agreesWithUngroupedHeapIndex() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(2000);
+        MappedFingerprintStore store = open(library, false);
+        assertFalse(store.isVirtualApGrouped());
+        assertMatchesHeapIndex(library, new FingerprintIndex(library, false), store);
+    }
+
+    private static void assertMatchesHeapIndex(List<WifiFingerprint> library, FingerprintIndex index,
+                                               MappedFingerprintStore store) {
+
+        Random random = new Random(7);
+        for (int q = 0; q < 100; q++) {
+            List<FilteredWifi> scan = new ArrayList<>();
+            for (FilteredWifi wifi : library.get(random.nextInt(library.size())).getFilteredWifis()) {
+                if (random.nextInt(4) == 0) continue;
+                // 大写BSSID与库外AP：应与库中同一MAC对齐，库外AP只参与频段权重
+                scan.add(new FilteredWifi(wifi.getSsid(), wifi.getBssid().toUpperCase(),
+                        wifi.getRssi() + random.nextInt(7) - 3, wifi.getFrequency(), 1));
+            }
+            scan.add(new FilteredWifi("访客", "0b:00:00:00:00:01", -50, 2437, 1));
+
+            int[] candidates = index.findCandidates(scan, 2);
+            assertArrayEquals(candidates, store.findCandidates(scan, 2));
+            CompiledFingerprint heapQuery = index.compileQuery(scan);
+            CompiledFingerprint mappedQuery = store.compileQuery(scan);
+            for (int id : candidates) {
+                assertEquals(index.similarity(heapQuery, id), store.similarity(mappedQuery, id), 1e-12);
+            }
+        }
+    }
+
+    /**
+     * 查询中同一BSSID以不同大小写出现两次时只算一个共享AP（不分组时也一样）
+     */
+    @Test
+    public void duplicateQueryAp_countsOnce() throws IOException {
+        List<WifiFingerprint> library = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            WifiFingerprint fp = new WifiFingerprint();
+            List<FilteredWifi> wifis = new ArrayList<>();
+            wifis.add(new FilteredWifi("AP", "0c:00:00:00:01:00", -50, 2437, 1));
+            wifis.add(new FilteredWifi("AP", String.format("0c:00:00:00:%02x:00", 2 + i), -60, 2437, 1));
+            fp.setFilteredWifis(wifis);
+            library.add(fp);
+        }
+        List<FilteredWifi> scan = new ArrayList<>();
+        scan.add(new FilteredWifi("AP", "0c:00:00:00:01:00", -50, 2437, 1));
+        scan.add(new FilteredWifi("AP", "0c:00:00:00:03:00", -60, 2437, 1));
+        scan.add(new FilteredWifi("AP", "0C:00:00:00:01:00", -52, 2437, 1)); // 与第一条不相邻
+
+        for (boolean group : new boolean[]{false, true}) {
+            int[] heap = new FingerprintIndex(library, group).findCandidates(scan, 2);
+            assertArrayEquals(new int[]{1}, heap);
+            assertArrayEquals(heap, open(library, group).findCandidates(scan, 2));
+        }
+    }
+
+    @Test
+    public void get_restoresFingerprint() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(50);
+        MappedFingerprintStore store = open(library, false);
+        assertEquals(library.size(), store.size());
+        for (int id = 0; id < library.size(); id++) {
+            WifiFingerprint expected = library.get(id);
+            WifiFingerprint actual = store.get(id);
+            assertEquals(expected.getPixelX(), actual.getPixelX(), 0);
+            assertEquals(expected.getPixelY(), actual.getPixelY(), 0);
+            assertEquals(expected.getFloor(), actual.getFloor());
+            assertEquals(expected.getZone(), actual.getZone());
+            assertEquals(expected.getLabel(), actual.getLabel());
+            assertEquals(expected.getFilteredWifis().size(), actual.getFilteredWifis().size());
+        }
+        assertEquals(0, store.getRegionHierarchy().size());
+    }
+
+    @Test
+    public void open_rejectsTruncatedFile() throws IOException {
+        byte[] data = write(buildLibrary(50), true);
+        try {
+            MappedFingerprintStore.wrap(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 1)));
+            fail("应检测到文件不完整");
+        } catch (IOException expected) {
+            // 预期
+        }
+        assertEquals(0, open(new ArrayList<>(), true).size());
+    }
+
+    /**
+     * 打开时只校验头部与长度：AP表之后的内容全部损坏的文件能打开，定位以失败原因结束而不抛出
+     */
+    @Test
+    public void corruptContent_failsLocateGracefully() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(50);
+        byte[] data = write(library, true);
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int fingerprints = header.getInt(8);
+        int aps = header.getInt(12);
+        // 保留头部、MAC表与坐标，其后的编号、倒排与条目全部写坏
+        Arrays.fill(data, 64 + aps * 8 + fingerprints * 16, data.length, (byte) 0xFF);
+        MappedFingerprintStore store = MappedFingerprintStore.wrap(ByteBuffer.wrap(data));
+
+        List<ScanRecord> scan = new ArrayList<>();
+        for (FilteredWifi wifi : library.get(0).getFilteredWifis()) {
+            scan.add(new ScanRecord(wifi.getBssid(), wifi.getSsid(), wifi.getRssi(), wifi.getFrequency(), 0, 1));
+        }
+        // 测试库的MAC以0a开头（本地管理地址），不按默认配置丢弃
+        FingerprintLocator locator = new FingerprintLocator(LocateConfig.builder()
+                .stabilityFilter(new ApStabilityFilter(0.5, false, "", "")).build());
+        assertNull(locator.locate(store, scan));
+        assertTrue(locator.getLastFailure(), locator.getLastFailure().startsWith("指纹库文件已损坏"));
+    }
+
+    /**
+     * 随机改写头部之后的字节：各访问要么正常返回，要么抛出CorruptedFileException，不会越界
+     */
+    @Test
+    public void randomCorruption_onlyThrowsCorruptedFileException() throws IOException {
+        List<WifiFingerprint> library = buildLibrary(50);
+        byte[] original = write(library, true);
+        List<FilteredWifi> scan = library.get(7).getFilteredWifis();
+        Random random = new Random(11);
+        int detected = 0;
+        for (int round = 0; round < 300; round++) {
+            byte[] data = original.clone();
+            for (int k = 0; k < 8; k++) {
+                data[64 + random.nextInt(data.length - 64)] = (byte) random.nextInt(256);
+            }
+            MappedFingerprintStore store = MappedFingerprintStore.wrap(ByteBuffer.wrap(data));
+            try {
+                CompiledFingerprint query = store.compileQuery(scan);
+                for (int id : store.findCandidates(scan, 1)) {
+                    store.similarity(query, id);
+                }
+                for (int id = 0; id < store.size(); id++) {
+                    store.get(id);
+                }
+            } catch (MappedFingerprintStore.CorruptedFileException expected) {
+                detected++;
+            }
+        }
+        assertTrue(detected > 0);
+    }
+
+    private static MappedFingerprintStore open(List<WifiFingerprint> library, boolean groupVirtualAps)
+            throws IOException {
+        return MappedFingerprintStore.wrap(ByteBuffer.wrap(write(library, groupVirtualAps)));
+    }
+
+    private static byte[] write(List<WifiFingerprint> library, boolean groupVirtualAps) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappedFingerprintStore.write(out, library, groupVirtualAps);
+        return out.toByteArray();
+    }
+
+    /**
+     * 相邻点位共享大部分AP，覆盖负楼层、null标签与未记录频率/方差的旧数据
+     */
+    private static List<WifiFingerprint> buildLibrary(int points) {
+        Random random = new Random(3);
+        List<WifiFingerprint> library = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            WifiFingerprint fp = new WifiFingerprint();
+            fp.setPixelX(i % 50 * 2.0);
+            fp.setPixelY(i / 50 * 2.0);
+            fp.setFloor(i % 3 - 1);
+            fp.setZone("区域" + (i % 5));
+            fp.setLabel(i % 2 == 0 ? null : "P" + i);
+            List<FilteredWifi> wifis = new ArrayList<>();
+            int base = i / 20 * 7;
+            for (int j = 0; j < 20; j++) {
+                int ap = (base + j * 3) % 3000;
+                FilteredWifi wifi = new FilteredWifi("网络-" + ap % 40,
+                        String.format("0a:00:00:00:%02x:%02x", ap >> 8, ap & 0xFF),
+                        -40 - random.nextInt(50), j % 3 == 0 ? 5180 : j % 3 == 1 ? 2437 : 0, 1);
+                if (j % 2 == 0) wifi.setRssiVariance(random.nextInt(30));
+                wifis.add(wifi);
+            }
+            fp.setFilteredWifis(wifis);
+            library.add(fp);
+        }
+        return library;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单个流水线阶段脱离流水线运行：对同一轮录制的扫描单独调用去重与AP数量上限
+ * main方法为各阶段的耗时基准
+ */
+public class ScanStagesTest {
+    private static final int APS = 400;
+    private static final int BENCHMARK_ROUNDS = 2000;
+
+    @Test
+    public void dedupe_keepsStrongestObservationPerBssid() throws Exception {
+        List<ScanRecord> scan = recordedScan();
+        List<ScanRecord> unique = ScanStages.dedupe().process(scan);
+
+        Map<String, Integer> strongest = new HashMap<>();
+        for (ScanRecord record : scan) {
+            strongest.merge(record.getBssid().toLowerCase(Locale.ROOT), record.getLevel(), Math::max);
+        }
+        assertEquals(strongest.size(), unique.size());
+        Set<String> seen = new HashSet<>();
+        int lastPosition = -1;
+        for (ScanRecord record : unique) {
+            String key = record.getBssid().toLowerCase(Locale.ROOT);
+            assertTrue(seen.add(key));
+            assertEquals((long) strongest.get(key), record.getLevel());
+            int position = scan.indexOf(record);
+            assertTrue(position > lastPosition); // 保持录制顺序
+            lastPosition = position;
+        }
+
+        // 无重复时直接返回输入
+        assertSame(unique, ScanStages.dedupe().process(unique));
+    }
+
+    @Test
+    public void limitApCount_keepsStrongestInInputOrder() throws Exception {
+        List<FilteredWifi> wifis = toWifis(ScanStages.dedupe().process(recordedScan()));
+        List<FilteredWifi> limited = ScanStages.limitApCount(40, ApRanking.RSSI, null).process(wifis);
+
+        assertEquals(40, limited.size());
+        int weakestKept = Integer.MAX_VALUE;
+        int lastPosition = -1;
+        for (FilteredWifi wifi : limited) {
+            weakestKept = Math.min(weakestKept, wifi.getRssi());
+            int position = wifis.indexOf(wifi);
+            assertTrue(position > lastPosition);
+            lastPosition = position;
+        }
+        for (FilteredWifi wifi : wifis) {
+            if (!limited.contains(wifi)) assertTrue(wifi.getRssi() <= weakestKept);
+        }
+
+        // 未超过上限或不限制时返回原列表
+        assertSame(limited, ScanStages.limitApCount(40, ApRanking.RSSI, null).process(limited));
+        assertSame(wifis, ScanStages.limitApCount(0, ApRanking.RSSI, null).process(wifis));
+    }
+
+    /**
+     * 各阶段耗时基准：同一轮录制的扫描反复经过去重与AP数量上限（阶段对象复用），按阶段分别输出每轮耗时
+     */
+    public static void main(String[] args) throws Exception {
+        List<ScanRecord> scan = recordedScan();
+        ScanStage dedupe = ScanStages.dedupe();
+        List<FilteredWifi> wifis = toWifis(dedupe.process(scan));
+        WifiStage limit = ScanStages.limitApCount(40, ApRanking.RSSI, null);
+
+        for (int round = 0; round < 3; round++) {
+            int unique = 0, limited = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+                unique = dedupe.process(scan).size();
+            }
+            long dedupeNanos = (System.nanoTime() - start) / BENCHMARK_ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+                limited = limit.process(wifis).size();
+            }
+            long limitNanos = (System.nanoTime() - start) / BENCHMARK_ROUNDS;
+
+            System.out.printf("第%d轮 %d条观测  dedupe: %dus/scan（剩%d）  limitApCount: %dus/scan（剩%d）%n",
+                    round + 1, scan.size(), dedupeNanos / 1000, unique, limitNanos / 1000, limited);
+        }
+    }
+
+    /**
+     * 一轮录制的扫描：APS个AP，约10%的BSSID以不同大小写与信号重复出现；写入会话文件后经回放扫描源读回
+     */
+    private static List<ScanRecord> recordedScan() throws IOException, InterruptedException {
+        Random random = new Random(5);
+        List<ScanRecord> scan = new ArrayList<>();
+        for (int i = 0; i < APS; i++) {
+            String bssid = String.format("0c:00:00:00:%02x:%02x", i >> 8, i & 0xFF);
+            scan.add(new ScanRecord(bssid, "AP" + i % 30, -40 - random.nextInt(55),
+                    i % 2 == 0 ? 2437 : 5180, 0, 1000 + i));
+            if (i % 10 == 0) {
+                scan.add(new ScanRecord(bssid.toUpperCase(Locale.ROOT), "AP" + i % 30,
+                        -40 - random.nextInt(55), i % 2 == 0 ? 2437 : 5180, 0, 1000 + i));
+            }
+        }
+
+        File session = File.createTempFile("scan", ".jsonl");
+        session.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(session), StandardCharsets.UTF_8)) {
+            ReplayScanSource.writeScan(writer, scan);
+        }
+        ReplayScanSource replay = new ReplayScanSource(session, 0, false);
+        List<ScanRecord> recorded = replay.nextScan(0);
+        replay.close();
+        assertEquals(scan.size(), recorded.size());
+        return recorded;
+    }
+
+    private static List<FilteredWifi> toWifis(List<ScanRecord> scan) {
+        List<FilteredWifi> wifis = new ArrayList<>(scan.size());
+        for (ScanRecord record : scan) {
+            wifis.add(new FilteredWifi(record.getSsid(), record.getBssid(), record.getLevel(),
+                    record.getFrequency(), record.getChannelWidth()));
+        }
+        return wifis;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mywifiscanner;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 收敛判断：样本方差（n-1）、至少3轮有效扫描、调用方要求的最少轮数
+ */
+public class StreamingScanAggregatorTest {
+
+    @Test
+    public void identicalScans_doNotConvergeBeforeThreeScans() {
+        StreamingScanAggregator aggregator = new StreamingScanAggregator();
+        aggregator.addScan(scan(-60, 1));
+        aggregator.addScan(scan(-60, 2));
+        assertTrue(Double.isInfinite(aggregator.getMaxStandardError()));
+        assertFalse(aggregator.isConverged(1.0, 1));
+
+        aggregator.addScan(scan(-60, 3));
+        assertEquals(0, aggregator.getMaxStandardError(), 0);
+        assertTrue(aggregator.isConverged(1.0, 3));
+        assertFalse(aggregator.isConverged(1.0, 4)); // 调用方要求更多轮
+        assertFalse(aggregator.isConverged(0, 3));   // 目标<=0不提前结束
+    }
+
+    @Test
+    public void standardError_usesSampleVariance() {
+        StreamingScanAggregator aggregator = new StreamingScanAggregator();
+        int[] levels = {-60, -62, -64, -66};
+        for (int i = 0; i < levels.length; i++) {
+            aggregator.addScan(scan(levels[i], i + 1));
+        }
+        // 均值-63，样本方差 (9+1+1+9)/3，标准误 sqrt(s²/4)
+        assertEquals(Math.sqrt(20.0 / 3 / 4), aggregator.getMaxStandardError(), 1e-9);
+        assertTrue(aggregator.isConverged(1.3, 3));
+        assertFalse(aggregator.isConverged(1.2, 3));
+    }
+
+    private static List<ScanRecord> scan(int level, long timestampMicros) {
+        return Collections.singletonList(new ScanRecord("0c:00:00:00:01:00", "AP", level, 2437, 0, timestampMicros));
+    }
+}